@@ -0,0 +1,62 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded deposit and withdrawal throughput of {@link AccountService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class AccountServiceBenchmark {
+
+    private static final String USERNAME = "benchmark";
+
+    private AccountService accountService;
+
+    /**
+     * Creates a fresh ledger per iteration, so that the history does not grow across iterations.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        accountService = Ledgers.accountService(new TransactionHistoryRepository());
+        accountService.createAccount(USERNAME);
+    }
+
+    /**
+     * Deposits one unit.
+     */
+    @Benchmark
+    public void deposit() {
+        accountService.deposit(USERNAME, 100);
+    }
+
+    /**
+     * Deposits and withdraws the same amount.
+     * @return the actual withdrawn amount in cents
+     */
+    @Benchmark
+    public long depositAndWithdraw() {
+        accountService.deposit(USERNAME, 100);
+        return accountService.withdraw(USERNAME, 100);
+    }
+}
@@ -0,0 +1,128 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.LedgerEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-in transfers: {@code threads} threads, each paying from its own account, transfer to one merchant account. In
+ * the {@code SINGLE_CELL} mode hot accounts are disabled and every transfer locks the merchant account, in the
+ * {@code HOT_ACCOUNT} mode the merchant is promoted to a hot account once its lock is contended.
+ * <p>
+ * The score is the time to execute a burst of {@value #TRANSFERS} transfers, the throughput is {@value #TRANSFERS}
+ * divided by it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class FanInTransferBenchmark {
+
+    private static final int TRANSFERS = 64_000;
+    private static final String MERCHANT = "merchant";
+    private static final long INITIAL_BALANCE = 1_000_000_000_00L;
+
+    /**
+     * Balance cell designs of the merchant account.
+     */
+    public enum BalanceCells {
+        SINGLE_CELL,
+        HOT_ACCOUNT
+    }
+
+    @Param({"1", "4", "16", "64"})
+    public int threads;
+
+    @Param({"SINGLE_CELL", "HOT_ACCOUNT"})
+    public BalanceCells cells;
+
+    private ExecutorService executor;
+    private AccountService accountService;
+
+    /**
+     * Starts the paying threads.
+     */
+    @Setup(Level.Trial)
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Creates a fresh ledger per iteration with a funded account for every paying thread.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        accountService = new AccountService(new AccountRepository(), new TransactionHistoryRepository(),
+                Ledgers.journal(), LedgerMetrics.disabled(), new LedgerEventBus(), AccountService.ExecutionMode.LOCKING,
+                0, cells == BalanceCells.HOT_ACCOUNT ? 128 : 0, 0);
+        accountService.createAccount(MERCHANT);
+        for (int i = 0; i < threads; i++) {
+            accountService.createAccount(payer(i));
+            accountService.deposit(payer(i), INITIAL_BALANCE);
+        }
+    }
+
+    /**
+     * Stops the paying threads.
+     */
+    @TearDown(Level.Trial)
+    public void stopThreads() {
+        executor.shutdown();
+    }
+
+    /**
+     * Executes a burst of transfers to the merchant, split evenly across the paying threads.
+     * @return total transferred amount in cents
+     * @throws Exception if a transfer fails
+     */
+    @Benchmark
+    public long burst() throws ExecutionException, InterruptedException {
+        List<Future<Long>> payers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            String payer = payer(i);
+            payers.add(executor.submit(() -> {
+                long transferred = 0;
+                for (int j = 0; j < TRANSFERS / threads; j++) {
+                    transferred += accountService.transfer(payer, MERCHANT, 100);
+                }
+                return transferred;
+            }));
+        }
+        long transferred = 0;
+        for (Future<Long> payer : payers) {
+            transferred += payer.get();
+        }
+        return transferred;
+    }
+
+    private static String payer(int index) {
+        return "payer" + index;
+    }
+}
@@ -0,0 +1,98 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.ExportFormat;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.HistoryExporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of a large transaction history by {@link HistoryExporter}, compared with serializing the materialized
+ * history. Run with {@code -prof gc} to compare the allocation per export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class HistoryExportBenchmark {
+
+    private static final String USERNAME = "benchmark";
+    private static final int COUNTERPARTIES = 1000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final long HISTORY_MILLIS = 730 * 86_400_000L;
+
+    @Param({"1000000"})
+    public int historySize;
+
+    @Param({"CSV", "JSON"})
+    public ExportFormat format;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private TransactionHistoryRepository histories;
+    private HistoryExporter exporter;
+    private ObjectMapper objectMapper;
+
+    /**
+     * Spreads {@code historySize} transactions with {@value #COUNTERPARTIES} counterparties over two years.
+     */
+    @Setup
+    public void setUp() {
+        histories = new TransactionHistoryRepository();
+        AccountService accountService = Ledgers.accountService(histories);
+        accountService.createAccount(USERNAME);
+        long start = FIRST_DAY.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long step = HISTORY_MILLIS / historySize;
+        for (int i = 0; i < historySize; i++) {
+            boolean deposit = i % 3 != 0;
+            histories.addTransaction(USERNAME, 100 + i % 100_000,
+                    deposit ? TransactionType.DEPOSIT : TransactionType.WITHDRAW,
+                    i % 5 == 0 ? null : "counterparty" + i % COUNTERPARTIES, i + 1, start + i * step);
+        }
+        exporter = new HistoryExporter(accountService, histories, LedgerMetrics.disabled());
+        objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Streams the whole history.
+     * @return number of exported transactions
+     * @throws IOException never, the output discards the bytes
+     */
+    @Benchmark
+    public int export() throws IOException {
+        return exporter.export(USERNAME, null, null, format, compressed, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Materializes the whole history and serializes it to JSON, as a baseline.
+     * @throws IOException never, the output discards the bytes
+     */
+    @Benchmark
+    public void materializeAndSerialize() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), histories.getTransactions(USERNAME));
+    }
+}
@@ -0,0 +1,105 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap size of a {@link TransactionHistory} per entry, including its indexes and statement aggregates but
+ * not the shared username dictionary, measured with the JOL object graph walker. The history mixes deposits,
+ * withdrawals and transfers to {@value #COUNTERPARTIES} counterparties, so every index is populated. The benchmark
+ * time is the time to build the history; the footprint is reported by the {@code bytesPerEntry} counter. The
+ * footprint is deterministic and the summary sums the counters over the measurement iterations, so there is one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djol.magicFieldOffset=true")
+public class HistoryFootprintBenchmark {
+
+    private static final String USERNAME = "benchmark";
+    private static final int COUNTERPARTIES = 100;
+
+    @Param({"4096", "1000000"})
+    public int historySize;
+
+    private String[] counterparties;
+
+    /**
+     * Prepares the counterparty usernames.
+     */
+    @Setup
+    public void setUp() {
+        counterparties = new String[COUNTERPARTIES];
+        for (int i = 0; i < COUNTERPARTIES; i++) {
+            counterparties[i] = "counterparty" + i;
+        }
+    }
+
+    /**
+     * Builds a history of {@code historySize} entries and measures its retained size.
+     * @param footprint counters receiving the retained size
+     * @return the built history
+     */
+    @Benchmark
+    public TransactionHistory build(Footprint footprint) {
+        TransactionHistoryRepository repository = new TransactionHistoryRepository();
+        for (int i = 0; i < historySize; i++) {
+            switch (i % 4) {
+                case 0 -> repository.addTransaction(USERNAME, 100 + i % 1000, TransactionType.DEPOSIT, null);
+                case 1 -> repository.addTransaction(USERNAME, 50 + i % 500, TransactionType.WITHDRAW, null);
+                default -> repository.addTransaction(USERNAME, 10 + i % 10_000, i % 2 == 0 ? TransactionType.DEPOSIT
+                        : TransactionType.WITHDRAW, counterparties[i % COUNTERPARTIES]);
+            }
+        }
+        TransactionHistory history = repository.getHistory(USERNAME);
+        long bytes = GraphLayout.parseInstance(history)
+                .subtract(GraphLayout.parseInstance(repository.getDictionary()))
+                .totalSize();
+        footprint.record(bytes, historySize);
+        return history;
+    }
+
+    /**
+     * Retained size of the built history.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long totalKilobytes;
+        public double bytesPerEntry;
+
+        /**
+         * Clears the counters of the previous iteration.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            totalKilobytes = 0;
+            bytesPerEntry = 0;
+        }
+
+        private void record(long bytes, int entries) {
+            totalKilobytes = bytes / 1024;
+            bytesPerEntry = bytes / (double) entries;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtered page reads of a huge account, answered by the secondary indexes of {@link TransactionHistory} and, as a
+ * baseline, by scanning the history columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class HistorySearchBenchmark {
+
+    private static final String USERNAME = "benchmark";
+    private static final int COUNTERPARTIES = 10_000;
+    private static final int MAX_AMOUNT = 1_000_000;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000000"})
+    public int historySize;
+
+    /**
+     * Filter of the query: a rare counterparty, a rare type, a narrow amount range or a wide amount range.
+     */
+    @Param({"COUNTERPARTY", "TYPE", "NARROW_RANGE", "WIDE_RANGE"})
+    public String query;
+
+    private TransactionHistory history;
+    private TransactionFilter filter;
+    private int counterpartyId;
+
+    /**
+     * Fills the history with random amounts, one withdrawal per ten transactions and transfers with many
+     * counterparties.
+     */
+    @Setup
+    public void setUp() {
+        TransactionHistoryRepository repository = new TransactionHistoryRepository();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < historySize; i++) {
+            repository.addTransaction(USERNAME, random.nextInt(MAX_AMOUNT),
+                    random.nextInt(10) == 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT,
+                    random.nextBoolean() ? null : "user" + random.nextInt(COUNTERPARTIES));
+        }
+        history = repository.getHistory(USERNAME);
+        filter = switch (query) {
+            case "COUNTERPARTY" -> new TransactionFilter("user17", null, null, null);
+            case "TYPE" -> new TransactionFilter(null, TransactionType.WITHDRAW, null, null);
+            case "NARROW_RANGE" -> new TransactionFilter(null, null, MAX_AMOUNT - 100L, null);
+            case "WIDE_RANGE" -> new TransactionFilter(null, null, 100L, MAX_AMOUNT - 100L);
+            default -> throw new IllegalArgumentException("Unknown query " + query);
+        };
+        counterpartyId = repository.getDictionary().find(filter.counterparty());
+    }
+
+    /**
+     * Reads the newest page of matching transactions using the indexes.
+     * @return entry indices
+     */
+    @Benchmark
+    public int[] indexedPage() {
+        return history.find(filter, history.size(), 0, PAGE_SIZE);
+    }
+
+    /**
+     * Counts matching transactions using the indexes, as the grid does on every filter change.
+     * @return number of transactions
+     */
+    @Benchmark
+    public int indexedCount() {
+        return history.count(filter);
+    }
+
+    /**
+     * Reads the newest page of matching transactions by scanning the columns.
+     * @return entry indices
+     */
+    @Benchmark
+    public int[] scanPage() {
+        int[] page = new int[PAGE_SIZE];
+        int found = 0;
+        for (int i = history.size() - 1; i >= 0 && found < PAGE_SIZE; i--) {
+            if (matches(i)) {
+                page[found++] = i;
+            }
+        }
+        return Arrays.copyOf(page, found);
+    }
+
+    private boolean matches(int index) {
+        long amount = history.amount(index);
+        return (filter.minAmount() == null || amount >= filter.minAmount())
+                && (filter.maxAmount() == null || amount <= filter.maxAmount())
+                && (filter.type() == null || history.type(index) == filter.type())
+                && (filter.counterparty() == null || history.counterpartyId(index) == counterpartyId);
+    }
+}
@@ -0,0 +1,111 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Tiny Bank JFR events on the ledger operations. In the {@code off} mode nothing is recorded, which must
+ * cost the same time and allocation as the operations without events; in the {@code on} mode a recording with the
+ * bundled {@code tinybank.jfc} profile runs, recording every operation and history append.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class JfrEventsBenchmark {
+
+    private static final long INITIAL_BALANCE = 1_000_000_00L;
+
+    @Param({"off", "on"})
+    public String recording;
+
+    private Recording jfr;
+    private AccountService accountService;
+    private boolean forward;
+
+    /**
+     * Starts the recording, if any, once per trial.
+     * @throws IOException if the profile cannot be read
+     * @throws ParseException if the profile is malformed
+     */
+    @Setup(Level.Trial)
+    public void startRecording() throws IOException, ParseException {
+        if ("on".equals(recording)) {
+            try (Reader profile = new InputStreamReader(getClass().getResourceAsStream("/tinybank.jfc"),
+                    StandardCharsets.UTF_8)) {
+                jfr = new Recording(Configuration.create(profile));
+            }
+            jfr.setToDisk(true);
+            jfr.start();
+        }
+    }
+
+    /**
+     * Creates a fresh ledger per iteration, so that the history does not grow across iterations.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        accountService = Ledgers.accountService(new TransactionHistoryRepository());
+        for (String username : new String[] {"first", "second"}) {
+            accountService.createAccount(username);
+            accountService.deposit(username, INITIAL_BALANCE);
+        }
+    }
+
+    /**
+     * Stops and discards the recording, if any.
+     */
+    @TearDown(Level.Trial)
+    public void stopRecording() {
+        if (jfr != null) {
+            jfr.close();
+        }
+    }
+
+    /**
+     * Deposits and withdraws the same amount.
+     * @return the actual withdrawn amount in cents
+     */
+    @Benchmark
+    public long depositAndWithdraw() {
+        accountService.deposit("first", 100);
+        return accountService.withdraw("first", 100);
+    }
+
+    /**
+     * Transfers one unit back and forth between two accounts.
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    public long transfer() {
+        forward = !forward;
+        return forward ? accountService.transfer("first", "second", 100)
+                : accountService.transfer("second", "first", 100);
+    }
+}
@@ -0,0 +1,106 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journaled transfers between random accounts under each {@link FsyncPolicy}, with eight client threads. Segments
+ * are written to a temporary directory; the ones filled during an iteration are deleted after it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JournalAppendBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"PER_OPERATION", "GROUP_COMMIT", "OS"})
+    public FsyncPolicy fsyncPolicy;
+
+    private Path directory;
+    private LedgerJournal journal;
+    private AccountService accountService;
+    private String[] usernames;
+
+    /**
+     * Opens the journal and funds the accounts.
+     */
+    @Setup
+    public void setUp() {
+        directory = Ledgers.createDirectory();
+        journal = Ledgers.journal(directory, fsyncPolicy);
+        journal.recover(null, record -> {
+        });
+        accountService = new AccountService(new AccountRepository(), new TransactionHistoryRepository(), journal);
+        usernames = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            usernames[i] = "user" + i;
+            accountService.createAccount(usernames[i]);
+            accountService.deposit(usernames[i], 1_000_000_000_000L);
+        }
+    }
+
+    /**
+     * Deletes the segments filled during the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void compact() {
+        journal.compact(journal.checkpoint());
+    }
+
+    /**
+     * Closes the journal and deletes its directory.
+     */
+    @TearDown
+    public void tearDown() {
+        accountService.close();
+        journal.close();
+        Ledgers.deleteDirectory(directory);
+    }
+
+    /**
+     * Transfers one cent between two distinct random accounts.
+     * @param random random source of the calling thread
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    public long transfer(ThreadRandom random) {
+        int from = random.random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return accountService.transfer(usernames[from], usernames[to], 1L);
+    }
+
+    /**
+     * Random source of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadRandom {
+
+        private final SplittableRandom random = new SplittableRandom();
+    }
+}
@@ -0,0 +1,115 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UserRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.LedgerEventBus;
+import com.bank.tiny.service.PasswordHasher;
+import com.bank.tiny.service.UserService;
+import com.bank.tiny.service.VelocityRules;
+import com.vaadin.flow.spring.security.AuthenticationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Wires the service layer by hand, without Spring or Vaadin, for benchmarks. The journal is disabled so that
+ * benchmarks measure the in-memory ledger only, except for the journal benchmarks.
+ */
+final class Ledgers {
+
+    private Ledgers() {
+    }
+
+    /**
+     * Creates a disabled journal.
+     * @return {@link LedgerJournal} instance
+     */
+    static LedgerJournal journal() {
+        return new LedgerJournal(false, "build/jmh-journal", FsyncPolicy.OS, 10, 1 << 20);
+    }
+
+    /**
+     * Creates an enabled journal with 64 MiB segments, not recovered yet.
+     * @param directory directory of the segment files
+     * @param fsyncPolicy {@link FsyncPolicy} of appends
+     * @return {@link LedgerJournal} instance
+     */
+    static LedgerJournal journal(Path directory, FsyncPolicy fsyncPolicy) {
+        return new LedgerJournal(true, directory.toString(), fsyncPolicy, 10, 64 << 20);
+    }
+
+    /**
+     * Creates a temporary directory for journal segments and snapshots.
+     * @return path of the directory
+     */
+    static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("tinybank-jmh");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create a benchmark directory", e);
+        }
+    }
+
+    /**
+     * Deletes a directory created by {@link #createDirectory()} with its content.
+     * @param directory path of the directory
+     */
+    static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete benchmark directory " + directory, e);
+        }
+    }
+
+    /**
+     * Creates an account service with empty repositories.
+     * @param histories {@link TransactionHistoryRepository} instance
+     * @return {@link AccountService} instance
+     */
+    static AccountService accountService(TransactionHistoryRepository histories) {
+        return new AccountService(new AccountRepository(), histories, journal());
+    }
+
+    /**
+     * Creates an account service with empty repositories that checks velocity rules.
+     * @param histories {@link TransactionHistoryRepository} instance
+     * @param velocityRules {@link VelocityRules} instance
+     * @return {@link AccountService} instance
+     */
+    static AccountService accountService(TransactionHistoryRepository histories, VelocityRules velocityRules) {
+        return new AccountService(new AccountRepository(), histories, journal(), LedgerMetrics.disabled(),
+                new LedgerEventBus(), AccountService.ExecutionMode.LOCKING, 0, 0, 0, velocityRules);
+    }
+
+    /**
+     * Creates a password hasher with the default work factor and one thread per processor.
+     * @return {@link PasswordHasher} instance
+     */
+    static PasswordHasher passwordHasher() {
+        return new PasswordHasher(10, Runtime.getRuntime().availableProcessors(), 1024, 60_000);
+    }
+
+    /**
+     * Creates a user service with empty repositories.
+     * @return {@link UserService} instance
+     */
+    static UserService userService() {
+        LedgerJournal journal = journal();
+        AccountService accountService = new AccountService(new AccountRepository(),
+                new TransactionHistoryRepository(), journal);
+        return new UserService(new AuthenticationContext(), accountService, new UserRepository(), journal,
+                LedgerMetrics.disabled(), passwordHasher());
+    }
+}
@@ -0,0 +1,115 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer latency during a login storm. Eight threads verify bcrypt passwords while one thread transfers money.
+ * In the {@code pool} mode the logins are verified on a one-thread {@link PasswordHasher}, in the {@code caller}
+ * mode on the login threads themselves, as request threads would without the pool. Compare the transfer
+ * percentiles of the {@code storm} group with each other and with the {@code baseline} group.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class LoginStormBenchmark {
+
+    private static final String PASSWORD = "password";
+    private static final String BCRYPT_PREFIX = "{bcrypt}";
+
+    @Param({"pool", "caller"})
+    public String hashing;
+
+    private AccountService accountService;
+    private PasswordHasher passwordHasher;
+    private BCryptPasswordEncoder callerEncoder;
+    private String encodedPassword;
+    private boolean forward;
+
+    /**
+     * Creates the ledger and the password hashers.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountService = Ledgers.accountService(new TransactionHistoryRepository());
+        for (String username : new String[] {"first", "second"}) {
+            accountService.createAccount(username);
+            accountService.deposit(username, 1_000_000_00L);
+        }
+        passwordHasher = new PasswordHasher(10, 1, 1024, 60_000);
+        callerEncoder = new BCryptPasswordEncoder(10);
+        encodedPassword = passwordHasher.encode(PASSWORD);
+    }
+
+    /**
+     * Stops the hashing thread.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        passwordHasher.close();
+    }
+
+    /**
+     * Transfers money while logins are verified.
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(1)
+    public long transfer() {
+        return transferOnce();
+    }
+
+    /**
+     * Verifies a login.
+     * @return {@code true} if the password matches
+     */
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(8)
+    public boolean login() {
+        if ("pool".equals(hashing)) {
+            return passwordHasher.matches(PASSWORD, encodedPassword);
+        }
+        return callerEncoder.matches(PASSWORD, encodedPassword.substring(BCRYPT_PREFIX.length()));
+    }
+
+    /**
+     * Transfers money without logins, as the baseline.
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    @Group("baseline")
+    @GroupThreads(1)
+    public long transferAlone() {
+        return transferOnce();
+    }
+
+    private long transferOnce() {
+        forward = !forward;
+        return forward ? accountService.transfer("first", "second", 100)
+                : accountService.transfer("second", "first", 100);
+    }
+}
@@ -0,0 +1,116 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.PeriodStatement;
+import com.bank.tiny.domain.Transaction;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monthly statements of {@link AccountService} on accounts whose history spans two years, compared with scanning the
+ * history for the period.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class PeriodStatementBenchmark {
+
+    private static final String USERNAME = "benchmark";
+    private static final String COUNTERPARTY = "counterparty";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final int DAYS = 730;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "1000000"})
+    public int historySize;
+
+    private AccountService accountService;
+    private TransactionHistory history;
+    private LocalDate from;
+    private LocalDate to;
+
+    /**
+     * Spreads {@code historySize} transactions evenly over {@value #DAYS} days and picks a month in the middle.
+     */
+    @Setup
+    public void setUp() {
+        TransactionHistoryRepository histories = new TransactionHistoryRepository();
+        accountService = Ledgers.accountService(histories);
+        accountService.createAccount(USERNAME);
+        long start = FIRST_DAY.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long step = DAYS * MILLIS_PER_DAY / historySize;
+        for (int i = 0; i < historySize; i++) {
+            boolean deposit = i % 3 != 0;
+            histories.addTransaction(USERNAME, deposit ? 300 : 200,
+                    deposit ? TransactionType.DEPOSIT : TransactionType.WITHDRAW, i % 2 == 0 ? COUNTERPARTY : null,
+                    i + 1, start + i * step);
+        }
+        history = histories.getHistory(USERNAME);
+        from = FIRST_DAY.plusMonths(12);
+        to = from.plusMonths(1);
+    }
+
+    /**
+     * Gets balances and totals of the month.
+     * @return {@link PeriodStatement} instance
+     */
+    @Benchmark
+    public PeriodStatement statement() {
+        return accountService.getPeriodStatement(USERNAME, from, to);
+    }
+
+    /**
+     * Gets balances and totals of the month and its first page of transactions.
+     * @return page of transactions
+     */
+    @Benchmark
+    public List<Transaction> statementFirstPage() {
+        PeriodStatement statement = accountService.getPeriodStatement(USERNAME, from, to);
+        return accountService.getStatementTransactions(USERNAME, statement, 0, PAGE_SIZE);
+    }
+
+    /**
+     * Computes the opening balance and the net movement of the month by scanning the history, as a baseline.
+     * @return closing balance in cents
+     */
+    @Benchmark
+    public long scanStatement() {
+        long periodStart = from.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long periodEnd = to.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long openingBalance = 0;
+        long movement = 0;
+        for (int i = 0, size = history.size(); i < size; i++) {
+            long timestamp = history.timestamp(i);
+            long amount = history.type(i) == TransactionType.DEPOSIT ? history.amount(i) : -history.amount(i);
+            if (timestamp < periodStart) {
+                openingBalance += amount;
+            } else if (timestamp < periodEnd) {
+                movement += amount;
+            }
+        }
+        return openingBalance + movement;
+    }
+}
@@ -0,0 +1,85 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.ReconciliationReport;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.LedgerReconciliation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full reconciliation of a ledger of random transfers, a quarter of which go to one hot account, with one
+ * reconciliation thread per processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ReconciliationBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final String HOT_ACCOUNT = "hot";
+
+    @Param({"1000000"})
+    public int transfers;
+
+    private LedgerReconciliation reconciliation;
+
+    /**
+     * Funds the accounts and executes the transfers.
+     */
+    @Setup
+    public void setUp() {
+        LedgerJournal journal = Ledgers.journal();
+        AccountRepository accounts = new AccountRepository();
+        TransactionHistoryRepository histories = new TransactionHistoryRepository();
+        AccountService accountService = new AccountService(accounts, histories, journal);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountService.createAccount("user" + i);
+            accountService.deposit("user" + i, 1_000_000_000L);
+        }
+        accountService.createAccount(HOT_ACCOUNT);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < transfers; i++) {
+            accountService.transfer("user" + random.nextInt(ACCOUNTS),
+                    i % 4 == 0 ? HOT_ACCOUNT : "user" + random.nextInt(ACCOUNTS), 1 + random.nextInt(1000));
+        }
+        reconciliation = new LedgerReconciliation(accounts, histories, journal, 0, 0);
+    }
+
+    /**
+     * Stops the reconciliation threads.
+     */
+    @TearDown
+    public void tearDown() {
+        reconciliation.stop();
+    }
+
+    /**
+     * Reconciles the whole ledger.
+     * @return {@link ReconciliationReport} instance
+     */
+    @Benchmark
+    public ReconciliationReport reconcile() {
+        return reconciliation.reconcile();
+    }
+}
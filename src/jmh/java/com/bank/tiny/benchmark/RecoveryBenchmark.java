@@ -0,0 +1,165 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.JournalRecordType;
+import com.bank.tiny.journal.JournalRecovery;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.journal.LedgerSnapshots;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UserRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.LedgerReconciliation;
+import com.bank.tiny.service.PasswordHasher;
+import com.bank.tiny.service.StandingOrders;
+import com.bank.tiny.service.UserService;
+import com.vaadin.flow.spring.security.AuthenticationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restart time of a ledger: loading the newest snapshot and replaying the journal tail written after it, as
+ * {@link JournalRecovery} does on startup. Every account has {@value #SNAPSHOT_TRANSFERS} transfers in the snapshot
+ * and {@value #TAIL_TRANSFERS} in the journal tail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecoveryBenchmark {
+
+    private static final int SNAPSHOT_TRANSFERS = 10;
+    private static final int TAIL_TRANSFERS = 2;
+    private static final String PASSWORD = "{bcrypt}$2a$10$DlzZlqiZMqDIt..o1XRAce0dCcePE6DTm/uth2qnFn7hAhzYM0b6G";
+
+    @Param({"1000", "10000", "100000"})
+    public int accounts;
+
+    private Path directory;
+    private Ledger restored;
+
+    /**
+     * Registers the users, executes the transfers, takes a snapshot in the middle and closes the ledger.
+     */
+    @Setup
+    public void setUp() {
+        directory = Ledgers.createDirectory();
+        Ledger ledger = new Ledger(directory);
+        ledger.journal.recover(null, record -> {
+        });
+        for (int i = 0; i < accounts; i++) {
+            BankUser bankUser = new BankUser();
+            bankUser.setUsername(username(i));
+            bankUser.setPassword(PASSWORD);
+            ledger.userRepository.createUser(bankUser);
+            ledger.journal.append(JournalRecordType.CREATE_USER, bankUser.getUsername(), PASSWORD, 0);
+            ledger.accountService.createAccount(bankUser.getUsername());
+            ledger.accountService.deposit(bankUser.getUsername(), 1_000_000_00L);
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        transfer(ledger.accountService, random, SNAPSHOT_TRANSFERS);
+        ledger.snapshots.takeSnapshot();
+        transfer(ledger.accountService, random, TAIL_TRANSFERS);
+        ledger.close();
+    }
+
+    /**
+     * Closes the restored ledger.
+     */
+    @TearDown(Level.Iteration)
+    public void closeRestored() {
+        if (restored != null) {
+            restored.close();
+            restored = null;
+        }
+    }
+
+    /**
+     * Deletes the journal and the snapshot.
+     */
+    @TearDown
+    public void tearDown() {
+        Ledgers.deleteDirectory(directory);
+    }
+
+    /**
+     * Restores the ledger into empty repositories.
+     * @return restored {@link AccountRepository}
+     */
+    @Benchmark
+    public AccountRepository recover() {
+        restored = new Ledger(directory);
+        restored.recovery.recover();
+        return restored.accountRepository;
+    }
+
+    private void transfer(AccountService accountService, SplittableRandom random, int transfersPerAccount) {
+        for (int i = 0; i < accounts * transfersPerAccount; i++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            accountService.transfer(username(from), username(to), 1 + random.nextInt(1000));
+        }
+    }
+
+    private static String username(int index) {
+        return "user" + index;
+    }
+
+    /**
+     * Services of a ledger stored in the benchmark directory, wired like the application does. Periodic snapshots
+     * and reconciliation are disabled.
+     */
+    private static final class Ledger {
+
+        private final LedgerJournal journal;
+        private final UserRepository userRepository = new UserRepository();
+        private final AccountRepository accountRepository = new AccountRepository();
+        private final PasswordHasher passwordHasher = Ledgers.passwordHasher();
+        private final AccountService accountService;
+        private final StandingOrders standingOrders;
+        private final LedgerReconciliation reconciliation;
+        private final LedgerSnapshots snapshots;
+        private final JournalRecovery recovery;
+
+        private Ledger(Path directory) {
+            journal = Ledgers.journal(directory.resolve("journal"), FsyncPolicy.OS);
+            TransactionHistoryRepository histories = new TransactionHistoryRepository();
+            accountService = new AccountService(accountRepository, histories, journal);
+            UserService userService = new UserService(new AuthenticationContext(), accountService, userRepository,
+                    journal, LedgerMetrics.disabled(), passwordHasher);
+            standingOrders = new StandingOrders(accountService, accountRepository, journal, 256);
+            reconciliation = new LedgerReconciliation(accountRepository, histories, journal, 1, 0);
+            snapshots = new LedgerSnapshots(journal, userRepository, accountRepository, histories, userService,
+                    standingOrders, directory.resolve("snapshots").toString(), 0);
+            recovery = new JournalRecovery(journal, snapshots, userService, accountService, reconciliation,
+                    standingOrders);
+        }
+
+        private void close() {
+            standingOrders.stop();
+            reconciliation.stop();
+            accountService.close();
+            journal.close();
+            passwordHasher.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.StandingOrder;
+import com.bank.tiny.domain.StandingOrderFrequency;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.StandingOrders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Standing orders in a timing wheel that already holds {@link #orders} orders spread over the next month: scheduling
+ * and cancelling one more order, and executing a burst of orders that are all due at once.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class StandingOrderBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final long MONTH_MILLIS = 30 * 24 * 60 * 60 * 1000L;
+
+    @Param({"0", "1000000"})
+    public int orders;
+
+    private final SplittableRandom random = new SplittableRandom(1);
+    private StandingOrders standingOrders;
+
+    /**
+     * Funds the accounts and schedules the waiting orders.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        LedgerJournal journal = Ledgers.journal();
+        AccountRepository accounts = new AccountRepository();
+        AccountService accountService = new AccountService(accounts, new TransactionHistoryRepository(), journal);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountService.createAccount("user" + i);
+            accountService.deposit("user" + i, 1_000_000_000_000L);
+        }
+        standingOrders = new StandingOrders(accountService, accounts, journal, 256);
+        standingOrders.start();
+        standingOrders.stop();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < orders; i++) {
+            schedule(StandingOrderFrequency.MONTHLY, now + 60_000 + random.nextLong(MONTH_MILLIS));
+        }
+    }
+
+    /**
+     * Schedules and cancels an order.
+     * @return whether the order was cancelled
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean scheduleAndCancel() {
+        StandingOrder order = schedule(StandingOrderFrequency.MONTHLY,
+                System.currentTimeMillis() + 60_000 + random.nextLong(MONTH_MILLIS));
+        return standingOrders.cancel(order.usernameFrom(), order.id());
+    }
+
+    /**
+     * Executes the burst of due orders in batches.
+     * @param burst {@link DueOrders} instance
+     * @return number of executed orders
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, batchSize = 1)
+    @Warmup(iterations = 3, batchSize = 1)
+    public int executeDueOrders(DueOrders burst) {
+        return standingOrders.executeDue();
+    }
+
+    private StandingOrder schedule(StandingOrderFrequency frequency, long firstExecution) {
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return standingOrders.schedule("user" + from, "user" + to, 1 + random.nextInt(1000), frequency,
+                Instant.ofEpochMilli(firstExecution));
+    }
+
+    /**
+     * Burst of orders due at once, scheduled before every iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class DueOrders {
+
+        @Param({"100000"})
+        public int dueOrders;
+
+        /**
+         * Schedules the burst of orders due now.
+         * @param benchmark {@link StandingOrderBenchmark} state
+         */
+        @Setup(Level.Iteration)
+        public void setUp(StandingOrderBenchmark benchmark) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < dueOrders; i++) {
+                benchmark.schedule(StandingOrderFrequency.ONCE, now - 1000);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.Transaction;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append and page read throughput of {@link TransactionHistoryRepository} for small and huge accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class TransactionHistoryBenchmark {
+
+    private static final String USERNAME = "benchmark";
+    private static final String COUNTERPARTY = "counterparty";
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100", "1000000"})
+    public int historySize;
+
+    private TransactionHistoryRepository repository;
+
+    /**
+     * Fills the history of the account with {@code historySize} transactions.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = new TransactionHistoryRepository();
+        for (int i = 0; i < historySize; i++) {
+            repository.addTransaction(USERNAME, i, i % 2 == 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAW,
+                    COUNTERPARTY);
+        }
+    }
+
+    /**
+     * Appends one transaction to the history.
+     */
+    @Benchmark
+    public void append() {
+        repository.addTransaction(USERNAME, 100, TransactionType.DEPOSIT, COUNTERPARTY);
+    }
+
+    /**
+     * Reads the newest page, as the grid does on opening the account view.
+     * @return page of transactions
+     */
+    @Benchmark
+    public List<Transaction> readFirstPage() {
+        return repository.getTransactions(USERNAME, 0, PAGE_SIZE);
+    }
+
+    /**
+     * Reads a page from the middle of the history, as the grid does on scrolling.
+     * @return page of transactions
+     */
+    @Benchmark
+    public List<Transaction> readMiddlePage() {
+        return repository.getTransactions(USERNAME, historySize / 2, PAGE_SIZE);
+    }
+}
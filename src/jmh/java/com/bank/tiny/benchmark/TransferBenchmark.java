@@ -0,0 +1,130 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfer throughput of {@link AccountService} at different thread counts. In the {@code contended} mode every thread
+ * transfers between the same two accounts, in the {@code disjoint} mode every thread owns its own pair of accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final long INITIAL_BALANCE = 1_000_000_00L;
+    private static final int MIN_THREADS = 4;
+
+    @Param({"contended", "disjoint"})
+    public String mode;
+
+    private AccountService accountService;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * Creates a fresh ledger per iteration with a pair of accounts for every possible thread.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        accountService = Ledgers.accountService(new TransactionHistoryRepository());
+        int pairs = Math.max(Runtime.getRuntime().availableProcessors(), MIN_THREADS);
+        for (int i = 0; i < pairs * 2; i++) {
+            accountService.createAccount(username(i));
+            accountService.deposit(username(i), INITIAL_BALANCE);
+        }
+    }
+
+    /**
+     * Accounts used by a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Pair {
+
+        private String first;
+        private String second;
+        private boolean forward;
+
+        /**
+         * Picks the accounts of the thread once per trial.
+         * @param benchmark {@link TransferBenchmark} state
+         */
+        @Setup(Level.Trial)
+        public void setUp(TransferBenchmark benchmark) {
+            int pair = "contended".equals(benchmark.mode) ? 0 : benchmark.threads.getAndIncrement();
+            first = username(pair * 2);
+            second = username(pair * 2 + 1);
+        }
+
+        private long transfer(AccountService accountService) {
+            forward = !forward;
+            return forward ? accountService.transfer(first, second, 100) : accountService.transfer(second, first, 100);
+        }
+    }
+
+    /**
+     * Transfers on one thread.
+     * @param pair {@link Pair} state
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    @Threads(1)
+    public long transfer1Thread(Pair pair) {
+        return pair.transfer(accountService);
+    }
+
+    /**
+     * Transfers on two threads.
+     * @param pair {@link Pair} state
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    @Threads(2)
+    public long transfer2Threads(Pair pair) {
+        return pair.transfer(accountService);
+    }
+
+    /**
+     * Transfers on four threads.
+     * @param pair {@link Pair} state
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    @Threads(4)
+    public long transfer4Threads(Pair pair) {
+        return pair.transfer(accountService);
+    }
+
+    /**
+     * Transfers on as many threads as there are processors.
+     * @param pair {@link Pair} state
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long transferMaxThreads(Pair pair) {
+        return pair.transfer(accountService);
+    }
+
+    private static String username(int index) {
+        return "user" + index;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User registration throughput of {@link UserService#createUser(BankUser)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private final AtomicLong usernames = new AtomicLong();
+    private UserService userService;
+
+    /**
+     * Creates a fresh service per iteration.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        userService = Ledgers.userService();
+    }
+
+    /**
+     * Registers a new user on one thread.
+     * @return created user
+     */
+    @Benchmark
+    @Threads(1)
+    public BankUser createUser() {
+        return userService.createUser(newUser());
+    }
+
+    /**
+     * Registers new users on as many threads as there are processors.
+     * @return created user
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BankUser createUserConcurrently() {
+        return userService.createUser(newUser());
+    }
+
+    private BankUser newUser() {
+        BankUser bankUser = new BankUser();
+        bankUser.setUsername("user" + usernames.incrementAndGet());
+        bankUser.setPassword("password");
+        return bankUser;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.domain.VelocityAction;
+import com.bank.tiny.domain.VelocityRule;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.VelocityRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the {@link VelocityRules} on the ledger operations. The {@code disabled} mode has no rules, the
+ * {@code enabled} mode limits withdrawals and deposits with limits that are never reached, so every operation checks
+ * and updates the windows of both legs without being flagged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class VelocityRulesBenchmark {
+
+    private static final long INITIAL_BALANCE = 1_000_000_00L;
+    private static final long WINDOW_MILLIS = 600_000;
+
+    @Param({"disabled", "enabled"})
+    public String rules;
+
+    private AccountService accountService;
+    private boolean forward;
+
+    /**
+     * Creates a fresh ledger per iteration, so that the history does not grow across iterations.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        TransactionHistoryRepository histories = new TransactionHistoryRepository();
+        VelocityRules velocityRules = "enabled".equals(rules)
+                ? new VelocityRules(histories, LedgerMetrics.disabled(),
+                        new VelocityRule(TransactionType.WITHDRAW, WINDOW_MILLIS, Integer.MAX_VALUE, Long.MAX_VALUE,
+                                VelocityAction.REJECT),
+                        new VelocityRule(TransactionType.DEPOSIT, WINDOW_MILLIS, Integer.MAX_VALUE, Long.MAX_VALUE,
+                                VelocityAction.REJECT))
+                : VelocityRules.disabled();
+        accountService = Ledgers.accountService(histories, velocityRules);
+        for (String username : new String[] {"first", "second"}) {
+            accountService.createAccount(username);
+            accountService.deposit(username, INITIAL_BALANCE);
+        }
+    }
+
+    /**
+     * Withdraws one unit.
+     * @return the actual withdrawn amount in cents
+     */
+    @Benchmark
+    public long withdraw() {
+        return accountService.withdraw("first", 1);
+    }
+
+    /**
+     * Transfers one unit back and forth between two accounts.
+     * @return the actual transferred amount in cents
+     */
+    @Benchmark
+    public long transfer() {
+        forward = !forward;
+        return forward ? accountService.transfer("first", "second", 100)
+                : accountService.transfer("second", "first", 100);
+    }
+}
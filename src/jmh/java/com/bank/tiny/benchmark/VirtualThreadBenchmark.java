@@ -0,0 +1,160 @@
+package com.bank.tiny.benchmark;
+
+import com.bank.tiny.VirtualThreads;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.AccountService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Burst of concurrent simulated clients handled on platform or virtual request threads. Every client first blocks
+ * for {@code waitMillis}, as a request thread does while it waits for a slow client or a remote call, then deposits
+ * and reads the first page of its history. In the {@code PLATFORM} mode the clients share a pool of
+ * {@code poolSize} threads, the size of the default Tomcat worker pool, in the {@code VIRTUAL} mode every client
+ * gets its own virtual thread, which requires JDK 21.
+ * <p>
+ * The score is the time to serve the whole burst, the throughput is {@code clients} divided by it. The auxiliary
+ * counters report client latency percentiles in microseconds, measured from the start of the burst, so they include
+ * the time a client waits for a free thread. Read them from the iteration lines, the summary sums them over the
+ * measurement iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    /**
+     * Request thread kinds.
+     */
+    public enum RequestThreads {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public RequestThreads threads;
+
+    @Param("10000")
+    public int clients;
+
+    @Param("20")
+    public int waitMillis;
+
+    @Param("200")
+    public int poolSize;
+
+    private AccountService accountService;
+    private ExecutorService executor;
+    private String[] usernames;
+    private long[] latencies;
+
+    /**
+     * Creates the accounts of the clients and the request executor.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountService = Ledgers.accountService(new TransactionHistoryRepository());
+        usernames = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            usernames[i] = "client-" + i;
+            accountService.createAccount(usernames[i]);
+        }
+        latencies = new long[clients];
+        executor = threads == RequestThreads.VIRTUAL ? VirtualThreads.newThreadPerTaskExecutor("client-")
+                : Executors.newFixedThreadPool(poolSize);
+    }
+
+    /**
+     * Stops the request executor.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serves a burst of clients.
+     * @param latency latency percentiles of the burst
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    @Benchmark
+    public void burst(ClientLatency latency) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            executor.execute(() -> {
+                try {
+                    serve(usernames[client]);
+                } finally {
+                    latencies[client] = System.nanoTime() - start;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        latency.record(latencies);
+    }
+
+    private void serve(String username) {
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        accountService.deposit(username, 100);
+        accountService.getTransactions(username, 0, 20);
+    }
+
+    /**
+     * Client latency percentiles of a burst, in microseconds.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ClientLatency {
+
+        public long p50Micros;
+        public long p99Micros;
+        public long maxMicros;
+
+        /**
+         * Clears the counters of the previous burst.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            p50Micros = 0;
+            p99Micros = 0;
+            maxMicros = 0;
+        }
+
+        private void record(long[] latencies) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            p50Micros = TimeUnit.NANOSECONDS.toMicros(sorted[(int) (sorted.length * 0.5)]);
+            p99Micros = TimeUnit.NANOSECONDS.toMicros(sorted[(int) (sorted.length * 0.99)]);
+            maxMicros = TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length - 1]);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.bank.tiny;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
 
+@Push
 @PWA(name = "Tiny Bank on Vaadin", shortName = "Tiny Bank")
 public class AppShell implements AppShellConfigurator {
 }
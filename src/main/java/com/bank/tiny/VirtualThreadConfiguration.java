@@ -0,0 +1,46 @@
+package com.bank.tiny;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in virtual thread mode, enabled by {@code tinybank.threads.virtual=true} on JDK 21 or newer. Tomcat handles
+ * every request, including Vaadin and push requests, on its own virtual thread instead of its bounded platform
+ * thread pool. {@code AccountService} and {@code UserService} run on the request thread, so their blocking waits on
+ * the journal, account locks and the password hashing pool no longer hold a platform thread. Password hashing itself
+ * stays on its bounded platform pool because it is CPU bound.
+ */
+@Configuration
+@ConditionalOnProperty(name = "tinybank.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    // not a bean, an Executor bean would replace the application task executor of Spring Boot
+    private final ExecutorService requestExecutor = VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+
+    /**
+     * Replaces the Tomcat worker pool with an executor starting a virtual thread per request.
+     * @return {@link TomcatProtocolHandlerCustomizer} instance
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        LOG.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    /**
+     * Stops the request executor.
+     */
+    @PreDestroy
+    public void close() {
+        requestExecutor.shutdown();
+    }
+}
@@ -0,0 +1,437 @@
+package com.bank.tiny.api;
+
+import com.bank.tiny.domain.AccountStatement;
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.domain.ExportFormat;
+import com.bank.tiny.domain.Money;
+import com.bank.tiny.domain.StatementTotals;
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UsernameDictionary;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.HistoryExporter;
+import com.bank.tiny.service.PaymentFileImporter;
+import com.bank.tiny.service.UserService;
+import com.bank.tiny.service.VelocityLimitExceededException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Stateless JSON API of account operations, an alternative to {@code UserAccountView} for batch systems and
+ * partner integrations. Operations act on the account of the authenticated user.
+ * <p>
+ * The history is paged with a cursor, which is the append index of the entry preceding the page. History is
+ * append-only, so the cursor stays valid while new transactions arrive. Pages are streamed straight from the
+ * history columns. The history can be filtered by counterparty, type and amount range, which is served by the
+ * secondary indexes of the history. The whole history or a period of it can be exported as CSV or JSON, streamed
+ * and gzip compressed for clients that accept it. Bulk payment files are imported the same way, streamed in and the
+ * report streamed out.
+ */
+@RestController
+@RequestMapping("/api")
+public class AccountApiController {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_STATEMENT_DAYS = 30;
+    private static final int USERNAME_MAX_LENGTH = 256;
+    private static final int PASSWORD_MIN_LENGTH = 4;
+    private static final String PAYMENT_FILE_TYPE = "text/csv";
+
+    private final AccountService accountService;
+    private final UserService userService;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final HistoryExporter historyExporter;
+    private final PaymentFileImporter paymentFileImporter;
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Parametrized constructor.
+     * @param accountService {@link AccountService} instance
+     * @param userService {@link UserService} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param historyExporter {@link HistoryExporter} instance
+     * @param paymentFileImporter {@link PaymentFileImporter} instance
+     * @param objectMapper {@link ObjectMapper} instance
+     */
+    public AccountApiController(AccountService accountService, UserService userService,
+                                TransactionHistoryRepository transactionHistoryRepository,
+                                HistoryExporter historyExporter, PaymentFileImporter paymentFileImporter,
+                                ObjectMapper objectMapper) {
+        this.accountService = accountService;
+        this.userService = userService;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.historyExporter = historyExporter;
+        this.paymentFileImporter = paymentFileImporter;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Amount request.
+     * @param amount amount with at most 2 fraction digits
+     */
+    public record AmountRequest(BigDecimal amount) {
+    }
+
+    /**
+     * Transfer request.
+     * @param to recipient username
+     * @param amount amount with at most 2 fraction digits
+     */
+    public record TransferRequest(String to, BigDecimal amount) {
+    }
+
+    /**
+     * Registration request.
+     * @param username username
+     * @param password password
+     */
+    public record RegistrationRequest(String username, String password) {
+    }
+
+    /**
+     * Account balance.
+     * @param username user
+     * @param balance current balance
+     */
+    public record BalanceResponse(String username, BigDecimal balance) {
+    }
+
+    /**
+     * Result of a withdrawal or transfer.
+     * @param amount the actually moved amount
+     * @param balance balance after the operation
+     */
+    public record OperationResponse(BigDecimal amount, BigDecimal balance) {
+    }
+
+    /**
+     * Statement totals.
+     * @param cashDeposited deposited cash
+     * @param cashWithdrawn withdrawn cash
+     * @param transferredIn amount received from other users
+     * @param transferredOut amount sent to other users
+     * @param cashDeposits number of cash deposits
+     * @param cashWithdrawals number of cash withdrawals
+     * @param transfersIn number of received transfers
+     * @param transfersOut number of sent transfers
+     */
+    public record TotalsResponse(BigDecimal cashDeposited, BigDecimal cashWithdrawn, BigDecimal transferredIn,
+                                 BigDecimal transferredOut, long cashDeposits, long cashWithdrawals, long transfersIn,
+                                 long transfersOut) {
+
+        static TotalsResponse of(StatementTotals totals) {
+            return new TotalsResponse(Money.toBigDecimal(totals.cashDeposited()),
+                    Money.toBigDecimal(totals.cashWithdrawn()), Money.toBigDecimal(totals.transferredIn()),
+                    Money.toBigDecimal(totals.transferredOut()), totals.cashDeposits(), totals.cashWithdrawals(),
+                    totals.transfersIn(), totals.transfersOut());
+        }
+    }
+
+    /**
+     * Statement totals of one day.
+     * @param date UTC date
+     * @param totals {@link TotalsResponse} of the day
+     */
+    public record DayResponse(LocalDate date, TotalsResponse totals) {
+    }
+
+    /**
+     * Statement summary.
+     * @param totals {@link TotalsResponse} since the account was opened
+     * @param days {@link DayResponse}s of the requested days with movements, oldest first
+     */
+    public record StatementResponse(TotalsResponse totals, List<DayResponse> days) {
+    }
+
+    /**
+     * Registered user.
+     * @param username username
+     */
+    public record UserResponse(String username) {
+    }
+
+    /**
+     * Error.
+     * @param error error message
+     */
+    public record ErrorResponse(String error) {
+    }
+
+    /**
+     * Gets the balance.
+     * @param user authenticated user
+     * @return {@link BalanceResponse}
+     */
+    @GetMapping("/account")
+    public BalanceResponse balance(@AuthenticationPrincipal BankUser user) {
+        return new BalanceResponse(user.getUsername(), accountService.getBalance(user.getUsername()));
+    }
+
+    /**
+     * Deposits money.
+     * @param user authenticated user
+     * @param request {@link AmountRequest}
+     * @return {@link BalanceResponse} after the deposit
+     */
+    @PostMapping("/account/deposit")
+    public BalanceResponse deposit(@AuthenticationPrincipal BankUser user, @RequestBody AmountRequest request) {
+        accountService.deposit(user.getUsername(), checkAmount(request.amount()));
+        return balance(user);
+    }
+
+    /**
+     * Withdraws money. If the amount exceeds the balance, only the balance is withdrawn.
+     * @param user authenticated user
+     * @param request {@link AmountRequest}
+     * @return {@link OperationResponse} with the withdrawn amount
+     */
+    @PostMapping("/account/withdraw")
+    public OperationResponse withdraw(@AuthenticationPrincipal BankUser user, @RequestBody AmountRequest request) {
+        BigDecimal withdrawn = accountService.withdraw(user.getUsername(), checkAmount(request.amount()));
+        return new OperationResponse(withdrawn, accountService.getBalance(user.getUsername()));
+    }
+
+    /**
+     * Transfers money to another user. If the amount exceeds the balance, only the balance is transferred.
+     * @param user authenticated user
+     * @param request {@link TransferRequest}
+     * @return {@link OperationResponse} with the transferred amount
+     */
+    @PostMapping("/account/transfer")
+    public OperationResponse transfer(@AuthenticationPrincipal BankUser user, @RequestBody TransferRequest request) {
+        BigDecimal amount = checkAmount(request.amount());
+        if (request.to() == null || !userService.userExists(request.to())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("User [%s] does not exists or active", request.to()));
+        }
+        BigDecimal transferred = accountService.transfer(user.getUsername(), request.to(), amount);
+        return new OperationResponse(transferred, accountService.getBalance(user.getUsername()));
+    }
+
+    /**
+     * Streams a page of the transaction history, newest transactions first.
+     * @param user authenticated user
+     * @param cursor {@code nextCursor} of the previous page, absent for the newest page
+     * @param limit maximum number of transactions, up to {@value #MAX_PAGE_SIZE}
+     * @param counterparty counterparty of transfers to return
+     * @param type type of transactions to return
+     * @param minAmount minimum amount, inclusive
+     * @param maxAmount maximum amount, inclusive
+     * @param response HTTP response
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping("/account/transactions")
+    public void transactions(@AuthenticationPrincipal BankUser user, @RequestParam(required = false) Integer cursor,
+                             @RequestParam(defaultValue = "50") int limit,
+                             @RequestParam(required = false) String counterparty,
+                             @RequestParam(required = false) TransactionType type,
+                             @RequestParam(required = false) BigDecimal minAmount,
+                             @RequestParam(required = false) BigDecimal maxAmount,
+                             HttpServletResponse response) throws IOException {
+        if (cursor != null && cursor < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Cursor must not be negative and limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TransactionFilter filter = new TransactionFilter(counterparty, type,
+                minAmount == null ? null : Money.toCents(minAmount),
+                maxAmount == null ? null : Money.toCents(maxAmount));
+        int[] page = accountService.findTransactionIndices(user.getUsername(), filter, cursor, limit + 1);
+        TransactionHistory history = transactionHistoryRepository.getHistory(user.getUsername());
+        UsernameDictionary dictionary = transactionHistoryRepository.getDictionary();
+        int pageSize = Math.min(page.length, limit);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator json = jsonFactory.createGenerator(response.getOutputStream())) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("transactions");
+            for (int j = 0; j < pageSize; j++) {
+                int i = page[j];
+                json.writeStartObject();
+                json.writeNumberField("index", i);
+                json.writeNumberField("id", history.id(i));
+                json.writeStringField("timestamp", Instant.ofEpochMilli(history.timestamp(i)).toString());
+                json.writeNumberField("amount", Money.toBigDecimal(history.amount(i)));
+                json.writeStringField("type", history.type(i).name());
+                json.writeStringField("user", dictionary.name(history.counterpartyId(i)));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            if (page.length > limit) {
+                json.writeNumberField("nextCursor", page[limit - 1]);
+            } else {
+                json.writeNullField("nextCursor");
+            }
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Exports the transaction history, oldest transactions first, with the balance after every transaction. The
+     * export is written while the history is read, so its size is not limited by memory, and it is gzip compressed
+     * if the client accepts it.
+     * @param user authenticated user
+     * @param format {@link ExportFormat}
+     * @param from first UTC date of the exported period, absent together with {@code to} for the whole history
+     * @param to end UTC date of the exported period, exclusive
+     * @param acceptEncoding {@code Accept-Encoding} header
+     * @param response HTTP response
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping("/account/export")
+    public void export(@AuthenticationPrincipal BankUser user, @RequestParam(defaultValue = "CSV") ExportFormat format,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                       HttpServletResponse response) throws IOException {
+        if ((from == null) != (to == null) || from != null && to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "From and to must be given together and to must not be before from");
+        }
+        boolean compressed = acceptEncoding != null && acceptEncoding.contains("gzip");
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("transactions." + format.extension()).build().toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (compressed) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        historyExporter.export(user.getUsername(), from, to, format, compressed, response.getOutputStream());
+    }
+
+    /**
+     * Imports a CSV payment file paying from the account of the authenticated user. The file is executed in chunks
+     * while it is read and the report line of every payment is written as soon as its chunk is executed, so the file
+     * size is not limited by memory. Lines paying from another account are rejected.
+     * @param user authenticated user
+     * @param request HTTP request with the {@code from,to,amount} lines
+     * @param response HTTP response receiving the CSV report
+     * @throws IOException if the request cannot be read or the response cannot be written
+     */
+    @PostMapping(value = "/account/payments", consumes = PAYMENT_FILE_TYPE)
+    public void importPayments(@AuthenticationPrincipal BankUser user, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        if (request.getCharacterEncoding() == null) {
+            request.setCharacterEncoding("UTF-8");
+        }
+        response.setContentType(PAYMENT_FILE_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        paymentFileImporter.importPayments(request.getReader(), response.getWriter(), user.getUsername());
+    }
+
+    /**
+     * Gets the statement summary. It is read from aggregates maintained on every operation, so the cost does not
+     * depend on the history size.
+     * @param user authenticated user
+     * @param from first UTC date of the daily totals, by default {@value #DEFAULT_STATEMENT_DAYS} days before
+     *             {@code to}
+     * @param to last UTC date of the daily totals, by default today
+     * @return {@link StatementResponse}
+     */
+    @GetMapping("/account/statement")
+    public StatementResponse statement(@AuthenticationPrincipal BankUser user,
+                                       @RequestParam(required = false)
+                                       @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                       @RequestParam(required = false)
+                                       @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate lastDay = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate firstDay = from != null ? from : lastDay.minusDays(DEFAULT_STATEMENT_DAYS - 1);
+        if (firstDay.isAfter(lastDay)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "From must not be after to");
+        }
+        AccountStatement statement = accountService.getStatement(user.getUsername(), firstDay, lastDay);
+        return new StatementResponse(TotalsResponse.of(statement.totals()), statement.days().stream()
+                .map(day -> new DayResponse(day.date(), TotalsResponse.of(day.totals())))
+                .toList());
+    }
+
+    /**
+     * Registers a user.
+     * @param request {@link RegistrationRequest}
+     * @return {@link UserResponse}
+     */
+    @PostMapping("/users")
+    @ResponseStatus(HttpStatus.CREATED)
+    public UserResponse register(@RequestBody RegistrationRequest request) {
+        if (request.username() == null || request.username().isBlank()
+                || request.username().length() > USERNAME_MAX_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Username is required and must be at most " + USERNAME_MAX_LENGTH + " characters long");
+        }
+        if (request.password() == null || request.password().length() < PASSWORD_MIN_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Password must be at least " + PASSWORD_MIN_LENGTH + " characters long");
+        }
+        BankUser bankUser = new BankUser();
+        bankUser.setUsername(request.username());
+        bankUser.setPassword(request.password());
+        if (userService.createUser(bankUser) == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "User with this username already exists");
+        }
+        return new UserResponse(bankUser.getUsername());
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    ResponseEntity<ErrorResponse> handleStatus(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(new ErrorResponse(e.getReason()));
+    }
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    ResponseEntity<ErrorResponse> handleBadParameter(MethodArgumentTypeMismatchException e) {
+        return ResponseEntity.badRequest().body(new ErrorResponse("Invalid value of " + e.getName()));
+    }
+
+    @ExceptionHandler(ArithmeticException.class)
+    ResponseEntity<ErrorResponse> handleOverflow(ArithmeticException e) {
+        return ResponseEntity.badRequest().body(new ErrorResponse("Amount is out of range"));
+    }
+
+    @ExceptionHandler(VelocityLimitExceededException.class)
+    ResponseEntity<ErrorResponse> handleVelocity(VelocityLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ErrorResponse(e.getMessage()));
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    ResponseEntity<ErrorResponse> handleOverload(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse("Too many requests at the moment, please try again later"));
+    }
+
+    private static BigDecimal checkAmount(BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0 || amount.scale() > Money.SCALE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Amount must be positive with a maximum value of 2 digits after the comma");
+        }
+        return amount;
+    }
+}
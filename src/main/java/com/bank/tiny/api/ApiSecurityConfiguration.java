@@ -0,0 +1,66 @@
+package com.bank.tiny.api;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.SecurityFilterChain;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
+
+/**
+ * Security of the {@code /api/**} endpoints. Unlike the Vaadin UI, the API is stateless: every request is
+ * authenticated with HTTP basic authentication, no session is created and CSRF protection is not needed. Only user
+ * registration is open to anonymous clients.
+ */
+@Configuration
+public class ApiSecurityConfiguration {
+
+    private static final byte[] UNAUTHORIZED_BODY = "{\"error\":\"Unauthorized\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UNAVAILABLE_BODY =
+            "{\"error\":\"Too many login attempts, please try again later\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Creates the filter chain of the API, applied before the Vaadin one.
+     * @param http {@link HttpSecurity} instance
+     * @return {@link SecurityFilterChain} of the API
+     * @throws Exception if the chain cannot be built
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http) throws Exception {
+        AuthenticationEntryPoint entryPoint = (request, response, authException) -> {
+            // written directly, an error dispatch would be handled by the Vaadin filter chain
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            if (authException instanceof AuthenticationServiceException) {
+                // the password hashing pool is overloaded, the credentials were not checked
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.getOutputStream().write(UNAVAILABLE_BODY);
+                return;
+            }
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"tinybank\"");
+            response.getOutputStream().write(UNAUTHORIZED_BODY);
+        };
+        return http.securityMatcher(antMatcher("/api/**"))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(antMatcher(HttpMethod.POST, "/api/users")).permitAll()
+                        .anyRequest().authenticated())
+                .httpBasic(basic -> basic.authenticationEntryPoint(entryPoint))
+                .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(entryPoint))
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .requestCache(AbstractHttpConfigurer::disable)
+                .csrf(AbstractHttpConfigurer::disable)
+                .build();
+    }
+}
@@ -1,20 +1,59 @@
 package com.bank.tiny.domain;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Account domain class.
+ * Account domain class. The balance is kept in cents, see {@link Money}. Balance mutations must be performed while
+ * holding the account lock, see {@link #lock()}.
+ * <p>
+ * An account receiving transfers from many threads at once can be promoted to a hot account, see {@link #promote}.
+ * Inbound transfer legs of a hot account do not take the account lock but one of its credit stripes, in the style of
+ * {@link java.util.concurrent.atomic.LongAdder}: every stripe has its own lock and collects pending credits, and a
+ * caller moves on to another stripe when its stripe is taken. Acquiring the account lock also acquires every stripe
+ * and merges the pending credits into the balance and, through the {@link CreditSink}, into the history in id order.
+ * The holder of the account lock therefore always sees the exact balance, and a withdrawal can never overdraw.
+ * In the lock order of accounts the stripes of a hot account rank with its account lock, right after it.
+ * <p>
+ * The {@link VelocityWindow}s of the account are created on its first movement of their type and are guarded like the
+ * balance; inbound legs of a hot account update theirs under a credit stripe and the credit order lock, which exclude
+ * both each other and the holder of the account lock.
  */
 public class Account {
 
-    private BigDecimal amount = BigDecimal.ZERO;
-    private boolean active = true;
+    private static final int CONTENTION_WINDOW = 256;
+    private static final int MERGE_THRESHOLD = 1024;
 
-    public BigDecimal getAmount() {
+    private final String username;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock creditOrder = new ReentrantLock();
+    private volatile long amount;
+    private volatile boolean active = true;
+    private long sequence;
+    private volatile CreditStripe[] stripes;
+    private CreditSink creditSink;
+    private int acquisitions;
+    private int contendedAcquisitions;
+    private int contention;
+    private VelocityWindow[] velocityWindows;
+
+    /**
+     * Creates account for the specified user.
+     * @param username account owner
+     */
+    public Account(String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
@@ -25,4 +64,285 @@ public class Account {
     public void setActive(boolean active) {
         this.active = active;
     }
+
+    /**
+     * Gets journal sequence number of the last mutation applied to the account.
+     * @return journal sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Gets the balance, merging the pending credits of a hot account first.
+     * @return balance in cents
+     */
+    public long getBalance() {
+        if (stripes == null) {
+            return amount;
+        }
+        lock();
+        try {
+            return amount;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Gets the sliding window counter of a transaction type.
+     * @param type transaction type
+     * @return {@link VelocityWindow} instance or {@code null} if none was set
+     */
+    public VelocityWindow getVelocityWindow(TransactionType type) {
+        return velocityWindows == null ? null : velocityWindows[type.ordinal()];
+    }
+
+    /**
+     * Sets the sliding window counter of a transaction type.
+     * @param type transaction type
+     * @param window {@link VelocityWindow} instance
+     */
+    public void setVelocityWindow(TransactionType type, VelocityWindow window) {
+        if (velocityWindows == null) {
+            velocityWindows = new VelocityWindow[TransactionType.values().length];
+        }
+        velocityWindows[type.ordinal()] = window;
+    }
+
+    /**
+     * Acquires the account lock. The lock of a hot account also acquires its credit stripes and merges their pending
+     * credits.
+     */
+    public void lock() {
+        if (!lock.tryLock()) {
+            lock.lock();
+            contendedAcquisitions++;
+        }
+        if (++acquisitions == CONTENTION_WINDOW) {
+            contention = contendedAcquisitions;
+            acquisitions = 0;
+            contendedAcquisitions = 0;
+        }
+        CreditStripe[] current = stripes;
+        if (current != null && lock.getHoldCount() == 1) {
+            for (CreditStripe stripe : current) {
+                stripe.lock();
+            }
+            merge(current);
+        }
+    }
+
+    /**
+     * Releases the account lock.
+     */
+    public void unlock() {
+        CreditStripe[] current = stripes;
+        if (current != null && lock.getHoldCount() == 1) {
+            for (int i = current.length - 1; i >= 0; i--) {
+                current[i].unlock();
+            }
+        }
+        lock.unlock();
+    }
+
+    /**
+     * Merges the pending credits of a hot account into its balance and history.
+     */
+    public void mergeCredits() {
+        if (stripes != null) {
+            lock();
+            unlock();
+        }
+    }
+
+    /**
+     * Gets the number of lock acquisitions that had to wait for another thread, out of the last
+     * {@value #CONTENTION_WINDOW} acquisitions. Must be called while holding the account lock.
+     * @return number of contended acquisitions
+     */
+    public int getContention() {
+        return contention;
+    }
+
+    /**
+     * Checks whether the account is a hot account.
+     * @return {@code true} if inbound transfer legs go to credit stripes
+     */
+    public boolean isHot() {
+        return stripes != null;
+    }
+
+    /**
+     * Promotes the account to a hot account. Must be called while holding the account lock once; does nothing if the
+     * account is already hot or the lock is held reentrantly.
+     * @param stripeCount number of credit stripes, a power of two
+     * @param sink receiver of the merged credits, called under the account lock
+     */
+    public void promote(int stripeCount, CreditSink sink) {
+        if (stripes != null || lock.getHoldCount() != 1) {
+            return;
+        }
+        CreditStripe[] created = new CreditStripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            created[i] = new CreditStripe();
+            created[i].lock();
+        }
+        creditSink = sink;
+        stripes = created;
+    }
+
+    /**
+     * Acquires a credit stripe of a hot account, preferring one that is not taken by another thread.
+     * @param hash value spreading the callers over the stripes
+     * @return index of the acquired stripe
+     */
+    public int lockCreditStripe(int hash) {
+        CreditStripe[] current = stripes;
+        int mask = current.length - 1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[(hash + i) & mask].tryLock()) {
+                return (hash + i) & mask;
+            }
+        }
+        current[hash & mask].lock();
+        return hash & mask;
+    }
+
+    /**
+     * Gets the lock that orders credits of a hot account: transaction ids and timestamps of the credits must be taken
+     * under it, so that both orders agree in the history.
+     * @return lock
+     */
+    public ReentrantLock getCreditOrder() {
+        return creditOrder;
+    }
+
+    /**
+     * Adds a pending credit to an acquired stripe of a hot account.
+     * @param stripe index of the stripe
+     * @param cents amount in cents
+     * @param counterparty user the credit comes from
+     * @param sequence transaction id
+     * @param timestamp transaction time in epoch milliseconds
+     */
+    public void credit(int stripe, long cents, String counterparty, long sequence, long timestamp) {
+        stripes[stripe].add(cents, counterparty, sequence, timestamp);
+    }
+
+    /**
+     * Gets the sum of the pending credits of a hot account, which may miss credits being added.
+     * @return amount in cents
+     */
+    public long getPendingCredits() {
+        CreditStripe[] current = stripes;
+        long pending = 0;
+        if (current != null) {
+            for (CreditStripe stripe : current) {
+                pending += stripe.pending;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Releases a credit stripe of a hot account. A stripe holding many pending credits is merged first if the account
+     * lock is free.
+     * @param stripe index of the stripe
+     */
+    public void unlockCreditStripe(int stripe) {
+        CreditStripe[] current = stripes;
+        if (current[stripe].size >= MERGE_THRESHOLD && lock.tryLock()) {
+            try {
+                for (CreditStripe other : current) {
+                    other.lock();
+                }
+                merge(current);
+                for (int i = current.length - 1; i >= 0; i--) {
+                    current[i].unlock();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        current[stripe].unlock();
+    }
+
+    private void merge(CreditStripe[] current) {
+        while (true) {
+            CreditStripe next = null;
+            for (CreditStripe stripe : current) {
+                if (stripe.merged < stripe.size
+                        && (next == null || stripe.sequences[stripe.merged] < next.sequences[next.merged])) {
+                    next = stripe;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            int i = next.merged++;
+            amount += next.amounts[i];
+            sequence = Math.max(sequence, next.sequences[i]);
+            creditSink.credit(this, next.amounts[i], next.counterparties[i], next.sequences[i], next.timestamps[i]);
+        }
+        for (CreditStripe stripe : current) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Receiver of the credits merged from the stripes of a hot account.
+     */
+    @FunctionalInterface
+    public interface CreditSink {
+
+        /**
+         * Records a merged credit.
+         * @param account credited account
+         * @param cents amount in cents
+         * @param counterparty user the credit comes from
+         * @param sequence transaction id
+         * @param timestamp transaction time in epoch milliseconds
+         */
+        void credit(Account account, long cents, String counterparty, long sequence, long timestamp);
+    }
+
+    /**
+     * Credit stripe of a hot account: a lock and the credits added under it, in id order.
+     */
+    private static final class CreditStripe extends ReentrantLock {
+
+        private long[] amounts = new long[16];
+        private long[] sequences = new long[16];
+        private long[] timestamps = new long[16];
+        private String[] counterparties = new String[16];
+        private int size;
+        private int merged;
+        private volatile long pending;
+
+        private void add(long cents, String counterparty, long sequence, long timestamp) {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+                sequences = Arrays.copyOf(sequences, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                counterparties = Arrays.copyOf(counterparties, size * 2);
+            }
+            amounts[size] = cents;
+            sequences[size] = sequence;
+            timestamps[size] = timestamp;
+            counterparties[size++] = counterparty;
+            pending += cents;
+        }
+
+        private void clear() {
+            Arrays.fill(counterparties, 0, size, null);
+            size = 0;
+            merged = 0;
+            pending = 0;
+        }
+    }
 }
@@ -0,0 +1,11 @@
+package com.bank.tiny.domain;
+
+import java.util.List;
+
+/**
+ * Account statement summary built from incrementally maintained aggregates.
+ * @param totals {@link StatementTotals} since the account was opened
+ * @param days {@link DailyStatement}s of the requested days with movements, oldest first
+ */
+public record AccountStatement(StatementTotals totals, List<DailyStatement> days) {
+}
@@ -0,0 +1,14 @@
+package com.bank.tiny.domain;
+
+import java.time.Instant;
+
+/**
+ * Result of a balance snapshot export.
+ * @param asOf point in time of the balances
+ * @param accounts number of exported accounts
+ * @param totalCents sum of all balances in cents
+ * @param durationMillis duration of the export in milliseconds
+ * @param file exported file or {@code null} if the snapshot was streamed
+ */
+public record BalanceExport(Instant asOf, int accounts, long totalCents, long durationMillis, String file) {
+}
@@ -1,10 +1,27 @@
 package com.bank.tiny.domain;
 
-public class BankUser {
+import com.bank.tiny.view.auth.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bank user, which is also the Spring Security principal, so credentials are kept only once. The password is kept
+ * encoded with its encoder id prefix, e.g. {@code {bcrypt}$2a$10$...}; the {@link #isActive() active} flag is the
+ * {@link #isEnabled() enabled} flag of the principal and is changed in place.
+ */
+public class BankUser implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+    private static final List<GrantedAuthority> AUTHORITIES = AuthorityUtils.createAuthorityList(
+            "ROLE_" + Role.USER.name());
 
     private String username;
     private String password;
-    private boolean active = true;
+    private volatile boolean active = true;
 
     public String getUsername() {
         return username;
@@ -29,4 +46,29 @@ public class BankUser {
     public void setActive(boolean active) {
         this.active = active;
     }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return active;
+    }
 }
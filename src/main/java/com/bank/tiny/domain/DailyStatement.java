@@ -0,0 +1,11 @@
+package com.bank.tiny.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Account movements of one day.
+ * @param date UTC date
+ * @param totals {@link StatementTotals} of the day
+ */
+public record DailyStatement(LocalDate date, StatementTotals totals) {
+}
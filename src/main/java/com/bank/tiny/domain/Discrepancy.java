@@ -0,0 +1,14 @@
+package com.bank.tiny.domain;
+
+/**
+ * Ledger inconsistency found by reconciliation.
+ * @param type discrepancy type
+ * @param username account the discrepancy was found on
+ * @param counterparty counterparty of the transfer or {@code null} for a {@link DiscrepancyType#BALANCE_MISMATCH}
+ * @param transactionId id of the transfer or {@code 0} for a {@link DiscrepancyType#BALANCE_MISMATCH}
+ * @param expected balance summed from the history or amount of the leg on the account, in cents
+ * @param actual balance of the account or amount of the matching leg, {@code 0} if it is missing, in cents
+ */
+public record Discrepancy(DiscrepancyType type, String username, String counterparty, long transactionId,
+                          long expected, long actual) {
+}
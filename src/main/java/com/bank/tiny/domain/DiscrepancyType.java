@@ -0,0 +1,20 @@
+package com.bank.tiny.domain;
+
+public enum DiscrepancyType {
+    /**
+     * The balance differs from the sum of the account history.
+     */
+    BALANCE_MISMATCH,
+    /**
+     * A sent transfer has no matching received transfer on the counterparty.
+     */
+    MISSING_DEPOSIT,
+    /**
+     * A received transfer has no matching sent transfer on the counterparty.
+     */
+    MISSING_WITHDRAWAL,
+    /**
+     * The legs of a transfer have different amounts.
+     */
+    AMOUNT_MISMATCH
+}
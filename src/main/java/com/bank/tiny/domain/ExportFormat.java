@@ -0,0 +1,39 @@
+package com.bank.tiny.domain;
+
+/**
+ * Format of an exported transaction history.
+ */
+public enum ExportFormat {
+    /**
+     * Comma separated values with a header line.
+     */
+    CSV("text/csv", "csv"),
+    /**
+     * JSON object with an array of transactions.
+     */
+    JSON("application/json", "json");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the media type of the format.
+     * @return media type
+     */
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * Gets the file name extension of the format.
+     * @return extension without the dot
+     */
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,58 @@
+package com.bank.tiny.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point money helpers. The ledger keeps amounts as {@code long} minor units (cents), {@link BigDecimal} is only
+ * used at the UI boundary.
+ */
+public final class Money {
+
+    /**
+     * Number of digits after the decimal point.
+     */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * Converts decimal amount to cents.
+     * @param amount decimal amount with at most {@link #SCALE} digits after the decimal point
+     * @return amount in cents
+     * @throws ArithmeticException if the amount has more fractional digits or does not fit into {@code long}
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * Converts cents to decimal amount.
+     * @param cents amount in cents
+     * @return decimal amount
+     */
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /**
+     * Adds two amounts in cents.
+     * @param cents first amount
+     * @param otherCents second amount
+     * @return sum of the amounts
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long add(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+
+    /**
+     * Checks that an amount in cents can be added to a balance, before anything is changed.
+     * @param balanceCents balance in cents
+     * @param cents amount to add in cents
+     * @throws ArithmeticException if the resulting balance would overflow
+     */
+    public static void checkAdd(long balanceCents, long cents) {
+        add(balanceCents, cents);
+    }
+}
@@ -0,0 +1,26 @@
+package com.bank.tiny.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Account statement for a period of UTC dates. Transactions of the period are the history entries
+ * {@code [firstIndex, endIndex)}, the history is ordered by time.
+ * @param from first date of the period, inclusive
+ * @param to end date of the period, exclusive
+ * @param openingBalance balance in cents at the start of the period
+ * @param closingBalance balance in cents at the end of the period
+ * @param totals {@link StatementTotals} of the period
+ * @param firstIndex history index of the first transaction of the period
+ * @param endIndex history index following the last transaction of the period
+ */
+public record PeriodStatement(LocalDate from, LocalDate to, long openingBalance, long closingBalance,
+                              StatementTotals totals, int firstIndex, int endIndex) {
+
+    /**
+     * Gets the number of transactions of the period.
+     * @return number of transactions
+     */
+    public int transactionCount() {
+        return endIndex - firstIndex;
+    }
+}
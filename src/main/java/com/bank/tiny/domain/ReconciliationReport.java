@@ -0,0 +1,25 @@
+package com.bank.tiny.domain;
+
+import java.util.List;
+
+/**
+ * Result of a ledger reconciliation.
+ * @param cutoffSequence transfers with an id up to this one were paired, later ones were still in flight
+ * @param accounts number of checked accounts
+ * @param transactions number of checked history entries
+ * @param transferLegs number of paired transfer legs
+ * @param discrepancyCount number of found discrepancies
+ * @param discrepancies found discrepancies, at most a fixed number of them
+ * @param durationMillis duration of the reconciliation in milliseconds
+ */
+public record ReconciliationReport(long cutoffSequence, int accounts, long transactions, long transferLegs,
+                                   long discrepancyCount, List<Discrepancy> discrepancies, long durationMillis) {
+
+    /**
+     * Checks whether the ledger is consistent.
+     * @return {@code true} if no discrepancy was found
+     */
+    public boolean isConsistent() {
+        return discrepancyCount == 0;
+    }
+}
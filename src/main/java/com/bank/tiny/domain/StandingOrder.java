@@ -0,0 +1,43 @@
+package com.bank.tiny.domain;
+
+/**
+ * Scheduled transfer, executed at its first execution time and then repeated with its frequency.
+ * @param id order id, the sequence number of the journal record that created the order
+ * @param usernameFrom user whose money is being withdrawn
+ * @param usernameTo user to whom the account is deposited
+ * @param amount amount of every transfer in cents
+ * @param frequency repetition frequency
+ * @param firstExecution time of the first execution in epoch milliseconds
+ * @param executions number of executed occurrences
+ * @param sequence sequence number of the last journal record reflected in the order
+ */
+public record StandingOrder(long id, String usernameFrom, String usernameTo, long amount,
+                            StandingOrderFrequency frequency, long firstExecution, int executions, long sequence) {
+
+    /**
+     * Gets the time of the next execution.
+     * @return time of the next execution in epoch milliseconds
+     * @throws IllegalArgumentException if the order is finished
+     */
+    public long nextExecution() {
+        return frequency.occurrence(firstExecution, executions);
+    }
+
+    /**
+     * Checks whether the order has no further executions.
+     * @return {@code true} if the order is finished
+     */
+    public boolean isFinished() {
+        return !frequency.hasOccurrence(executions);
+    }
+
+    /**
+     * Creates the state of the order after its next occurrence was executed.
+     * @param sequence sequence number of the journal record of the execution or a later one
+     * @return {@link StandingOrder} instance
+     */
+    public StandingOrder executed(long sequence) {
+        return new StandingOrder(id, usernameFrom, usernameTo, amount, frequency, firstExecution, executions + 1,
+                sequence);
+    }
+}
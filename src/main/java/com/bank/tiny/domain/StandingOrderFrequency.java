@@ -0,0 +1,60 @@
+package com.bank.tiny.domain;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * Repetition frequencies of a {@link StandingOrder}. Occurrences are counted from the first execution in UTC, so a
+ * monthly order anchored on the 31st runs on the last day of shorter months without drifting.
+ */
+public enum StandingOrderFrequency {
+    /**
+     * Executed once at the first execution time.
+     */
+    ONCE,
+    /**
+     * Executed every day at the time of the first execution.
+     */
+    DAILY,
+    /**
+     * Executed every week on the day and at the time of the first execution.
+     */
+    WEEKLY,
+    /**
+     * Executed every month on the day and at the time of the first execution.
+     */
+    MONTHLY;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Gets the time of an occurrence.
+     * @param firstExecution time of the first execution in epoch milliseconds
+     * @param index zero-based index of the occurrence
+     * @return time of the occurrence in epoch milliseconds
+     * @throws IllegalArgumentException if a {@link #ONCE} order has no such occurrence
+     */
+    public long occurrence(long firstExecution, int index) {
+        return switch (this) {
+            case ONCE -> {
+                if (index != 0) {
+                    throw new IllegalArgumentException("Order executed once has a single occurrence");
+                }
+                yield firstExecution;
+            }
+            case DAILY -> firstExecution + index * DAY_MILLIS;
+            case WEEKLY -> firstExecution + index * 7 * DAY_MILLIS;
+            case MONTHLY -> Instant.ofEpochMilli(firstExecution).atOffset(ZoneOffset.UTC).plusMonths(index)
+                    .toInstant().toEpochMilli();
+        };
+    }
+
+    /**
+     * Checks whether the order has an occurrence after the given number of executions.
+     * @param executions number of executed occurrences
+     * @return {@code true} if there is another occurrence
+     */
+    public boolean hasOccurrence(int executions) {
+        return this != ONCE || executions == 0;
+    }
+}
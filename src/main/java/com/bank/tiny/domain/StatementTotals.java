@@ -0,0 +1,32 @@
+package com.bank.tiny.domain;
+
+/**
+ * Totals of account movements, split into cash operations and transfers.
+ * @param cashDeposited deposited cash in cents
+ * @param cashWithdrawn withdrawn cash in cents
+ * @param transferredIn amount received from other users in cents
+ * @param transferredOut amount sent to other users in cents
+ * @param cashDeposits number of cash deposits
+ * @param cashWithdrawals number of cash withdrawals
+ * @param transfersIn number of received transfers
+ * @param transfersOut number of sent transfers
+ */
+public record StatementTotals(long cashDeposited, long cashWithdrawn, long transferredIn, long transferredOut,
+                              long cashDeposits, long cashWithdrawals, long transfersIn, long transfersOut) {
+
+    /**
+     * Gets the total of {@link TransactionType#DEPOSIT} entries.
+     * @return deposited cash and received transfers in cents
+     */
+    public long deposited() {
+        return cashDeposited + transferredIn;
+    }
+
+    /**
+     * Gets the total of {@link TransactionType#WITHDRAW} entries.
+     * @return withdrawn cash and sent transfers in cents
+     */
+    public long withdrawn() {
+        return cashWithdrawn + transferredOut;
+    }
+}
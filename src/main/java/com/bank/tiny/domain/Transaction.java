@@ -1,6 +1,12 @@
 package com.bank.tiny.domain;
 
-import java.math.BigDecimal;
-
-public record Transaction(BigDecimal amount, TransactionType transactionType, String user) {
+/**
+ * Transaction history entry.
+ * @param id transaction id, monotonic across the ledger and shared by both legs of a transfer
+ * @param timestamp transaction time in epoch milliseconds
+ * @param amount amount in cents, see {@link Money}
+ * @param transactionType transaction type
+ * @param user counterparty of a transfer or {@code null} for cash operations
+ */
+public record Transaction(long id, long timestamp, long amount, TransactionType transactionType, String user) {
 }
@@ -0,0 +1,32 @@
+package com.bank.tiny.domain;
+
+/**
+ * Transaction history filter, {@code null} components match every entry.
+ * @param counterparty counterparty username of a transfer
+ * @param type transaction type
+ * @param minAmount minimum amount in cents, inclusive
+ * @param maxAmount maximum amount in cents, inclusive
+ */
+public record TransactionFilter(String counterparty, TransactionType type, Long minAmount, Long maxAmount) {
+
+    /**
+     * Filter matching every entry.
+     */
+    public static final TransactionFilter ALL = new TransactionFilter(null, null, null, null);
+
+    /**
+     * Checks whether the filter restricts the amount.
+     * @return {@code true} if a minimum or maximum amount is set
+     */
+    public boolean hasAmountRange() {
+        return minAmount != null || maxAmount != null;
+    }
+
+    /**
+     * Checks whether the filter matches every entry.
+     * @return {@code true} if no component is set
+     */
+    public boolean isEmpty() {
+        return counterparty == null && type == null && !hasAmountRange();
+    }
+}
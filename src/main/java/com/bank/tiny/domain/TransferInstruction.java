@@ -0,0 +1,21 @@
+package com.bank.tiny.domain;
+
+/**
+ * Single transfer of a batch.
+ * @param usernameFrom user whose money is being withdrawn
+ * @param usernameTo user to whom the account is deposited
+ * @param amount requested amount in cents
+ * @param standingOrderId id of the {@link StandingOrder} executed by the transfer, {@code 0} for a one-off transfer
+ */
+public record TransferInstruction(String usernameFrom, String usernameTo, long amount, long standingOrderId) {
+
+    /**
+     * Creates a one-off transfer.
+     * @param usernameFrom user whose money is being withdrawn
+     * @param usernameTo user to whom the account is deposited
+     * @param amount requested amount in cents
+     */
+    public TransferInstruction(String usernameFrom, String usernameTo, long amount) {
+        this(usernameFrom, usernameTo, amount, 0);
+    }
+}
@@ -0,0 +1,19 @@
+package com.bank.tiny.domain;
+
+/**
+ * Outcome of a {@link TransferInstruction}.
+ * @param transferred actually transferred amount in cents
+ * @param status transfer status
+ * @param reason rejection reason or {@code null}
+ */
+public record TransferResult(long transferred, TransferStatus status, String reason) {
+
+    /**
+     * Creates result of a rejected instruction.
+     * @param reason rejection reason
+     * @return {@link TransferResult} instance
+     */
+    public static TransferResult rejected(String reason) {
+        return new TransferResult(0, TransferStatus.REJECTED, reason);
+    }
+}
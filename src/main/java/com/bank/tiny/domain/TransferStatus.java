@@ -0,0 +1,16 @@
+package com.bank.tiny.domain;
+
+public enum TransferStatus {
+    /**
+     * The whole requested amount was transferred.
+     */
+    COMPLETED,
+    /**
+     * Only the available balance was transferred.
+     */
+    PARTIAL,
+    /**
+     * Nothing was transferred because the instruction is invalid.
+     */
+    REJECTED
+}
@@ -0,0 +1,15 @@
+package com.bank.tiny.domain;
+
+/**
+ * Reaction to an operation violating a {@link VelocityRule}.
+ */
+public enum VelocityAction {
+    /**
+     * The operation is rejected before it changes any balance.
+     */
+    REJECT,
+    /**
+     * The operation is executed and reported as an alert for review.
+     */
+    FLAG
+}
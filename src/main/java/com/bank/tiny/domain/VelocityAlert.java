@@ -0,0 +1,17 @@
+package com.bank.tiny.domain;
+
+import java.time.Instant;
+
+/**
+ * Operation that violated a {@link VelocityRule}.
+ * @param time time of the operation
+ * @param username account the rule was violated on
+ * @param type transaction type of the movement on the account
+ * @param amount amount of the operation in cents
+ * @param windowCount number of movements in the window before the operation
+ * @param windowAmount sum of the movements in the window before the operation in cents
+ * @param action {@link VelocityAction} taken
+ */
+public record VelocityAlert(Instant time, String username, TransactionType type, long amount, int windowCount,
+                            long windowAmount, VelocityAction action) {
+}
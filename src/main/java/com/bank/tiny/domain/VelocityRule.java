@@ -0,0 +1,23 @@
+package com.bank.tiny.domain;
+
+/**
+ * Limit of the movements of one {@link TransactionType} on an account within a sliding time window, e.g. at most 20
+ * withdrawals and transfers out or 5000.00 out of an account in 10 minutes.
+ * @param type transaction type the rule applies to, {@link TransactionType#WITHDRAW} covers withdrawals and outgoing
+ *             transfers, {@link TransactionType#DEPOSIT} deposits and incoming transfers
+ * @param windowMillis length of the window in milliseconds
+ * @param maxCount maximum number of movements in the window, {@code 0} for no limit
+ * @param maxAmount maximum sum of the movements in the window in cents, {@code 0} for no limit
+ * @param action {@link VelocityAction} of a violating operation
+ */
+public record VelocityRule(TransactionType type, long windowMillis, int maxCount, long maxAmount,
+                           VelocityAction action) {
+
+    /**
+     * Checks whether the rule limits anything.
+     * @return {@code true} if a count or amount limit is set
+     */
+    public boolean isEnabled() {
+        return maxCount > 0 || maxAmount > 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.bank.tiny.domain;
+
+/**
+ * Sliding window counter of the movements of one type on an account, kept as a ring of {@value #BUCKETS} time buckets
+ * with running totals. Advancing the window clears the buckets that fell out of it and subtracts them from the totals,
+ * so adding a movement and reading the totals are O(1) and the memory is fixed. A window of 10 minutes has buckets of
+ * 37.5 seconds and counts the movements of the last 9:22.5 to 10 minutes.
+ * <p>
+ * The window is not thread safe, it is guarded by the lock that serializes the movements of its account.
+ */
+public class VelocityWindow {
+
+    private static final int BUCKETS = 16;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final int[] counts = new int[BUCKETS];
+    private final long[] amounts = new long[BUCKETS];
+    private long head;
+    private int count;
+    private long amount;
+    private long flaggedUntil = Long.MIN_VALUE;
+
+    /**
+     * Creates an empty window.
+     * @param windowMillis length of the window in milliseconds
+     */
+    public VelocityWindow(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.bucketMillis = Math.max(1, (windowMillis + BUCKETS - 1) / BUCKETS);
+    }
+
+    /**
+     * Moves the window to end at a point in time, dropping the movements that fell out of it. Earlier points in time
+     * are ignored.
+     * @param timestamp epoch milliseconds
+     */
+    public void advance(long timestamp) {
+        long bucket = timestamp / bucketMillis;
+        if (bucket <= head) {
+            return;
+        }
+        long steps = Math.min(bucket - head, BUCKETS);
+        for (long i = 1; i <= steps; i++) {
+            int slot = (int) (head + i) & BUCKET_MASK;
+            count -= counts[slot];
+            amount -= amounts[slot];
+            counts[slot] = 0;
+            amounts[slot] = 0;
+        }
+        head = bucket;
+    }
+
+    /**
+     * Adds a movement. A movement older than the window is ignored, a newer one advances the window first.
+     * @param timestamp time of the movement in epoch milliseconds
+     * @param cents amount of the movement in cents
+     */
+    public void add(long timestamp, long cents) {
+        advance(timestamp);
+        long bucket = timestamp / bucketMillis;
+        if (bucket <= head - BUCKETS) {
+            return;
+        }
+        int slot = (int) bucket & BUCKET_MASK;
+        counts[slot]++;
+        amounts[slot] += cents;
+        count++;
+        amount += cents;
+    }
+
+    /**
+     * Gets the number of movements in the window.
+     * @return number of movements
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of the movements in the window.
+     * @return amount in cents
+     */
+    public long amount() {
+        return amount;
+    }
+
+    /**
+     * Marks a flagged movement, so a run of violations on the account is reported once per window.
+     * @param timestamp time of the movement in epoch milliseconds
+     * @return {@code true} if no flagged movement was reported within the window before it
+     */
+    public boolean flag(long timestamp) {
+        if (timestamp < flaggedUntil) {
+            return false;
+        }
+        flaggedUntil = timestamp + windowMillis;
+        return true;
+    }
+}
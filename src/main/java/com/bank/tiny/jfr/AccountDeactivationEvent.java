@@ -0,0 +1,32 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of the deactivation of a user and its account.
+ */
+@Name("com.bank.tiny.AccountDeactivation")
+@Label("Account Deactivation")
+@Category({"Tiny Bank", "Users"})
+@StackTrace(false)
+public class AccountDeactivationEvent extends Event {
+
+    @Label("Username")
+    String username;
+
+    /**
+     * Ends the event and commits it.
+     * @param username deactivated user
+     */
+    public void complete(String username) {
+        end();
+        if (shouldCommit()) {
+            this.username = username;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a deposit.
+ */
+@Name("com.bank.tiny.Deposit")
+@Label("Deposit")
+public class DepositEvent extends LedgerOperationEvent {
+}
@@ -0,0 +1,54 @@
+package com.bank.tiny.jfr;
+
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of an append to the transaction history of an account, one per leg of every ledger operation and one per
+ * account of a transfer batch, describing its last entry. It covers the growth of the history columns, which the
+ * surrounding operation event would otherwise hide.
+ */
+@Name("com.bank.tiny.HistoryAppend")
+@Label("History Append")
+@Category({"Tiny Bank", "History"})
+@StackTrace(false)
+public class HistoryAppendEvent extends Event {
+
+    @Label("Username")
+    String username;
+
+    @Label("Transaction Type")
+    String transactionType;
+
+    @Label("Amount")
+    @Description("Amount in cents")
+    long amount;
+
+    @Label("History Size")
+    @Description("Number of transactions in the history after the append")
+    int size;
+
+    /**
+     * Ends the event and commits it.
+     * @param username user whose history was appended to
+     * @param transactionType transaction type
+     * @param amount amount in cents
+     * @param history {@link TransactionHistory} appended to
+     */
+    public void complete(String username, TransactionType transactionType, long amount, TransactionHistory history) {
+        end();
+        if (shouldCommit()) {
+            this.username = username;
+            this.transactionType = transactionType.name();
+            this.amount = amount;
+            this.size = history.size();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of loading a page of a transaction history, such as a window of the history grid of the account view or a
+ * page of the history API.
+ */
+@Name("com.bank.tiny.HistoryPage")
+@Label("History Page")
+@Category({"Tiny Bank", "History"})
+@StackTrace(false)
+public class HistoryPageEvent extends Event {
+
+    @Label("Username")
+    String username;
+
+    @Label("Query")
+    @Description("history, search, statement or cursor")
+    String query;
+
+    @Label("Offset")
+    @Description("Offset of the page, or the history index it ends at for a cursor")
+    int offset;
+
+    @Label("Limit")
+    int limit;
+
+    @Label("Rows")
+    @Description("Number of loaded transactions")
+    int rows;
+
+    /**
+     * Ends the event and commits it.
+     * @param username user whose history was read
+     * @param query kind of the query: {@code history}, {@code search}, {@code statement} or {@code cursor}
+     * @param offset offset of the page, or the history index it ends at for a cursor
+     * @param limit maximum size of the page
+     * @param rows number of loaded transactions
+     */
+    public void complete(String username, String query, int offset, int limit, int rows) {
+        end();
+        if (shouldCommit()) {
+            this.username = username;
+            this.query = query;
+            this.offset = offset;
+            this.limit = limit;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
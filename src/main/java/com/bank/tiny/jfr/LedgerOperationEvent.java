@@ -0,0 +1,82 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the JFR events of the money movements of the ledger. An event spans the whole operation as seen by the
+ * caller, including the wait for the command pipeline in the {@code PIPELINE} execution mode; like every JFR event it
+ * records its start time, duration and thread.
+ * <p>
+ * The fields are only set once the event is known to be committed, and without a recording the JIT compiler removes
+ * the event altogether, so an operation costs the same as without it. That only holds while every call on the event is
+ * inlined: a failure path, which is never executed, must therefore check {@link #shouldCommit()} before calling
+ * {@link #fail}. Stack traces are off unless a recording turns them on.
+ */
+@Category({"Tiny Bank", "Ledger"})
+@StackTrace(false)
+public abstract class LedgerOperationEvent extends Event {
+
+    @Label("Username")
+    String username;
+
+    @Label("Requested Amount")
+    @Description("Requested amount in cents")
+    long requested;
+
+    @Label("Amount")
+    @Description("Actually moved amount in cents")
+    long amount;
+
+    @Label("Clamped")
+    @Description("Only the available balance was moved")
+    boolean clamped;
+
+    @Label("Failure")
+    @Description("Class of the exception the operation failed with")
+    String failure;
+
+    /**
+     * Ends the event and commits a completed operation.
+     * @param username user whose account was changed
+     * @param requested requested amount in cents
+     * @param amount actually moved amount in cents
+     */
+    public void complete(String username, long requested, long amount) {
+        end();
+        if (shouldCommit()) {
+            setCompleted(username, requested, amount);
+            commit();
+        }
+    }
+
+    /**
+     * Ends the event and commits a failed operation.
+     * @param username user whose account was to be changed
+     * @param requested requested amount in cents
+     * @param failure exception the operation failed with
+     */
+    public void fail(String username, long requested, RuntimeException failure) {
+        end();
+        if (shouldCommit()) {
+            setFailed(username, requested, failure);
+            commit();
+        }
+    }
+
+    void setCompleted(String username, long requested, long amount) {
+        this.username = username;
+        this.requested = requested;
+        this.amount = amount;
+        this.clamped = amount < requested;
+    }
+
+    void setFailed(String username, long requested, RuntimeException failure) {
+        this.username = username;
+        this.requested = requested;
+        this.failure = failure.getClass().getName();
+    }
+}
@@ -0,0 +1,247 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline summary of a JFR recording made with the Tiny Bank events, e.g. with the bundled {@code tinybank.jfc}
+ * profile. Prints two tables per operation event type: the latency distribution and the allocation.
+ * <p>
+ * Allocation comes from the {@code jdk.ObjectAllocationSample} events, whose weights estimate the bytes allocated
+ * since the previous sample of the thread. A sample is attributed to every operation event of the same thread that
+ * was running at the time, so the allocation of a transfer includes the one of its history appends. Work done on
+ * another thread, such as by the business logic thread in the {@code PIPELINE} execution mode, is not attributed.
+ * <pre>
+ * java -cp build/classes/java/main com.bank.tiny.jfr.RecordingAnalyzer tinybank.jfr
+ * </pre>
+ */
+public final class RecordingAnalyzer {
+
+    private static final String EVENT_PREFIX = "com.bank.tiny.";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    private static final double NANOS_PER_MICRO = 1_000.0;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    private final Map<Long, ThreadEvents> threads = new HashMap<>();
+    private long samples;
+    private long sampledBytes;
+    private long attributedBytes;
+
+    private RecordingAnalyzer() {
+    }
+
+    /**
+     * Prints the summary of a recording to the standard output.
+     * @param args path of the recording
+     * @throws IOException if the recording cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: RecordingAnalyzer <recording.jfr>");
+            System.exit(2);
+        }
+        analyze(Path.of(args[0])).print(System.out);
+    }
+
+    /**
+     * Reads a recording.
+     * @param recording path of the recording
+     * @return {@link RecordingAnalyzer} holding the summary of the recording
+     * @throws IOException if the recording cannot be read
+     */
+    public static RecordingAnalyzer analyze(Path recording) throws IOException {
+        RecordingAnalyzer analyzer = new RecordingAnalyzer();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                analyzer.add(file.readEvent());
+            }
+        }
+        analyzer.attributeAllocations();
+        return analyzer;
+    }
+
+    /**
+     * Prints the latency and allocation tables.
+     * @param out stream to print to
+     */
+    public void print(PrintStream out) {
+        List<Operation> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparingInt((Operation operation) -> operation.count).reversed());
+        out.println("Latency (microseconds)");
+        out.printf("%-22s %10s %8s %8s %10s %10s %10s %10s %10s%n", "Operation", "Count", "Failed", "Clamped",
+                "Mean", "p50", "p90", "p99", "Max");
+        for (Operation operation : sorted) {
+            long[] durations = Arrays.copyOf(operation.durations, operation.count);
+            Arrays.sort(durations);
+            out.printf("%-22s %10d %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation.label, operation.count,
+                    operation.failed, operation.clamped, micros(operation.totalNanos / (double) operation.count),
+                    micros(percentile(durations, 0.5)), micros(percentile(durations, 0.9)),
+                    micros(percentile(durations, 0.99)), micros(durations[durations.length - 1]));
+        }
+        out.println();
+        if (samples == 0) {
+            out.println("No allocation samples, enable jdk.ObjectAllocationSample to get the allocation table");
+            return;
+        }
+        out.printf("Allocation (estimated from %d samples, %.1f MB in total, %.1f MB outside of operations)%n",
+                samples, sampledBytes / BYTES_PER_MB, (sampledBytes - attributedBytes) / BYTES_PER_MB);
+        out.printf("%-22s %10s %12s %12s  %s%n", "Operation", "Samples", "Total MB", "Bytes/op", "Top class");
+        for (Operation operation : sorted) {
+            out.printf("%-22s %10d %12.2f %12d  %s%n", operation.label, operation.samples,
+                    operation.allocatedBytes / BYTES_PER_MB, operation.allocatedBytes / operation.count,
+                    operation.topClass());
+        }
+    }
+
+    private void add(RecordedEvent event) {
+        String name = event.getEventType().getName();
+        RecordedThread thread = event.getThread();
+        if (name.equals(ALLOCATION_SAMPLE)) {
+            long weight = event.getLong("weight");
+            samples++;
+            sampledBytes += weight;
+            if (thread != null) {
+                RecordedClass objectClass = event.getClass("objectClass");
+                threads.computeIfAbsent(thread.getJavaThreadId(), id -> new ThreadEvents()).samples
+                        .add(new Sample(nanos(event.getStartTime()), weight,
+                                objectClass != null ? typeName(objectClass.getName()) : "unknown"));
+            }
+        } else if (name.startsWith(EVENT_PREFIX)) {
+            Operation operation = operations.computeIfAbsent(name, key -> new Operation(event.getEventType()
+                    .getLabel() != null ? event.getEventType().getLabel() : key.substring(EVENT_PREFIX.length())));
+            operation.add(event);
+            if (thread != null) {
+                threads.computeIfAbsent(thread.getJavaThreadId(), id -> new ThreadEvents()).spans
+                        .add(new Span(nanos(event.getStartTime()), nanos(event.getEndTime()), operation));
+            }
+        }
+    }
+
+    private void attributeAllocations() {
+        for (ThreadEvents events : threads.values()) {
+            events.spans.sort(Comparator.comparingLong(Span::start));
+            events.samples.sort(Comparator.comparingLong(Sample::time));
+            List<Span> running = new ArrayList<>();
+            int next = 0;
+            for (Sample sample : events.samples) {
+                while (next < events.spans.size() && events.spans.get(next).start() <= sample.time()) {
+                    running.add(events.spans.get(next++));
+                }
+                running.removeIf(span -> span.end() < sample.time());
+                if (!running.isEmpty()) {
+                    attributedBytes += sample.weight();
+                }
+                for (Span span : running) {
+                    span.operation().allocate(sample);
+                }
+            }
+        }
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static double micros(double nanos) {
+        return nanos / NANOS_PER_MICRO;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    private static String typeName(String name) {
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions == 0) {
+            return name;
+        }
+        String element = switch (name.charAt(dimensions)) {
+            case 'Z' -> "boolean";
+            case 'B' -> "byte";
+            case 'C' -> "char";
+            case 'S' -> "short";
+            case 'I' -> "int";
+            case 'J' -> "long";
+            case 'F' -> "float";
+            case 'D' -> "double";
+            default -> name.substring(dimensions + 1, name.length() - 1);
+        };
+        return element + "[]".repeat(dimensions);
+    }
+
+    private static final class Operation {
+
+        private final String label;
+        private long[] durations = new long[1024];
+        private int count;
+        private long totalNanos;
+        private int failed;
+        private int clamped;
+        private long samples;
+        private long allocatedBytes;
+        private final Map<String, Long> allocatedByClass = new HashMap<>();
+
+        private Operation(String label) {
+            this.label = label;
+        }
+
+        private void add(RecordedEvent event) {
+            long duration = event.getDuration().toNanos();
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = duration;
+            totalNanos += duration;
+            if (event.hasField("failure") && event.getString("failure") != null
+                    || event.hasField("registered") && !event.getBoolean("registered")) {
+                failed++;
+            }
+            if (event.hasField("clamped") && event.getBoolean("clamped")) {
+                clamped++;
+            }
+        }
+
+        private void allocate(Sample sample) {
+            samples++;
+            allocatedBytes += sample.weight();
+            allocatedByClass.merge(sample.type(), sample.weight(), Long::sum);
+        }
+
+        private String topClass() {
+            return allocatedByClass.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(entry -> String.format("%s (%d%%)", entry.getKey(), entry.getValue() * 100 / allocatedBytes))
+                    .orElse("");
+        }
+    }
+
+    private static final class ThreadEvents {
+
+        private final List<Span> spans = new ArrayList<>();
+        private final List<Sample> samples = new ArrayList<>();
+    }
+
+    private record Span(long start, long end, Operation operation) {
+    }
+
+    private record Sample(long time, long weight, String type) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a transfer. The username is the sender.
+ */
+@Name("com.bank.tiny.Transfer")
+@Label("Transfer")
+public class TransferEvent extends LedgerOperationEvent {
+
+    @Label("Recipient")
+    String recipient;
+
+    /**
+     * Ends the event and commits a completed transfer.
+     * @param usernameFrom sender
+     * @param usernameTo recipient
+     * @param requested requested amount in cents
+     * @param amount actually transferred amount in cents
+     */
+    public void complete(String usernameFrom, String usernameTo, long requested, long amount) {
+        end();
+        if (shouldCommit()) {
+            recipient = usernameTo;
+            setCompleted(usernameFrom, requested, amount);
+            commit();
+        }
+    }
+
+    /**
+     * Ends the event and commits a failed transfer.
+     * @param usernameFrom sender
+     * @param usernameTo recipient
+     * @param requested requested amount in cents
+     * @param failure exception the transfer failed with
+     */
+    public void fail(String usernameFrom, String usernameTo, long requested, RuntimeException failure) {
+        end();
+        if (shouldCommit()) {
+            recipient = usernameTo;
+            setFailed(usernameFrom, requested, failure);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a user registration, including the password hashing and the creation of the account.
+ */
+@Name("com.bank.tiny.UserRegistration")
+@Label("User Registration")
+@Category({"Tiny Bank", "Users"})
+@StackTrace(false)
+public class UserRegistrationEvent extends Event {
+
+    @Label("Username")
+    String username;
+
+    @Label("Registered")
+    @Description("The username was not taken yet")
+    boolean registered;
+
+    /**
+     * Ends the event and commits it.
+     * @param username registered username
+     * @param registered {@code false} if the username was taken or the registration failed
+     */
+    public void complete(String username, boolean registered) {
+        end();
+        if (shouldCommit()) {
+            this.username = username;
+            this.registered = registered;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.bank.tiny.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a withdrawal.
+ */
+@Name("com.bank.tiny.Withdraw")
+@Label("Withdraw")
+public class WithdrawEvent extends LedgerOperationEvent {
+}
@@ -0,0 +1,20 @@
+package com.bank.tiny.journal;
+
+/**
+ * Defines when journal appends are forced to the storage device.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every append is forced before it is acknowledged.
+     */
+    PER_OPERATION,
+    /**
+     * Appends are forced in the background every group commit interval, so at most one interval of acknowledged
+     * operations can be lost on power failure.
+     */
+    GROUP_COMMIT,
+    /**
+     * Flushing is left to the operating system.
+     */
+    OS
+}
@@ -0,0 +1,9 @@
+package com.bank.tiny.journal;
+
+/**
+ * Position in the {@link LedgerJournal} from which the journal has to be replayed on top of a snapshot.
+ * @param segment index of the first segment to replay
+ * @param sequence sequence number of the last record written before the checkpoint
+ */
+public record JournalCheckpoint(long segment, long sequence) {
+}
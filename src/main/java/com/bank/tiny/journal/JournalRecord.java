@@ -0,0 +1,52 @@
+package com.bank.tiny.journal;
+
+/**
+ * Ledger mutation read back from the {@link LedgerJournal}.
+ * @param sequence monotonic record sequence number
+ * @param timestamp append time in epoch milliseconds
+ * @param type record type
+ * @param username user the mutation belongs to
+ * @param argument transfer recipient, password of a created user or standing order details, {@code null} otherwise
+ * @param amount amount in cents, {@code 0} for non-monetary records
+ */
+public record JournalRecord(long sequence, long timestamp, JournalRecordType type, String username, String argument,
+                            long amount) {
+
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Creates the argument of a {@link JournalRecordType#STANDING_TRANSFER} record.
+     * @param standingOrderId id of the executed standing order
+     * @param recipient user to whom the account is deposited
+     * @return record argument
+     */
+    public static String standingTransferArgument(long standingOrderId, String recipient) {
+        return Long.toString(standingOrderId) + SEPARATOR + recipient;
+    }
+
+    /**
+     * Gets the recipient of a transfer record.
+     * @return recipient of a {@link JournalRecordType#TRANSFER} or {@link JournalRecordType#STANDING_TRANSFER} record,
+     *         {@code null} for other records
+     */
+    public String recipient() {
+        return switch (type) {
+            case TRANSFER -> argument;
+            case STANDING_TRANSFER -> argument.substring(argument.indexOf(SEPARATOR) + 1);
+            default -> null;
+        };
+    }
+
+    /**
+     * Gets the id of the standing order the record belongs to.
+     * @return order id or {@code 0} if the record does not belong to a standing order
+     */
+    public long standingOrderId() {
+        return switch (type) {
+            case SCHEDULE_STANDING_ORDER -> sequence;
+            case CANCEL_STANDING_ORDER, SKIP_STANDING_ORDER -> Long.parseLong(argument);
+            case STANDING_TRANSFER -> Long.parseLong(argument, 0, argument.indexOf(SEPARATOR), 10);
+            default -> 0;
+        };
+    }
+}
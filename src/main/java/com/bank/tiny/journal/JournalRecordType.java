@@ -0,0 +1,60 @@
+package com.bank.tiny.journal;
+
+/**
+ * Types of ledger mutations written to the {@link LedgerJournal}.
+ */
+public enum JournalRecordType {
+    /**
+     * User registration, the argument holds the password.
+     */
+    CREATE_USER,
+    /**
+     * Bank account creation.
+     */
+    CREATE_ACCOUNT,
+    /**
+     * Cash deposit.
+     */
+    DEPOSIT,
+    /**
+     * Cash withdrawal, the amount is the actually withdrawn one.
+     */
+    WITHDRAW,
+    /**
+     * Transfer, the argument holds the recipient and the amount is the actually transferred one.
+     */
+    TRANSFER,
+    /**
+     * User deactivation.
+     */
+    DEACTIVATE_USER,
+    /**
+     * Bank account deactivation.
+     */
+    DEACTIVATE_ACCOUNT,
+    /**
+     * Standing order creation, the record sequence is the order id, the username is the payer, the argument holds
+     * the frequency, the first execution time and the recipient and the amount is the amount of every transfer.
+     */
+    SCHEDULE_STANDING_ORDER,
+    /**
+     * Standing order cancellation, the argument holds the order id.
+     */
+    CANCEL_STANDING_ORDER,
+    /**
+     * Execution of a standing order, the argument holds the order id and the recipient and the amount is the actually
+     * transferred one. Replayed like a {@link #TRANSFER} that also advances the order.
+     */
+    STANDING_TRANSFER,
+    /**
+     * Skipped occurrence of a standing order whose transfer was rejected while both accounts were active, e.g. by a
+     * velocity rule, the argument holds the order id. Advances the order without a transfer.
+     */
+    SKIP_STANDING_ORDER;
+
+    private static final JournalRecordType[] VALUES = values();
+
+    static JournalRecordType valueOf(byte code) {
+        return VALUES[code];
+    }
+}
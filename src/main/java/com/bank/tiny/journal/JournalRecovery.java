@@ -0,0 +1,93 @@
+package com.bank.tiny.journal;
+
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.LedgerReconciliation;
+import com.bank.tiny.service.StandingOrders;
+import com.bank.tiny.service.UserService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Restores users, accounts, transaction history and standing orders on application startup: loads the newest
+ * {@link LedgerSnapshots snapshot} and replays the {@link LedgerJournal} tail written after it.
+ */
+@Component
+public class JournalRecovery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalRecovery.class);
+
+    private final LedgerJournal journal;
+    private final LedgerSnapshots snapshots;
+    private final UserService userService;
+    private final AccountService accountService;
+    private final LedgerReconciliation reconciliation;
+    private final StandingOrders standingOrders;
+
+    /**
+     * Parametrized constructor.
+     * @param journal {@link LedgerJournal} instance
+     * @param snapshots {@link LedgerSnapshots} instance
+     * @param userService {@link UserService} instance
+     * @param accountService {@link AccountService} instance
+     * @param reconciliation {@link LedgerReconciliation} instance
+     * @param standingOrders {@link StandingOrders} instance
+     */
+    public JournalRecovery(LedgerJournal journal, LedgerSnapshots snapshots, UserService userService,
+                           AccountService accountService, LedgerReconciliation reconciliation,
+                           StandingOrders standingOrders) {
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.userService = userService;
+        this.accountService = accountService;
+        this.reconciliation = reconciliation;
+        this.standingOrders = standingOrders;
+    }
+
+    /**
+     * Restores the snapshot, replays the journal tail and starts periodic snapshots, reconciliation and the execution
+     * of standing orders.
+     */
+    @PostConstruct
+    public void recover() {
+        long start = System.nanoTime();
+        JournalCheckpoint checkpoint = snapshots.load();
+        long snapshotLoaded = System.nanoTime();
+        AtomicLong records = new AtomicLong();
+        journal.recover(checkpoint, record -> {
+            apply(record);
+            records.incrementAndGet();
+        });
+        long end = System.nanoTime();
+        LOG.info("Ledger restored in {} ms: snapshot {} ms, {} journal records replayed in {} ms",
+                (end - start) / 1_000_000, (snapshotLoaded - start) / 1_000_000, records.get(),
+                (end - snapshotLoaded) / 1_000_000);
+        snapshots.start();
+        reconciliation.start();
+        standingOrders.start();
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record.type()) {
+            case CREATE_USER -> {
+                BankUser bankUser = new BankUser();
+                bankUser.setUsername(record.username());
+                bankUser.setPassword(record.argument());
+                userService.restoreUser(bankUser);
+            }
+            case CREATE_ACCOUNT -> accountService.createAccount(record.username());
+            case DEPOSIT, WITHDRAW, TRANSFER -> accountService.replay(record);
+            case DEACTIVATE_USER -> userService.deactivateUser(record.username());
+            case DEACTIVATE_ACCOUNT -> accountService.deactivate(record.username());
+            case SCHEDULE_STANDING_ORDER, CANCEL_STANDING_ORDER, SKIP_STANDING_ORDER -> standingOrders.replay(record);
+            case STANDING_TRANSFER -> {
+                accountService.replay(record);
+                standingOrders.replay(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.bank.tiny.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of ledger mutations. Records are written into memory-mapped segment files of a
+ * fixed size; every record is framed as {@code [body length][CRC32C of body][body]}, a zero length marks the end of
+ * the written part of a segment. The body layout is
+ * {@code [sequence][timestamp][type][amount][username length][username][argument length][argument]}. The ledger
+ * appends a mutation while it holds the locks of the accounts and before it changes them, so the journal order is a
+ * valid serialization of the ledger.
+ * <p>
+ * The journal must be recovered with {@link #recover(JournalCheckpoint, Consumer)} before the first append. Appends
+ * issued while the journal is replayed are ignored, which allows to replay records through the regular service
+ * methods. A {@link #checkpoint()} starts a new segment, so that segments before it can be deleted with
+ * {@link #compact(JournalCheckpoint)} once a snapshot covering them is persisted.
+ * <p>
+ * Sequence numbers and timestamps come from the {@link TransactionClock} of the journal and double as transaction ids
+ * and times of the history entries, so replayed entries get the same ids as the original ones.
+ */
+@Component
+public class LedgerJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerJournal.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int FIXED_BODY_SIZE = Long.BYTES * 3 + Byte.BYTES + Short.BYTES * 2;
+    private static final short NULL_STRING = -1;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long groupCommitIntervalMs;
+    private final int segmentSize;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32C crc = new CRC32C();
+    private final TransactionClock clock = new TransactionClock();
+    private volatile boolean open;
+    private volatile boolean replaying;
+    private volatile boolean dirty;
+    private volatile MappedByteBuffer segment;
+    private FileChannel channel;
+    private long segmentIndex;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Parametrized constructor.
+     * @param enabled whether mutations are journaled at all
+     * @param directory directory of the segment files
+     * @param fsyncPolicy {@link FsyncPolicy} of appends
+     * @param groupCommitIntervalMs flush interval for {@link FsyncPolicy#GROUP_COMMIT}
+     * @param segmentSize size of a segment file in bytes
+     */
+    public LedgerJournal(@Value("${tinybank.journal.enabled:true}") boolean enabled,
+                         @Value("${tinybank.journal.directory:data/journal}") String directory,
+                         @Value("${tinybank.journal.fsync-policy:GROUP_COMMIT}") FsyncPolicy fsyncPolicy,
+                         @Value("${tinybank.journal.group-commit-interval-ms:10}") long groupCommitIntervalMs,
+                         @Value("${tinybank.journal.segment-size:67108864}") int segmentSize) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupCommitIntervalMs = groupCommitIntervalMs;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Checks whether the journal is enabled.
+     * @return {@code true} if mutations are journaled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the source of sequence numbers and timestamps.
+     * @return {@link TransactionClock} instance
+     */
+    public TransactionClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replays journaled records in append order and opens the journal for appending.
+     * @param checkpoint checkpoint of the restored snapshot or {@code null} to replay the whole journal
+     * @param handler consumer of the replayed records
+     */
+    public void recover(JournalCheckpoint checkpoint, Consumer<JournalRecord> handler) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            if (checkpoint != null) {
+                clock.advance(checkpoint.sequence(), 0);
+                segments = segments.stream()
+                        .filter(path -> segmentIndex(path) >= checkpoint.segment())
+                        .toList();
+            }
+            replaying = true;
+            int position = 0;
+            try {
+                for (Path path : segments) {
+                    position = replaySegment(path, handler);
+                }
+            } finally {
+                replaying = false;
+            }
+            if (segments.isEmpty()) {
+                openSegment(checkpoint == null ? 1 : checkpoint.segment(), 0);
+            } else {
+                openSegment(segmentIndex(segments.get(segments.size() - 1)), position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover ledger journal from " + directory, e);
+        }
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, groupCommitIntervalMs, groupCommitIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        open = true;
+        LOG.info("Ledger journal opened in {}, next sequence {}", directory, clock.lastSequence() + 1);
+    }
+
+    /**
+     * Appends a record to the journal.
+     * @param type record type
+     * @param username user the mutation belongs to
+     * @param argument transfer recipient or password of a created user, may be {@code null}
+     * @param amount amount in cents
+     * @return sequence number of the record, a fresh id if the journal is disabled or {@code 0} if it is being
+     *         replayed
+     */
+    public long append(JournalRecordType type, String username, String argument, long amount) {
+        return append(type, username, argument, amount, clock.currentTimeMillis(), null);
+    }
+
+    /**
+     * Appends a record of a transaction that happened at a time taken from the {@link #getClock() clock}.
+     * @param type record type
+     * @param username user the mutation belongs to
+     * @param argument transfer recipient, may be {@code null}
+     * @param amount amount in cents
+     * @param timestamp time of the transaction in epoch milliseconds
+     * @return sequence number of the record, a fresh id if the journal is disabled or {@code 0} if it is being
+     *         replayed
+     */
+    public long append(JournalRecordType type, String username, String argument, long amount, long timestamp) {
+        return append(type, username, argument, amount, timestamp, null);
+    }
+
+    /**
+     * Appends a record to the journal and applies its effect while the journal is still locked. Use it for mutations
+     * that are not guarded by an account lock, so that a concurrent {@link #checkpoint()} never precedes the effect of
+     * a record written before it.
+     * @param type record type
+     * @param username user the mutation belongs to
+     * @param argument transfer recipient or password of a created user, may be {@code null}
+     * @param amount amount in cents
+     * @param effect in-memory effect of the record, may be {@code null}
+     * @return sequence number of the record, a fresh id if the journal is disabled or {@code 0} if it is being
+     *         replayed
+     */
+    public long append(JournalRecordType type, String username, String argument, long amount, Runnable effect) {
+        return append(type, username, argument, amount, clock.currentTimeMillis(),
+                effect == null ? null : sequence -> effect.run());
+    }
+
+    /**
+     * Appends a record to the journal and applies its effect, which gets the sequence number of the record, while the
+     * journal is still locked. Use it for mutations identified by their record, like standing orders.
+     * @param type record type
+     * @param username user the mutation belongs to
+     * @param argument record argument, may be {@code null}
+     * @param amount amount in cents
+     * @param effect in-memory effect of the record
+     * @return sequence number of the record, a fresh id if the journal is disabled or {@code 0} if it is being
+     *         replayed
+     */
+    public long append(JournalRecordType type, String username, String argument, long amount, LongConsumer effect) {
+        return append(type, username, argument, amount, clock.currentTimeMillis(), effect);
+    }
+
+    private long append(JournalRecordType type, String username, String argument, long amount, long timestamp,
+                        LongConsumer effect) {
+        if (!enabled || replaying) {
+            long sequence = replaying ? 0 : clock.nextSequence();
+            if (effect != null) {
+                effect.accept(sequence);
+            }
+            return sequence;
+        }
+        if (!open) {
+            throw new IllegalStateException("Ledger journal is not recovered yet");
+        }
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        byte[] arg = argument == null ? null : argument.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_SIZE + user.length + (arg == null ? 0 : arg.length);
+        if (user.length > Short.MAX_VALUE || arg != null && arg.length > Short.MAX_VALUE
+                || HEADER_SIZE + bodyLength > segmentSize) {
+            throw new IllegalArgumentException("Journal record does not fit into a segment");
+        }
+        appendLock.lock();
+        try {
+            MappedByteBuffer buffer = segment;
+            if (buffer.remaining() < HEADER_SIZE + bodyLength) {
+                openSegment(segmentIndex + 1, 0);
+                buffer = segment;
+            }
+            long sequence = clock.nextSequence();
+            int start = buffer.position();
+            int bodyStart = start + HEADER_SIZE;
+            buffer.position(bodyStart);
+            buffer.putLong(sequence)
+                    .putLong(timestamp)
+                    .put((byte) type.ordinal())
+                    .putLong(amount);
+            putString(buffer, user);
+            putString(buffer, arg);
+            crc.reset();
+            crc.update(buffer.slice(bodyStart, bodyLength));
+            buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+            buffer.putInt(start, bodyLength);
+            if (fsyncPolicy == FsyncPolicy.PER_OPERATION) {
+                buffer.force(start, HEADER_SIZE + bodyLength);
+            } else {
+                dirty = true;
+            }
+            if (effect != null) {
+                effect.accept(sequence);
+            }
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to ledger journal", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment. Every record written before the checkpoint is in an earlier segment and its in-memory
+     * effect is visible to the caller once the affected account lock is acquired.
+     * @return {@link JournalCheckpoint} describing the new segment
+     */
+    public JournalCheckpoint checkpoint() {
+        appendLock.lock();
+        try {
+            openSegment(segmentIndex + 1, 0);
+            return new JournalCheckpoint(segmentIndex, clock.lastSequence());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start a new journal segment", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes segments preceding the checkpoint.
+     * @param checkpoint checkpoint of a persisted snapshot
+     */
+    public void compact(JournalCheckpoint checkpoint) {
+        try {
+            for (Path path : listSegments()) {
+                if (segmentIndex(path) < checkpoint.segment()) {
+                    Files.delete(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact ledger journal", e);
+        }
+    }
+
+    /**
+     * Forces appended records of the current segment to the storage device.
+     */
+    public void flush() {
+        if (dirty) {
+            dirty = false;
+            segment.force();
+        }
+    }
+
+    /**
+     * Flushes and closes the journal.
+     */
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        appendLock.lock();
+        try {
+            open = false;
+            segment.force();
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close ledger journal", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private int replaySegment(Path path, Consumer<JournalRecord> handler) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            CRC32C checksum = new CRC32C();
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int start = buffer.position();
+                int bodyLength = buffer.getInt(start);
+                if (bodyLength < FIXED_BODY_SIZE || bodyLength > buffer.remaining() - HEADER_SIZE) {
+                    if (bodyLength != 0) {
+                        LOG.warn("Torn journal record in {} at {}, ignoring the rest of the segment", path, start);
+                    }
+                    return start;
+                }
+                checksum.reset();
+                checksum.update(buffer.slice(start + HEADER_SIZE, bodyLength));
+                if ((int) checksum.getValue() != buffer.getInt(start + Integer.BYTES)) {
+                    LOG.warn("Corrupted journal record in {} at {}, ignoring the rest of the segment", path, start);
+                    return start;
+                }
+                buffer.position(start + HEADER_SIZE);
+                long sequence = buffer.getLong();
+                long timestamp = buffer.getLong();
+                JournalRecordType type = JournalRecordType.valueOf(buffer.get());
+                long amount = buffer.getLong();
+                String username = getString(buffer);
+                String argument = getString(buffer);
+                clock.advance(sequence, timestamp);
+                handler.accept(new JournalRecord(sequence, timestamp, type, username, argument, amount));
+            }
+            return buffer.position();
+        }
+    }
+
+    private void openSegment(long index, int position) throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        if (position + Integer.BYTES <= segmentSize && buffer.getInt(position) != 0) {
+            for (int i = position; i < segmentSize; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        buffer.position(position);
+        segmentIndex = index;
+        segment = buffer;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort(NULL_STRING);
+            return;
+        }
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,460 @@
+package com.bank.tiny.journal;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.domain.StandingOrder;
+import com.bank.tiny.domain.StandingOrderFrequency;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.StatementAggregates;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UserRepository;
+import com.bank.tiny.repostiroty.UsernameDictionary;
+import com.bank.tiny.service.StandingOrders;
+import com.bank.tiny.service.UserService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Periodic point-in-time images of all users, accounts, transaction histories and standing orders. A snapshot starts
+ * with a {@link StandingOrders#checkpoint() journal checkpoint} and then copies every account under its own lock only
+ * for the time needed to read the balance and the history length, so writers are never paused globally. The image is
+ * fuzzy: it may already contain mutations journaled after the checkpoint, which is why every account stores the
+ * sequence number of its last mutation and the journal tail replay skips legs that are already reflected. Standing
+ * orders likewise store the sequence number of their last execution.
+ * <p>
+ * File layout: a fixed header, the users section, the account blocks, an index of account block offsets, which lets
+ * the loader parse account blocks from memory-mapped regions in parallel, and the standing orders section at the end.
+ * History entries are stored with their transaction ids and timestamps, and an account block ends with the daily
+ * buckets of its {@link StatementAggregates}, the overall totals are their sum. Snapshots of another format version
+ * are rejected. Restored ids and timestamps advance the {@link TransactionClock}. Once a snapshot is persisted, older
+ * snapshots and journal segments preceding its checkpoint are deleted.
+ */
+@Component
+public class LedgerSnapshots {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerSnapshots.class);
+    private static final long MAGIC = 0x54424E4B534E4150L;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = Long.BYTES * 4 + Integer.BYTES * 3;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MIN_REGION_SIZE = 1L << 20;
+    private static final long MAX_REGION_SIZE = 1L << 28;
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+    private static final StandingOrderFrequency[] FREQUENCIES = StandingOrderFrequency.values();
+    private static final short NULL_STRING = -1;
+
+    private final LedgerJournal journal;
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final UserService userService;
+    private final StandingOrders standingOrders;
+    private final Path directory;
+    private final long intervalSeconds;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Parametrized constructor.
+     * @param journal {@link LedgerJournal} instance
+     * @param userRepository {@link UserRepository} instance
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param userService {@link UserService} instance
+     * @param standingOrders {@link StandingOrders} instance
+     * @param directory directory of the snapshot files
+     * @param intervalSeconds interval between snapshots, non-positive value disables periodic snapshots
+     */
+    public LedgerSnapshots(LedgerJournal journal, UserRepository userRepository, AccountRepository accountRepository,
+                           TransactionHistoryRepository transactionHistoryRepository, UserService userService,
+                           StandingOrders standingOrders,
+                           @Value("${tinybank.snapshot.directory:data/snapshots}") String directory,
+                           @Value("${tinybank.snapshot.interval-seconds:300}") long intervalSeconds) {
+        this.journal = journal;
+        this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.userService = userService;
+        this.standingOrders = standingOrders;
+        this.directory = Path.of(directory);
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Starts taking periodic snapshots in the background.
+     */
+    public void start() {
+        if (!journal.isEnabled() || intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::takeSnapshotSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops taking periodic snapshots.
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Writes a snapshot and compacts the journal.
+     * @return path of the written snapshot
+     */
+    public Path takeSnapshot() {
+        if (!journal.isEnabled()) {
+            throw new IllegalStateException("Snapshots require the ledger journal");
+        }
+        long start = System.nanoTime();
+        JournalCheckpoint checkpoint = standingOrders.checkpoint();
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, checkpoint.segment(),
+                SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                write(channel, checkpoint);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            for (Path path : listSnapshots()) {
+                if (!path.equals(target)) {
+                    Files.delete(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write ledger snapshot " + target, e);
+        }
+        journal.compact(checkpoint);
+        LOG.info("Ledger snapshot {} written in {} ms", target, (System.nanoTime() - start) / 1_000_000);
+        return target;
+    }
+
+    /**
+     * Restores the state from the newest snapshot.
+     * @return checkpoint of the restored snapshot or {@code null} if there is no snapshot
+     */
+    public JournalCheckpoint load() {
+        if (!journal.isEnabled()) {
+            return null;
+        }
+        try {
+            if (!Files.isDirectory(directory)) {
+                return null;
+            }
+            List<Path> snapshots = listSnapshots();
+            if (snapshots.isEmpty()) {
+                return null;
+            }
+            long start = System.nanoTime();
+            Path path = snapshots.get(snapshots.size() - 1);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                JournalCheckpoint checkpoint = read(channel);
+                LOG.info("Restored {} accounts from snapshot {} in {} ms", accountRepository.findAll().size(), path,
+                        (System.nanoTime() - start) / 1_000_000);
+                return checkpoint;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load ledger snapshot from " + directory, e);
+        }
+    }
+
+    private void takeSnapshotSafely() {
+        try {
+            takeSnapshot();
+        } catch (RuntimeException e) {
+            LOG.error("Ledger snapshot failed", e);
+        }
+    }
+
+    private void write(FileChannel channel, JournalCheckpoint checkpoint) throws IOException {
+        SnapshotOutput output = new SnapshotOutput(channel, HEADER_SIZE);
+        int userCount = 0;
+        for (BankUser bankUser : userRepository.findAll()) {
+            output.putString(bankUser.getUsername());
+            output.putString(bankUser.getPassword());
+            output.put((byte) (bankUser.isActive() ? 1 : 0));
+            userCount++;
+        }
+        List<Long> offsets = new ArrayList<>();
+        for (Account account : accountRepository.findAll()) {
+            long amount;
+            boolean active;
+            long sequence;
+            int transactionCount;
+            StatementAggregates aggregates;
+            account.lock();
+            try {
+                amount = account.getAmount();
+                active = account.isActive();
+                sequence = account.getSequence();
+                transactionCount = transactionHistoryRepository.countTransactions(account.getUsername());
+                aggregates = transactionHistoryRepository.getHistory(account.getUsername()).getAggregates().copy();
+            } finally {
+                account.unlock();
+            }
+            offsets.add(output.position());
+            output.putString(account.getUsername());
+            output.putLong(amount);
+            output.put((byte) (active ? 1 : 0));
+            output.putLong(sequence);
+            output.putInt(transactionCount);
+            TransactionHistory history = transactionHistoryRepository.getHistory(account.getUsername());
+            UsernameDictionary dictionary = transactionHistoryRepository.getDictionary();
+            for (int i = 0; i < transactionCount; i++) {
+                output.putLong(history.id(i));
+                output.putLong(history.timestamp(i));
+                output.putLong(history.amount(i));
+                output.put((byte) history.type(i).ordinal());
+                output.putString(dictionary.name(history.counterpartyId(i)));
+            }
+            output.putInt(aggregates.dayCount());
+            for (int i = 0; i < aggregates.dayCount(); i++) {
+                output.putInt(aggregates.day(i));
+                for (int category = 0; category < StatementAggregates.CATEGORIES; category++) {
+                    output.putLong(aggregates.dayAmount(i, category));
+                    output.putLong(aggregates.dayEntries(i, category));
+                }
+            }
+        }
+        offsets.add(output.position());
+        long indexPosition = output.position();
+        for (long offset : offsets) {
+            output.putLong(offset);
+        }
+        List<StandingOrder> orders = standingOrders.getAllOrders();
+        output.putInt(orders.size());
+        for (StandingOrder order : orders) {
+            output.putLong(order.id());
+            output.putString(order.usernameFrom());
+            output.putString(order.usernameTo());
+            output.putLong(order.amount());
+            output.put((byte) order.frequency().ordinal());
+            output.putLong(order.firstExecution());
+            output.putInt(order.executions());
+            output.putLong(order.sequence());
+        }
+        output.flush();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC)
+                .putInt(VERSION)
+                .putLong(checkpoint.segment())
+                .putLong(checkpoint.sequence())
+                .putInt(userCount)
+                .putInt(offsets.size() - 1)
+                .putLong(indexPosition)
+                .flip();
+        channel.write(header, 0);
+    }
+
+    private JournalCheckpoint read(FileChannel channel) throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        long magic = header.getLong();
+        int version = header.getInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a ledger snapshot");
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported ledger snapshot version " + version);
+        }
+        JournalCheckpoint checkpoint = new JournalCheckpoint(header.getLong(), header.getLong());
+        int userCount = header.getInt();
+        int accountCount = header.getInt();
+        long indexPosition = header.getLong();
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition,
+                (long) (accountCount + 1) * Long.BYTES);
+        long[] offsets = new long[accountCount + 1];
+        for (int i = 0; i <= accountCount; i++) {
+            offsets[i] = index.getLong();
+        }
+
+        ByteBuffer users = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                (accountCount > 0 ? offsets[0] : indexPosition) - HEADER_SIZE);
+        for (int i = 0; i < userCount; i++) {
+            BankUser bankUser = new BankUser();
+            bankUser.setUsername(getString(users));
+            bankUser.setPassword(getString(users));
+            bankUser.setActive(users.get() == 1);
+            userService.restoreUser(bankUser);
+        }
+
+        long regionSize = Math.min(MAX_REGION_SIZE, Math.max(MIN_REGION_SIZE,
+                (indexPosition - HEADER_SIZE) / (Runtime.getRuntime().availableProcessors() * 4L)));
+        List<int[]> regions = new ArrayList<>();
+        int regionStart = 0;
+        for (int i = 1; i <= accountCount; i++) {
+            if (i == accountCount || offsets[i + 1] - offsets[regionStart] > regionSize) {
+                regions.add(new int[] {regionStart, i});
+                regionStart = i;
+            }
+        }
+        IntStream.range(0, regions.size()).parallel().forEach(region -> {
+            int from = regions.get(region)[0];
+            int to = regions.get(region)[1];
+            try {
+                readAccounts(channel.map(FileChannel.MapMode.READ_ONLY, offsets[from], offsets[to] - offsets[from]),
+                        to - from);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long ordersPosition = indexPosition + (long) (accountCount + 1) * Long.BYTES;
+        readStandingOrders(channel.map(FileChannel.MapMode.READ_ONLY, ordersPosition, channel.size() - ordersPosition));
+        return checkpoint;
+    }
+
+    private void readStandingOrders(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            standingOrders.restore(new StandingOrder(buffer.getLong(), getString(buffer), getString(buffer),
+                    buffer.getLong(), FREQUENCIES[buffer.get()], buffer.getLong(), buffer.getInt(),
+                    buffer.getLong()));
+        }
+    }
+
+    private void readAccounts(ByteBuffer buffer, int count) {
+        long[] amounts = new long[StatementAggregates.CATEGORIES];
+        long[] entries = new long[StatementAggregates.CATEGORIES];
+        for (int i = 0; i < count; i++) {
+            Account account = new Account(getString(buffer));
+            account.setAmount(buffer.getLong());
+            account.setActive(buffer.get() == 1);
+            account.setSequence(buffer.getLong());
+            TransactionHistory history = transactionHistoryRepository.getHistory(account.getUsername());
+            int transactionCount = buffer.getInt();
+            for (int j = 0; j < transactionCount; j++) {
+                long id = buffer.getLong();
+                long timestamp = buffer.getLong();
+                long amount = buffer.getLong();
+                TransactionType type = TRANSACTION_TYPES[buffer.get()];
+                history.restore(amount, type, getString(buffer), id, timestamp);
+            }
+            if (transactionCount > 0) {
+                journal.getClock().advance(account.getSequence(), history.timestamp(transactionCount - 1));
+            }
+            int dayCount = buffer.getInt();
+            for (int j = 0; j < dayCount; j++) {
+                int day = buffer.getInt();
+                for (int category = 0; category < StatementAggregates.CATEGORIES; category++) {
+                    amounts[category] = buffer.getLong();
+                    entries[category] = buffer.getLong();
+                }
+                history.getAggregates().restoreDay(day, amounts, entries);
+            }
+            accountRepository.restoreAccount(account);
+        }
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SNAPSHOT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffered sequential writer that keeps track of the absolute file position.
+     */
+    private static final class SnapshotOutput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long flushedPosition;
+
+        private SnapshotOutput(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.flushedPosition = position;
+            channel.position(position);
+        }
+
+        long position() {
+            return flushedPosition + buffer.position();
+        }
+
+        void put(byte value) throws IOException {
+            ensure(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                ensure(Short.BYTES);
+                buffer.putShort(NULL_STRING);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(Short.BYTES + bytes.length);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushedPosition += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bank.tiny.journal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free source of transaction ids and timestamps. Ids are the journal sequence numbers, so they are monotonic and
+ * stable across restarts; with the journal disabled they are handed out directly. Timestamps never go backwards, even
+ * if the wall clock does, so the history of every account, appended under its lock, stays ordered by time and can be
+ * searched by date.
+ * <p>
+ * A timestamp read is a volatile read in the common case; the clock only advances with a compare-and-set once per
+ * millisecond.
+ */
+public class TransactionClock {
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong time = new AtomicLong();
+
+    /**
+     * Hands out the next id.
+     * @return id greater than every id handed out or restored before
+     */
+    public long nextSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * Gets the last handed out or restored id.
+     * @return id, {@code 0} if there is none
+     */
+    public long lastSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Gets the current time.
+     * @return epoch milliseconds, not less than any timestamp returned or restored before
+     */
+    public long currentTimeMillis() {
+        long now = System.currentTimeMillis();
+        long last = time.get();
+        while (now > last) {
+            if (time.compareAndSet(last, now)) {
+                return now;
+            }
+            last = time.get();
+        }
+        return last;
+    }
+
+    /**
+     * Moves the clock past a restored transaction, so new ids and timestamps continue after it.
+     * @param restoredSequence id of the restored transaction
+     * @param restoredTimestamp timestamp of the restored transaction in epoch milliseconds
+     */
+    public void advance(long restoredSequence, long restoredTimestamp) {
+        sequence.accumulateAndGet(restoredSequence, Math::max);
+        time.accumulateAndGet(restoredTimestamp, Math::max);
+    }
+}
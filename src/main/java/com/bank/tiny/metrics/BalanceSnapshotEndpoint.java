@@ -0,0 +1,39 @@
+package com.bank.tiny.metrics;
+
+import com.bank.tiny.domain.BalanceExport;
+import com.bank.tiny.service.BalanceSnapshots;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Actuator endpoint of the {@link BalanceSnapshots}: writing exports the balances of all accounts as of the given
+ * instant, or the present one, to a file in the export directory.
+ */
+@Component
+@Endpoint(id = "balances")
+public class BalanceSnapshotEndpoint {
+
+    private final BalanceSnapshots balanceSnapshots;
+
+    /**
+     * Parametrized constructor.
+     * @param balanceSnapshots {@link BalanceSnapshots} instance
+     */
+    public BalanceSnapshotEndpoint(BalanceSnapshots balanceSnapshots) {
+        this.balanceSnapshots = balanceSnapshots;
+    }
+
+    /**
+     * Exports a balance snapshot.
+     * @param asOf point in time of the balances, {@code null} for the present
+     * @return {@link BalanceExport} instance
+     */
+    @WriteOperation
+    public BalanceExport export(@Nullable Instant asOf) {
+        return balanceSnapshots.exportToFile(asOf);
+    }
+}
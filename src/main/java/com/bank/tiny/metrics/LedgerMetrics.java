@@ -0,0 +1,177 @@
+package com.bank.tiny.metrics;
+
+import com.bank.tiny.domain.VelocityAction;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and throughput metrics of ledger operations.
+ * <p>
+ * Each {@link Operation} has a timer publishing p50/p99/p999 latency from a lock-free histogram, whose count is the
+ * operation throughput, and a failure counter. Withdrawals and transfers clamped to the balance are counted
+ * separately, and so are operations violating a velocity rule. Gauges report the number of users, accounts and
+ * transactions.
+ * <p>
+ * Meters are created once, so recording a sample does not allocate. When {@code tinybank.metrics.enabled} is
+ * {@code false} no meters are registered and every method returns immediately without reading the clock.
+ */
+@Component
+public class LedgerMetrics {
+
+    /**
+     * Instrumented operations.
+     */
+    public enum Operation {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER,
+        CREATE_USER,
+        DEACTIVATE,
+        HISTORY_READ,
+        HISTORY_EXPORT
+    }
+
+    private static final LedgerMetrics DISABLED = new LedgerMetrics();
+
+    private final boolean enabled;
+    private final Timer[] timers;
+    private final Counter[] failures;
+    private final Counter[] partials;
+    private final Counter[] velocityViolations;
+
+    /**
+     * Parametrized constructor.
+     * @param enabled whether metrics are recorded
+     * @param registry provider of the {@link MeterRegistry}
+     * @param userRepository {@link UserRepository} instance
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     */
+    @Autowired
+    public LedgerMetrics(@Value("${tinybank.metrics.enabled:true}") boolean enabled,
+                         ObjectProvider<MeterRegistry> registry, UserRepository userRepository,
+                         AccountRepository accountRepository,
+                         TransactionHistoryRepository transactionHistoryRepository) {
+        MeterRegistry meterRegistry = enabled ? registry.getIfAvailable() : null;
+        this.enabled = meterRegistry != null;
+        Operation[] operations = Operation.values();
+        this.timers = new Timer[operations.length];
+        this.failures = new Counter[operations.length];
+        this.partials = new Counter[operations.length];
+        this.velocityViolations = new Counter[VelocityAction.values().length];
+        if (!this.enabled) {
+            return;
+        }
+        for (Operation operation : operations) {
+            String name = operation.name().toLowerCase(Locale.ROOT);
+            timers[operation.ordinal()] = Timer.builder("tinybank.ledger.operation")
+                    .description("Latency of ledger operations")
+                    .tag("operation", name)
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .register(meterRegistry);
+            failures[operation.ordinal()] = Counter.builder("tinybank.ledger.operation.failures")
+                    .description("Ledger operations failed with an exception")
+                    .tag("operation", name)
+                    .register(meterRegistry);
+        }
+        for (Operation operation : new Operation[] {Operation.WITHDRAW, Operation.TRANSFER}) {
+            partials[operation.ordinal()] = Counter.builder("tinybank.ledger.operation.partial")
+                    .description("Withdrawals and transfers clamped to the account balance")
+                    .tag("operation", operation.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        for (VelocityAction action : VelocityAction.values()) {
+            velocityViolations[action.ordinal()] = Counter.builder("tinybank.ledger.velocity.violations")
+                    .description("Operations violating a velocity rule")
+                    .tag("action", action.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        Gauge.builder("tinybank.ledger.users", userRepository, repository -> repository.findAll().size())
+                .description("Number of users")
+                .register(meterRegistry);
+        Gauge.builder("tinybank.ledger.accounts", accountRepository, repository -> repository.findAll().size())
+                .description("Number of accounts")
+                .register(meterRegistry);
+        Gauge.builder("tinybank.ledger.transactions", transactionHistoryRepository,
+                        TransactionHistoryRepository::countAllTransactions)
+                .description("Number of transactions in all histories")
+                .register(meterRegistry);
+    }
+
+    private LedgerMetrics() {
+        this.enabled = false;
+        this.timers = null;
+        this.failures = null;
+        this.partials = null;
+        this.velocityViolations = null;
+    }
+
+    /**
+     * Gets metrics that record nothing.
+     * @return disabled {@link LedgerMetrics} instance
+     */
+    public static LedgerMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Starts timing an operation.
+     * @return start time to pass to {@link #record(Operation, long)}, {@code 0} if metrics are disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of an operation.
+     * @param operation {@link Operation}
+     * @param start start time returned by {@link #start()}
+     */
+    public void record(Operation operation, long start) {
+        if (enabled) {
+            timers[operation.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Counts an operation failed with an exception.
+     * @param operation {@link Operation}
+     */
+    public void failed(Operation operation) {
+        if (enabled) {
+            failures[operation.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts a withdrawal or transfer clamped to the account balance.
+     * @param operation {@link Operation#WITHDRAW} or {@link Operation#TRANSFER}
+     */
+    public void partial(Operation operation) {
+        if (enabled) {
+            partials[operation.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts an operation violating a velocity rule.
+     * @param action {@link VelocityAction} taken
+     */
+    public void velocityViolation(VelocityAction action) {
+        if (enabled) {
+            velocityViolations[action.ordinal()].increment();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.bank.tiny.metrics;
+
+import com.bank.tiny.service.PasswordHasher;
+import com.bank.tiny.view.auth.Role;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.AccessDeniedHandler;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Security of the actuator endpoints. Every endpoint requires the {@link Role#ADMIN} role, held only by the
+ * administrator configured with {@code tinybank.admin.username} and the encoded {@code tinybank.admin.password};
+ * bank users cannot authenticate here. Without a configured password every request is refused.
+ * <p>
+ * Requests are authenticated with HTTP basic authentication and no session is created. Browsers resend basic
+ * credentials on their own, so writing operations require the CSRF token of the {@code XSRF-TOKEN} cookie, set by any
+ * response, in the {@code X-XSRF-TOKEN} header; only the read-only health and metrics endpoints are exempt.
+ */
+@Configuration
+public class ManagementSecurityConfiguration {
+
+    private static final byte[] UNAUTHORIZED_BODY = "{\"error\":\"Unauthorized\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FORBIDDEN_BODY = "{\"error\":\"Forbidden\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Creates the filter chain of the actuator endpoints, applied before the Vaadin one.
+     * @param http {@link HttpSecurity} instance
+     * @param passwordHasher {@link PasswordHasher} verifying the administrator password
+     * @param username username of the administrator
+     * @param password encoded password of the administrator with its encoder id prefix, empty disables the account
+     * @return {@link SecurityFilterChain} of the actuator endpoints
+     * @throws Exception if the chain cannot be built
+     */
+    @Bean
+    @Order(2)
+    public SecurityFilterChain managementSecurityFilterChain(HttpSecurity http, PasswordHasher passwordHasher,
+                                                             @Value("${tinybank.admin.username:admin}") String username,
+                                                             @Value("${tinybank.admin.password:}") String password)
+            throws Exception {
+        List<UserDetails> admins = new ArrayList<>();
+        if (!password.isEmpty()) {
+            admins.add(User.withUsername(username).password(password).roles(Role.ADMIN.name()).build());
+        }
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(new InMemoryUserDetailsManager(admins));
+        provider.setPasswordEncoder(new HasherPasswordEncoder(passwordHasher));
+        // written directly, an error dispatch would be handled by the Vaadin filter chain
+        AuthenticationEntryPoint entryPoint = (request, response, authException) -> {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"tinybank-management\"");
+            response.getOutputStream().write(UNAUTHORIZED_BODY);
+        };
+        AccessDeniedHandler accessDeniedHandler = (request, response, accessDeniedException) -> {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            response.getOutputStream().write(FORBIDDEN_BODY);
+        };
+        CsrfTokenRequestAttributeHandler csrfTokenHandler = new CsrfTokenRequestAttributeHandler();
+        // load the token on every request, so that the cookie is set without a session or a login page
+        csrfTokenHandler.setCsrfRequestAttributeName(null);
+        return http.securityMatcher(EndpointRequest.toAnyEndpoint())
+                .authorizeHttpRequests(auth -> auth.anyRequest().hasRole(Role.ADMIN.name()))
+                .authenticationManager(new ProviderManager(provider))
+                .httpBasic(basic -> basic.authenticationEntryPoint(entryPoint))
+                .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(entryPoint)
+                        .accessDeniedHandler(accessDeniedHandler))
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .requestCache(AbstractHttpConfigurer::disable)
+                .csrf(csrf -> csrf.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
+                        .csrfTokenRequestHandler(csrfTokenHandler)
+                        .ignoringRequestMatchers(EndpointRequest.to("health", "metrics")))
+                .build();
+    }
+
+    /**
+     * Verifies the administrator password on the {@link PasswordHasher} pool.
+     */
+    private record HasherPasswordEncoder(PasswordHasher passwordHasher) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                return passwordHasher.encode(rawPassword);
+            } catch (RejectedExecutionException e) {
+                throw new AuthenticationServiceException("Too many login attempts, please try again later", e);
+            }
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            try {
+                return passwordHasher.matches(rawPassword, encodedPassword);
+            } catch (RejectedExecutionException e) {
+                throw new AuthenticationServiceException("Too many login attempts, please try again later", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.bank.tiny.metrics;
+
+import com.bank.tiny.domain.ReconciliationReport;
+import com.bank.tiny.service.LedgerReconciliation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint of the {@link LedgerReconciliation}: reading returns the last report, writing runs a
+ * reconciliation and returns its report.
+ */
+@Component
+@Endpoint(id = "reconciliation")
+public class ReconciliationEndpoint {
+
+    private final LedgerReconciliation reconciliation;
+
+    /**
+     * Parametrized constructor.
+     * @param reconciliation {@link LedgerReconciliation} instance
+     */
+    public ReconciliationEndpoint(LedgerReconciliation reconciliation) {
+        this.reconciliation = reconciliation;
+    }
+
+    /**
+     * Gets the report of the last reconciliation.
+     * @return {@link ReconciliationReport} instance or {@code null} if none has run yet
+     */
+    @ReadOperation
+    public ReconciliationReport lastReport() {
+        return reconciliation.getLastReport();
+    }
+
+    /**
+     * Reconciles the ledger now.
+     * @return {@link ReconciliationReport} instance
+     */
+    @WriteOperation
+    public ReconciliationReport reconcile() {
+        return reconciliation.reconcile();
+    }
+}
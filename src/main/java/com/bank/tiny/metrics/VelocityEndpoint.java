@@ -0,0 +1,36 @@
+package com.bank.tiny.metrics;
+
+import com.bank.tiny.domain.VelocityAlert;
+import com.bank.tiny.service.VelocityRules;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint of the {@link VelocityRules}: reading returns the latest rejected and flagged operations.
+ */
+@Component
+@Endpoint(id = "velocity")
+public class VelocityEndpoint {
+
+    private final VelocityRules velocityRules;
+
+    /**
+     * Parametrized constructor.
+     * @param velocityRules {@link VelocityRules} instance
+     */
+    public VelocityEndpoint(VelocityRules velocityRules) {
+        this.velocityRules = velocityRules;
+    }
+
+    /**
+     * Gets the latest alerts.
+     * @return {@link VelocityAlert}s, newest first
+     */
+    @ReadOperation
+    public List<VelocityAlert> alerts() {
+        return velocityRules.getAlerts();
+    }
+}
@@ -1,11 +1,14 @@
 package com.bank.tiny.repostiroty;
 
 import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.Money;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for working with bank accounts. Allows to deposit, withdraw or transfer money to another account,
@@ -14,14 +17,22 @@ import java.util.Map;
 @Service
 public class AccountRepository {
 
-    private final Map<String, Account> accounts = new HashMap<>();
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
 
     /**
-     * Creates bank account for the specified user.
+     * Creates bank account for the specified user. Does nothing if the account already exists.
      * @param username user for whom the account is created
      */
     public void createAccount(String username) {
-        accounts.put(username, new Account());
+        accounts.putIfAbsent(username, new Account(username));
+    }
+
+    /**
+     * Puts a restored bank account, replacing an existing one.
+     * @param account restored account
+     */
+    public void restoreAccount(Account account) {
+        accounts.put(account.getUsername(), account);
     }
 
     /**
@@ -38,6 +49,14 @@ public class AccountRepository {
      * @return balance for user
      */
     public BigDecimal getBalance(String username) {
-        return accounts.get(username).getAmount();
+        return Money.toBigDecimal(accounts.get(username).getBalance());
+    }
+
+    /**
+     * Gets all bank accounts.
+     * @return unmodifiable live view of the bank accounts
+     */
+    public Collection<Account> findAll() {
+        return Collections.unmodifiableCollection(accounts.values());
     }
 }
@@ -0,0 +1,194 @@
+package com.bank.tiny.repostiroty;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Log-structured amount index of one history. Once {@value #RUN_SIZE} entries were appended after the last run, they
+ * are sorted by amount into an immutable run of entry indices; the amounts themselves are read from the history
+ * columns, so an indexed entry takes 4 bytes. A new run is merged with the newest runs while they are not larger, like
+ * a binary counter, so there are at most {@code log2(n / RUN_SIZE)} runs and every entry is copied {@code O(log n)}
+ * times in total.
+ * <p>
+ * Runs are sorted and merged on the {@value #THREAD_NAME} thread, never on the append path: an append only schedules
+ * a build when none is running for the history, and the build publishes a new {@link State} when it is done. Entries
+ * that are not in a run yet are not indexed at all, readers scan them from the history columns, starting at
+ * {@link State#indexedSize()}. Appends must be serialized by the caller, reads are lock-free and work on the immutable
+ * {@link State} they observed.
+ */
+final class AmountIndex {
+
+    private static final int RUN_SIZE = 1024;
+    private static final String THREAD_NAME = "history-indexer";
+    private static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile State state = new State(new Run[0], 0);
+
+    /**
+     * Schedules indexing of the entries appended since the last run once there are enough of them.
+     * @param history history being appended to
+     * @param size number of entries written to the columns, including the appended one
+     */
+    void add(TransactionHistory history, int size) {
+        if (size - state.indexedSize < RUN_SIZE || !building.compareAndSet(false, true)) {
+            return;
+        }
+        INDEXER.execute(() -> build(history, size));
+    }
+
+    /**
+     * Gets the current runs.
+     * @return {@link State} instance
+     */
+    State state() {
+        return state;
+    }
+
+    private void build(TransactionHistory history, int size) {
+        try {
+            State current = state;
+            if (size - current.indexedSize < RUN_SIZE) {
+                return;
+            }
+            Run run = sort(history, current.indexedSize, size);
+            Run[] runs = current.runs;
+            int count = runs.length;
+            while (count > 0 && runs[count - 1].size() <= run.size()) {
+                run = merge(history, runs[count - 1], run);
+                count--;
+            }
+            Run[] merged = Arrays.copyOf(runs, count + 1);
+            merged[count] = run;
+            state = new State(merged, size);
+        } finally {
+            building.set(false);
+        }
+        // entries appended while building, the size is published after the entries are written
+        add(history, history.size());
+    }
+
+    /**
+     * Immutable set of runs.
+     * @param runs sorted runs, oldest first
+     * @param indexedSize number of leading history entries covered by the runs
+     */
+    record State(Run[] runs, int indexedSize) {
+
+        /**
+         * Counts indexed entries within an amount range.
+         * @param history indexed history
+         * @param minAmount minimum amount in cents, inclusive
+         * @param maxAmount maximum amount in cents, inclusive
+         * @return number of entries
+         */
+        long count(TransactionHistory history, long minAmount, long maxAmount) {
+            long count = 0;
+            for (Run run : runs) {
+                count += run.upperBound(history, maxAmount) - run.lowerBound(history, minAmount);
+            }
+            return count;
+        }
+
+        /**
+         * Passes indices of indexed entries within an amount range to the consumer, in no particular order.
+         * @param history indexed history
+         * @param minAmount minimum amount in cents, inclusive
+         * @param maxAmount maximum amount in cents, inclusive
+         * @param consumer consumer of the entry indices
+         */
+        void forEach(TransactionHistory history, long minAmount, long maxAmount, IntConsumer consumer) {
+            for (Run run : runs) {
+                int end = run.upperBound(history, maxAmount);
+                for (int i = run.lowerBound(history, minAmount); i < end; i++) {
+                    consumer.accept(run.indices[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Entry indices sorted by amount, equal amounts in index order.
+     * @param indices entry indices
+     */
+    record Run(int[] indices) {
+
+        int size() {
+            return indices.length;
+        }
+
+        int lowerBound(TransactionHistory history, long amount) {
+            int low = 0;
+            int high = indices.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (history.amount(indices[middle]) < amount) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int upperBound(TransactionHistory history, long amount) {
+            return amount == Long.MAX_VALUE ? indices.length : lowerBound(history, amount + 1);
+        }
+    }
+
+    private static Run sort(TransactionHistory history, int from, int to) {
+        int length = to - from;
+        long[] amounts = new long[length];
+        int[] indices = new int[length];
+        for (int i = 0; i < length; i++) {
+            indices[i] = from + i;
+            amounts[i] = history.amount(indices[i]);
+        }
+        long[] amountBuffer = new long[length];
+        int[] indexBuffer = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+                int left = start;
+                int right = middle;
+                int position = start;
+                while (left < middle || right < end) {
+                    if (right == end || left < middle && amounts[left] <= amounts[right]) {
+                        amountBuffer[position] = amounts[left];
+                        indexBuffer[position++] = indices[left++];
+                    } else {
+                        amountBuffer[position] = amounts[right];
+                        indexBuffer[position++] = indices[right++];
+                    }
+                }
+            }
+            System.arraycopy(amountBuffer, 0, amounts, 0, length);
+            System.arraycopy(indexBuffer, 0, indices, 0, length);
+        }
+        return new Run(indices);
+    }
+
+    private static Run merge(TransactionHistory history, Run older, Run newer) {
+        int[] indices = new int[older.size() + newer.size()];
+        int left = 0;
+        int right = 0;
+        int position = 0;
+        while (left < older.size() || right < newer.size()) {
+            if (right == newer.size() || left < older.size()
+                    && history.amount(older.indices[left]) <= history.amount(newer.indices[right])) {
+                indices[position++] = older.indices[left++];
+            } else {
+                indices[position++] = newer.indices[right++];
+            }
+        }
+        return new Run(indices);
+    }
+}
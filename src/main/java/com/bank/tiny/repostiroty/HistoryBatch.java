@@ -0,0 +1,92 @@
+package com.bank.tiny.repostiroty;
+
+import com.bank.tiny.domain.TransactionType;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * History entries of several users collected during a batch of ledger operations and appended with
+ * {@link TransactionHistoryRepository#addTransactions(HistoryBatch)}, so every history is looked up once per batch
+ * instead of once per leg. Entries of a user keep the order they were added in. Not thread-safe.
+ */
+public final class HistoryBatch {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Map<String, Entries> entriesByUser = new LinkedHashMap<>();
+
+    /**
+     * Adds an entry.
+     * @param username user
+     * @param amount amount in cents
+     * @param transactionType transaction type
+     * @param counterparty counterparty username or {@code null}
+     * @param id transaction id
+     * @param timestamp transaction time in epoch milliseconds
+     */
+    public void add(String username, long amount, TransactionType transactionType, String counterparty, long id,
+                    long timestamp) {
+        entriesByUser.computeIfAbsent(username, k -> new Entries())
+                .add(amount, transactionType, counterparty, id, timestamp);
+    }
+
+    /**
+     * Checks whether the batch has no entries.
+     * @return {@code true} if no entry was added
+     */
+    public boolean isEmpty() {
+        return entriesByUser.isEmpty();
+    }
+
+    Map<String, Entries> entriesByUser() {
+        return entriesByUser;
+    }
+
+    /**
+     * Entries of one user in columns.
+     */
+    static final class Entries {
+
+        private long[] amounts = new long[INITIAL_CAPACITY];
+        private TransactionType[] types = new TransactionType[INITIAL_CAPACITY];
+        private String[] counterparties = new String[INITIAL_CAPACITY];
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private void add(long amount, TransactionType type, String counterparty, long id, long timestamp) {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+                counterparties = Arrays.copyOf(counterparties, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            amounts[size] = amount;
+            types[size] = type;
+            counterparties[size] = counterparty;
+            ids[size] = id;
+            timestamps[size++] = timestamp;
+        }
+
+        /**
+         * Appends the entries to a history.
+         * @param history history of the user
+         */
+        void appendTo(TransactionHistory history) {
+            for (int i = 0; i < size; i++) {
+                history.append(amounts[i], types[i], counterparties[i], ids[i], timestamps[i]);
+            }
+        }
+
+        TransactionType lastType() {
+            return types[size - 1];
+        }
+
+        long lastAmount() {
+            return amounts[size - 1];
+        }
+    }
+}
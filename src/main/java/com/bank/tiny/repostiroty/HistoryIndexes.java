@@ -0,0 +1,279 @@
+package com.bank.tiny.repostiroty;
+
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indexes of one {@link TransactionHistory}, updated on every append: entry indices per transfer
+ * counterparty and per transaction type, and an {@link AmountIndex} for amount ranges, which is built in the
+ * background. Together they take about 11 bytes per entry on top of the 29 bytes of the columns.
+ * <p>
+ * A query starts from the cheapest candidate set, i.e. the shortest posting list, the amount range or, without an
+ * indexed filter, the whole history, and checks the remaining conditions against the columns. Posting lists and the
+ * history are ordered by entry index, so paging newest first stops at the requested page; a wide amount range is
+ * therefore only worth collecting and sorting when it is small compared to the entries a page would have to walk.
+ * An empty filter needs no candidate set at all: its page is a window of entry indices and its count the size.
+ */
+final class HistoryIndexes {
+
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+    private static final int ANY = Integer.MIN_VALUE;
+
+    private final IntPostings[] byType = new IntPostings[TRANSACTION_TYPES.length];
+    private final Map<Integer, IntPostings> byCounterparty = new ConcurrentHashMap<>();
+    private final AmountIndex byAmount = new AmountIndex();
+
+    HistoryIndexes() {
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new IntPostings();
+        }
+    }
+
+    /**
+     * Indexes an appended entry. Called before the entry is published by the history size.
+     * @param history history being appended to
+     * @param index entry index
+     * @param type transaction type
+     * @param counterpartyId counterparty id or {@link UsernameDictionary#NO_ID}
+     */
+    void add(TransactionHistory history, int index, TransactionType type, int counterpartyId) {
+        byType[type.ordinal()].add(index);
+        if (counterpartyId != UsernameDictionary.NO_ID) {
+            byCounterparty.computeIfAbsent(counterpartyId, id -> new IntPostings()).add(index);
+        }
+        byAmount.add(history, index + 1);
+    }
+
+    /**
+     * Finds matching entries, newest first.
+     * @param history indexed history
+     * @param filter {@link TransactionFilter} instance
+     * @param toIndex exclusive upper bound of the entry indices
+     * @param offset number of newest matching entries to skip
+     * @param limit maximum number of entries
+     * @return matching entry indices in descending order
+     */
+    int[] find(TransactionHistory history, TransactionFilter filter, int toIndex, int offset, int limit) {
+        if (filter.isEmpty()) {
+            int from = Math.min(toIndex, history.size()) - offset;
+            int[] page = new int[Math.max(Math.min(limit, from), 0)];
+            for (int i = 0; i < page.length; i++) {
+                page[i] = from - 1 - i;
+            }
+            return page;
+        }
+        Query query = query(history, filter, Math.min(toIndex, history.size()), (long) offset + limit);
+        if (query == null) {
+            return new int[0];
+        }
+        int[] page = new int[Math.min(limit, query.end)];
+        int found = 0;
+        int skipped = 0;
+        if (query.postings != null) {
+            for (int position = query.postings.countBelow(query.end) - 1; position >= 0 && found < limit; position--) {
+                int index = query.postings.get(position);
+                if (query.matches(index) && skipped++ >= offset) {
+                    page[found++] = index;
+                }
+            }
+        } else if (query.useAmountIndex) {
+            int[] candidates = query.amountCandidates();
+            for (int i = candidates.length - 1; i >= 0 && found < limit; i--) {
+                if (skipped++ >= offset) {
+                    page[found++] = candidates[i];
+                }
+            }
+        } else {
+            for (int index = query.end - 1; index >= 0 && found < limit; index--) {
+                if (query.matches(index) && skipped++ >= offset) {
+                    page[found++] = index;
+                }
+            }
+        }
+        return found == page.length ? page : Arrays.copyOf(page, found);
+    }
+
+    /**
+     * Counts matching entries.
+     * @param history indexed history
+     * @param filter {@link TransactionFilter} instance
+     * @return number of matching entries
+     */
+    int count(TransactionHistory history, TransactionFilter filter) {
+        if (filter.isEmpty()) {
+            return history.size();
+        }
+        Query query = query(history, filter, history.size(), Long.MAX_VALUE);
+        if (query == null) {
+            return 0;
+        }
+        if (query.postings != null) {
+            int candidates = query.postings.countBelow(query.end);
+            if (query.postingsOnly) {
+                return candidates;
+            }
+            int count = 0;
+            for (int position = 0; position < candidates; position++) {
+                if (query.matches(query.postings.get(position))) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        if (query.useAmountIndex) {
+            return query.amountOnly ? query.countAmounts() : query.amountCandidates().length;
+        }
+        int count = 0;
+        for (int index = 0; index < query.end; index++) {
+            if (query.matches(index)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Query query(TransactionHistory history, TransactionFilter filter, int end, long wanted) {
+        int counterpartyId = ANY;
+        if (filter.counterparty() != null) {
+            counterpartyId = history.getDictionary().find(filter.counterparty());
+            if (counterpartyId == UsernameDictionary.NO_ID) {
+                return null;
+            }
+        }
+        long minAmount = filter.minAmount() != null ? filter.minAmount() : Long.MIN_VALUE;
+        long maxAmount = filter.maxAmount() != null ? filter.maxAmount() : Long.MAX_VALUE;
+        if (minAmount > maxAmount) {
+            return null;
+        }
+        Query query = new Query(history, counterpartyId, filter.type(), minAmount, maxAmount, end,
+                byAmount.state());
+        long candidates = end;
+        if (counterpartyId != ANY) {
+            IntPostings postings = byCounterparty.get(counterpartyId);
+            if (postings == null) {
+                return null;
+            }
+            query.postings = postings;
+            query.postingsOnly = filter.type() == null && !filter.hasAmountRange();
+            candidates = postings.size();
+        }
+        if (filter.type() != null && byType[filter.type().ordinal()].size() < candidates) {
+            query.postings = byType[filter.type().ordinal()];
+            query.postingsOnly = counterpartyId == ANY && !filter.hasAmountRange();
+            candidates = query.postings.size();
+        }
+        if (filter.hasAmountRange()) {
+            int unindexed = Math.max(end - query.amounts.indexedSize(), 0);
+            long amountMatches = query.amounts.count(history, minAmount, maxAmount) + unindexed;
+            boolean amountOnly = counterpartyId == ANY && filter.type() == null
+                    && query.amounts.indexedSize() <= end;
+            // walking newest first stops after about wanted / selectivity candidates, collecting sorts the range
+            // and counting the range alone only binary-searches the runs
+            long walked = amountMatches == 0 ? candidates
+                    : Math.min(candidates, Math.min(wanted, end) * end / amountMatches);
+            long amountCost = amountOnly && wanted == Long.MAX_VALUE ? unindexed : 2 * amountMatches;
+            if (amountCost < walked) {
+                query.postings = null;
+                query.useAmountIndex = true;
+                query.amountOnly = amountOnly;
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Resolved filter and the chosen candidate set.
+     */
+    private static final class Query {
+
+        private final TransactionHistory history;
+        private final int counterpartyId;
+        private final TransactionType type;
+        private final long minAmount;
+        private final long maxAmount;
+        private final int end;
+        private final AmountIndex.State amounts;
+        private IntPostings postings;
+        private boolean postingsOnly;
+        private boolean useAmountIndex;
+        private boolean amountOnly;
+
+        private Query(TransactionHistory history, int counterpartyId, TransactionType type, long minAmount,
+                      long maxAmount, int end, AmountIndex.State amounts) {
+            this.history = history;
+            this.counterpartyId = counterpartyId;
+            this.type = type;
+            this.minAmount = minAmount;
+            this.maxAmount = maxAmount;
+            this.end = end;
+            this.amounts = amounts;
+        }
+
+        private boolean matches(int index) {
+            long amount = history.amount(index);
+            return amount >= minAmount && amount <= maxAmount
+                    && (type == null || history.type(index) == type)
+                    && (counterpartyId == ANY || history.counterpartyId(index) == counterpartyId);
+        }
+
+        /**
+         * Counts entries of the amount range without collecting them, if the range is the only condition.
+         * @return number of matching entries
+         */
+        private int countAmounts() {
+            long count = amounts.count(history, minAmount, maxAmount);
+            for (int index = amounts.indexedSize(); index < end; index++) {
+                if (matches(index)) {
+                    count++;
+                }
+            }
+            return (int) count;
+        }
+
+        /**
+         * Collects matching entries of the amount range, the indexed ones from the runs and the rest from the
+         * columns.
+         * @return matching entry indices in ascending order
+         */
+        private int[] amountCandidates() {
+            IndexBuffer candidates = new IndexBuffer();
+            amounts.forEach(history, minAmount, maxAmount, index -> {
+                if (index < end && matches(index)) {
+                    candidates.add(index);
+                }
+            });
+            for (int index = amounts.indexedSize(); index < end; index++) {
+                if (matches(index)) {
+                    candidates.add(index);
+                }
+            }
+            return candidates.toSortedArray();
+        }
+    }
+
+    /**
+     * Growable buffer of entry indices.
+     */
+    private static final class IndexBuffer {
+
+        private int[] indices = new int[16];
+        private int size;
+
+        private void add(int index) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            indices[size++] = index;
+        }
+
+        private int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(indices, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.bank.tiny.repostiroty;
+
+import java.util.Arrays;
+
+/**
+ * Append-only ascending list of history entry indices, chunked like the {@link TransactionHistory} columns. Appends
+ * must be serialized by the caller, reads are lock-free and see every index appended before the {@link #size()}
+ * they observed.
+ */
+final class IntPostings {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[][] chunks = new int[1][];
+    private volatile int size;
+
+    /**
+     * Appends an index greater than every index appended before.
+     * @param value entry index
+     */
+    void add(int value) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        int offset = index & CHUNK_MASK;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunk * 2);
+        }
+        int[] values = chunks[chunk];
+        if (values == null || offset == values.length) {
+            int capacity = chunk > 0 ? CHUNK_SIZE
+                    : values == null ? INITIAL_CAPACITY : Math.min(values.length * 2, CHUNK_SIZE);
+            chunks[chunk] = values = values == null ? new int[capacity] : Arrays.copyOf(values, capacity);
+        }
+        values[offset] = value;
+        size = index + 1;
+    }
+
+    /**
+     * Gets number of indices.
+     * @return number of indices
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets an index.
+     * @param position position in the list
+     * @return entry index
+     */
+    int get(int position) {
+        return chunks[position >>> CHUNK_BITS][position & CHUNK_MASK];
+    }
+
+    /**
+     * Counts indices lower than the bound.
+     * @param bound exclusive upper bound of the entry indices
+     * @return position of the first index not lower than the bound
+     */
+    int countBelow(int bound) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (get(middle) < bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,210 @@
+package com.bank.tiny.repostiroty;
+
+import com.bank.tiny.domain.DailyStatement;
+import com.bank.tiny.domain.StatementTotals;
+import com.bank.tiny.domain.TransactionType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statement aggregates of one account, updated in O(1) on every history append: amounts and counts per transaction
+ * type split into cash operations and transfers, overall and per UTC day. Day buckets are kept in ascending order in
+ * growable arrays, so an append on the newest day updates the last bucket and an append on a new day adds one. Only an
+ * append older than the newest day, e.g. after a clock adjustment, looks its bucket up with a binary search.
+ * <p>
+ * Updates must be serialized by the caller, which is naturally done by the account lock. Reads must hold the same lock
+ * to see consistent totals.
+ */
+public class StatementAggregates {
+
+    /**
+     * Number of aggregated categories: cash deposits, cash withdrawals, received and sent transfers.
+     */
+    public static final int CATEGORIES = 4;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int INITIAL_DAYS = 4;
+
+    private final long[] amounts = new long[CATEGORIES];
+    private final long[] counts = new long[CATEGORIES];
+    private int[] days = new int[INITIAL_DAYS];
+    private long[] dayAmounts = new long[INITIAL_DAYS * CATEGORIES];
+    private long[] dayCounts = new long[INITIAL_DAYS * CATEGORIES];
+    private int dayCount;
+
+    /**
+     * Adds a history entry.
+     * @param amount amount in cents
+     * @param type transaction type
+     * @param transfer {@code true} for a transfer leg, {@code false} for a cash operation
+     * @param timestamp entry time in epoch milliseconds
+     */
+    public void add(long amount, TransactionType type, boolean transfer, long timestamp) {
+        int category = (transfer ? 2 : 0) + (type == TransactionType.WITHDRAW ? 1 : 0);
+        amounts[category] += amount;
+        counts[category]++;
+        int bucket = bucket((int) Math.floorDiv(timestamp, MILLIS_PER_DAY)) * CATEGORIES + category;
+        dayAmounts[bucket] += amount;
+        dayCounts[bucket]++;
+    }
+
+    /**
+     * Restores the totals of a day, adding them to the overall totals.
+     * @param epochDay UTC day
+     * @param categoryAmounts amounts in cents of the {@value #CATEGORIES} categories
+     * @param categoryCounts entry counts of the {@value #CATEGORIES} categories
+     */
+    public void restoreDay(int epochDay, long[] categoryAmounts, long[] categoryCounts) {
+        int bucket = bucket(epochDay) * CATEGORIES;
+        for (int category = 0; category < CATEGORIES; category++) {
+            amounts[category] += categoryAmounts[category];
+            counts[category] += categoryCounts[category];
+            dayAmounts[bucket + category] += categoryAmounts[category];
+            dayCounts[bucket + category] += categoryCounts[category];
+        }
+    }
+
+    /**
+     * Gets the totals since the account was opened.
+     * @return {@link StatementTotals} instance
+     */
+    public StatementTotals totals() {
+        return totals(amounts, counts, 0);
+    }
+
+    /**
+     * Gets the totals of a date range by summing its day buckets.
+     * @param from first UTC date, inclusive
+     * @param to end UTC date, exclusive
+     * @return {@link StatementTotals} instance
+     */
+    public StatementTotals totals(LocalDate from, LocalDate to) {
+        long end = to.toEpochDay();
+        long[] rangeAmounts = new long[CATEGORIES];
+        long[] rangeCounts = new long[CATEGORIES];
+        for (int i = lowerBound(from.toEpochDay()); i < dayCount && days[i] < end; i++) {
+            for (int category = 0; category < CATEGORIES; category++) {
+                rangeAmounts[category] += dayAmounts[i * CATEGORIES + category];
+                rangeCounts[category] += dayCounts[i * CATEGORIES + category];
+            }
+        }
+        return totals(rangeAmounts, rangeCounts, 0);
+    }
+
+    /**
+     * Gets the totals of the days with movements within a date range.
+     * @param from first UTC date, inclusive
+     * @param to last UTC date, inclusive
+     * @return {@link DailyStatement}s, oldest first
+     */
+    public List<DailyStatement> days(LocalDate from, LocalDate to) {
+        long last = to.toEpochDay();
+        List<DailyStatement> statements = new ArrayList<>();
+        for (int i = lowerBound(from.toEpochDay()); i < dayCount && days[i] <= last; i++) {
+            statements.add(new DailyStatement(LocalDate.ofEpochDay(days[i]),
+                    totals(dayAmounts, dayCounts, i * CATEGORIES)));
+        }
+        return statements;
+    }
+
+    /**
+     * Gets the number of days with movements.
+     * @return number of day buckets
+     */
+    public int dayCount() {
+        return dayCount;
+    }
+
+    /**
+     * Gets the day of a bucket.
+     * @param index bucket index, buckets are ordered by day
+     * @return UTC epoch day
+     */
+    public int day(int index) {
+        return days[index];
+    }
+
+    /**
+     * Gets the amount of a category in a day bucket.
+     * @param index bucket index
+     * @param category category index
+     * @return amount in cents
+     */
+    public long dayAmount(int index, int category) {
+        return dayAmounts[index * CATEGORIES + category];
+    }
+
+    /**
+     * Gets the entry count of a category in a day bucket.
+     * @param index bucket index
+     * @param category category index
+     * @return number of entries
+     */
+    public long dayEntries(int index, int category) {
+        return dayCounts[index * CATEGORIES + category];
+    }
+
+    /**
+     * Copies the aggregates, e.g. to write them out after releasing the account lock.
+     * @return {@link StatementAggregates} instance
+     */
+    public StatementAggregates copy() {
+        StatementAggregates copy = new StatementAggregates();
+        System.arraycopy(amounts, 0, copy.amounts, 0, CATEGORIES);
+        System.arraycopy(counts, 0, copy.counts, 0, CATEGORIES);
+        copy.days = Arrays.copyOf(days, Math.max(dayCount, 1));
+        copy.dayAmounts = Arrays.copyOf(dayAmounts, Math.max(dayCount, 1) * CATEGORIES);
+        copy.dayCounts = Arrays.copyOf(dayCounts, Math.max(dayCount, 1) * CATEGORIES);
+        copy.dayCount = dayCount;
+        return copy;
+    }
+
+    private int bucket(int epochDay) {
+        if (dayCount > 0 && days[dayCount - 1] == epochDay) {
+            return dayCount - 1;
+        }
+        int index = dayCount == 0 || days[dayCount - 1] < epochDay ? dayCount : lowerBound(epochDay);
+        if (index < dayCount && days[index] == epochDay) {
+            return index;
+        }
+        if (dayCount == days.length) {
+            days = Arrays.copyOf(days, dayCount * 2);
+            dayAmounts = Arrays.copyOf(dayAmounts, dayCount * 2 * CATEGORIES);
+            dayCounts = Arrays.copyOf(dayCounts, dayCount * 2 * CATEGORIES);
+        }
+        if (index < dayCount) {
+            System.arraycopy(days, index, days, index + 1, dayCount - index);
+            System.arraycopy(dayAmounts, index * CATEGORIES, dayAmounts, (index + 1) * CATEGORIES,
+                    (dayCount - index) * CATEGORIES);
+            System.arraycopy(dayCounts, index * CATEGORIES, dayCounts, (index + 1) * CATEGORIES,
+                    (dayCount - index) * CATEGORIES);
+            Arrays.fill(dayAmounts, index * CATEGORIES, (index + 1) * CATEGORIES, 0);
+            Arrays.fill(dayCounts, index * CATEGORIES, (index + 1) * CATEGORIES, 0);
+        }
+        days[index] = epochDay;
+        dayCount++;
+        return index;
+    }
+
+    private int lowerBound(long epochDay) {
+        int low = 0;
+        int high = dayCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static StatementTotals totals(long[] amounts, long[] counts, int offset) {
+        return new StatementTotals(amounts[offset], amounts[offset + 1], amounts[offset + 2], amounts[offset + 3],
+                counts[offset], counts[offset + 1], counts[offset + 2], counts[offset + 3]);
+    }
+}
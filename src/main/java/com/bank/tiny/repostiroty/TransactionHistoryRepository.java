@@ -1,17 +1,25 @@
 package com.bank.tiny.repostiroty;
 
 import com.bank.tiny.domain.Transaction;
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.jfr.HistoryAppendEvent;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Repository of per-user transaction histories kept in columnar {@link TransactionHistory} stores. Appends for a user
+ * must be serialized by the caller (the account lock), reads never block.
+ */
 @Repository
 public class TransactionHistoryRepository {
 
-    private final Map<String, List<Transaction>> userTransactions = new HashMap<>();
+    private final UsernameDictionary dictionary = new UsernameDictionary();
+    private final Map<String, TransactionHistory> userTransactions = new ConcurrentHashMap<>();
 
     /**
      * Add transaction to history.
@@ -19,16 +27,166 @@ public class TransactionHistoryRepository {
      * @param transaction {@link Transaction} instance
      */
     public void addTransaction(String username, Transaction transaction) {
-        List<Transaction> transactions = userTransactions.computeIfAbsent(username, k -> new ArrayList<>());
-        transactions.add(transaction);
+        addTransaction(username, transaction.amount(), transaction.transactionType(), transaction.user(),
+                transaction.id(), transaction.timestamp());
+    }
+
+    /**
+     * Add transaction without an id to history at the current time without creating a {@link Transaction} instance.
+     * @param username user
+     * @param amount amount in cents
+     * @param transactionType transaction type
+     * @param counterparty counterparty username or {@code null}
+     */
+    public void addTransaction(String username, long amount, TransactionType transactionType, String counterparty) {
+        addTransaction(username, amount, transactionType, counterparty, 0, System.currentTimeMillis());
+    }
+
+    /**
+     * Add transaction to history without creating a {@link Transaction} instance.
+     * @param username user
+     * @param amount amount in cents
+     * @param transactionType transaction type
+     * @param counterparty counterparty username or {@code null}
+     * @param id transaction id
+     * @param timestamp transaction time in epoch milliseconds
+     */
+    public void addTransaction(String username, long amount, TransactionType transactionType, String counterparty,
+                               long id, long timestamp) {
+        HistoryAppendEvent event = new HistoryAppendEvent();
+        event.begin();
+        TransactionHistory history = getHistory(username);
+        history.append(amount, transactionType, counterparty, id, timestamp);
+        event.complete(username, transactionType, amount, history);
+    }
+
+    /**
+     * Appends the entries of a batch, looking every history up once.
+     * @param batch {@link HistoryBatch} instance
+     */
+    public void addTransactions(HistoryBatch batch) {
+        for (Map.Entry<String, HistoryBatch.Entries> entry : batch.entriesByUser().entrySet()) {
+            HistoryAppendEvent event = new HistoryAppendEvent();
+            event.begin();
+            TransactionHistory history = getHistory(entry.getKey());
+            HistoryBatch.Entries entries = entry.getValue();
+            entries.appendTo(history);
+            event.complete(entry.getKey(), entries.lastType(), entries.lastAmount(), history);
+        }
     }
 
     /**
      * Gets transaction history.
      * @param username user
-     * @return transaction history
+     * @return copy of the transaction history at the moment of the call
      */
     public List<Transaction> getTransactions(String username) {
-        return userTransactions.computeIfAbsent(username, k -> new ArrayList<>());
+        TransactionHistory history = getHistory(username);
+        return getTransactionRange(username, 0, history.size());
+    }
+
+    /**
+     * Gets a page of transaction history, newest transactions first.
+     * @param username user
+     * @param offset number of newest transactions to skip
+     * @param limit maximum number of transactions to return
+     * @return copy of the transaction history page
+     */
+    public List<Transaction> getTransactions(String username, int offset, int limit) {
+        TransactionHistory history = getHistory(username);
+        int toIndex = Math.max(history.size() - offset, 0);
+        int fromIndex = Math.max(toIndex - limit, 0);
+        List<Transaction> page = new ArrayList<>(toIndex - fromIndex);
+        for (int i = toIndex - 1; i >= fromIndex; i--) {
+            page.add(history.get(i));
+        }
+        return page;
+    }
+
+    /**
+     * Gets a page of transactions matching the filter, newest transactions first. Uses the secondary indexes of the
+     * history, so selective filters stay fast on large histories.
+     * @param username user
+     * @param filter {@link TransactionFilter} instance
+     * @param offset number of newest matching transactions to skip
+     * @param limit maximum number of transactions to return
+     * @return copy of the matching transactions page
+     */
+    public List<Transaction> findTransactions(String username, TransactionFilter filter, int offset, int limit) {
+        TransactionHistory history = getHistory(username);
+        int[] indices = history.find(filter, history.size(), offset, limit);
+        List<Transaction> page = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            page.add(history.get(index));
+        }
+        return page;
+    }
+
+    /**
+     * Gets number of transactions matching the filter.
+     * @param username user
+     * @param filter {@link TransactionFilter} instance
+     * @return number of matching transactions
+     */
+    public int countTransactions(String username, TransactionFilter filter) {
+        return getHistory(username).count(filter);
+    }
+
+    /**
+     * Gets transaction history range in append order.
+     * @param username user
+     * @param fromIndex index of the first transaction, inclusive
+     * @param toIndex index of the last transaction, exclusive
+     * @return copy of the transaction history range
+     */
+    public List<Transaction> getTransactionRange(String username, int fromIndex, int toIndex) {
+        TransactionHistory history = getHistory(username);
+        if (fromIndex < 0 || toIndex > history.size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") is out of history bounds");
+        }
+        List<Transaction> transactions = new ArrayList<>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            transactions.add(history.get(i));
+        }
+        return transactions;
+    }
+
+    /**
+     * Gets number of transactions in history.
+     * @param username user
+     * @return number of transactions
+     */
+    public int countTransactions(String username) {
+        return getHistory(username).size();
+    }
+
+    /**
+     * Gets number of transactions in all histories. Sums the history sizes, so the cost is linear in the number of
+     * users.
+     * @return number of transactions
+     */
+    public long countAllTransactions() {
+        long count = 0;
+        for (TransactionHistory history : userTransactions.values()) {
+            count += history.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the columnar history store of the user for scans that should not materialize {@link Transaction}s.
+     * @param username user
+     * @return {@link TransactionHistory} instance
+     */
+    public TransactionHistory getHistory(String username) {
+        return userTransactions.computeIfAbsent(username, k -> new TransactionHistory(dictionary));
+    }
+
+    /**
+     * Gets dictionary of usernames referenced by the history stores.
+     * @return {@link UsernameDictionary} instance
+     */
+    public UsernameDictionary getDictionary() {
+        return dictionary;
     }
 }
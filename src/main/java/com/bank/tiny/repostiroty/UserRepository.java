@@ -1,22 +1,40 @@
 package com.bank.tiny.repostiroty;
 
 import com.bank.tiny.domain.BankUser;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Repository;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Store of bank users. Also serves the users to Spring Security, since every {@link BankUser} is its own
+ * {@link UserDetails}.
+ */
 @Repository
-public class UserRepository {
+public class UserRepository implements UserDetailsService {
 
-    private final Map<String, BankUser> users = new HashMap<>();
+    private final Map<String, BankUser> users = new ConcurrentHashMap<>();
 
     /**
      * Creates bank user.
      * @param bankUser bank user.
+     * @return {@code false} if a user with the same username already exists
      */
-    public void createUser(BankUser bankUser) {
-        users.put(bankUser.getUsername(), bankUser);
+    public boolean createUser(BankUser bankUser) {
+        return users.putIfAbsent(bankUser.getUsername(), bankUser) == null;
+    }
+
+    /**
+     * Deletes bank user.
+     * @param bankUser bank user
+     */
+    public void deleteUser(BankUser bankUser) {
+        users.remove(bankUser.getUsername(), bankUser);
     }
 
     /**
@@ -27,4 +45,27 @@ public class UserRepository {
     public BankUser find(String username) {
         return users.get(username);
     }
+
+    /**
+     * Gets bank user as the principal to authenticate.
+     * @param username username
+     * @return bank user
+     * @throws UsernameNotFoundException if user does not exist
+     */
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        BankUser bankUser = users.get(username);
+        if (bankUser == null) {
+            throw new UsernameNotFoundException("User " + username + " not found");
+        }
+        return bankUser;
+    }
+
+    /**
+     * Gets all bank users.
+     * @return unmodifiable live view of the bank users
+     */
+    public Collection<BankUser> findAll() {
+        return Collections.unmodifiableCollection(users.values());
+    }
 }
@@ -0,0 +1,76 @@
+package com.bank.tiny.repostiroty;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Interns usernames into dense integer ids, so history columns can reference counterparties with an {@code int}.
+ * Lookups by id are lock-free, registration of a new username is serialized by a {@link ReentrantLock}, which unlike
+ * a monitor never pins the carrier of a virtual thread.
+ */
+public class UsernameDictionary {
+
+    /**
+     * Id used for a missing username.
+     */
+    public static final int NO_ID = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ReentrantLock registerLock = new ReentrantLock();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * Gets id of the username, registering it if needed.
+     * @param username username, may be {@code null}
+     * @return id of the username or {@link #NO_ID} for {@code null}
+     */
+    public int id(String username) {
+        if (username == null) {
+            return NO_ID;
+        }
+        Integer id = ids.get(username);
+        return id != null ? id : register(username);
+    }
+
+    /**
+     * Gets id of an already registered username.
+     * @param username username
+     * @return id of the username or {@link #NO_ID} if it was never registered
+     */
+    public int find(String username) {
+        Integer id = username == null ? null : ids.get(username);
+        return id != null ? id : NO_ID;
+    }
+
+    /**
+     * Gets username by id.
+     * @param id id returned by {@link #id(String)}
+     * @return username or {@code null} for {@link #NO_ID}
+     */
+    public String name(int id) {
+        return id == NO_ID ? null : names[id];
+    }
+
+    private int register(String username) {
+        registerLock.lock();
+        try {
+            Integer id = ids.get(username);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = username;
+            names = current;
+            ids.put(username, size);
+            return size++;
+        } finally {
+            registerLock.unlock();
+        }
+    }
+}
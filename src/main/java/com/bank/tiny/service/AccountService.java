@@ -1,32 +1,180 @@
 package com.bank.tiny.service;
 
 import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.AccountStatement;
+import com.bank.tiny.domain.Money;
+import com.bank.tiny.domain.PeriodStatement;
+import com.bank.tiny.domain.StatementTotals;
 import com.bank.tiny.domain.Transaction;
+import com.bank.tiny.domain.TransactionFilter;
 import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.domain.TransferInstruction;
+import com.bank.tiny.domain.TransferResult;
+import com.bank.tiny.domain.TransferStatus;
+import com.bank.tiny.jfr.DepositEvent;
+import com.bank.tiny.jfr.HistoryPageEvent;
+import com.bank.tiny.jfr.TransferEvent;
+import com.bank.tiny.jfr.WithdrawEvent;
+import com.bank.tiny.journal.JournalRecord;
+import com.bank.tiny.journal.JournalRecordType;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.journal.TransactionClock;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.metrics.LedgerMetrics.Operation;
 import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.HistoryBatch;
+import com.bank.tiny.repostiroty.StatementAggregates;
+import com.bank.tiny.repostiroty.TransactionHistory;
 import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.LedgerCommandPipeline.CommandType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Service for working with bank accounts. Allows to deposit, withdraw or transfer money to another account,
- * as well as deactivate an account.
+ * as well as deactivate an account. Every movement is applied under the locks of its accounts, see {@link Account}.
  */
 @Service
 public class AccountService {
 
+    /**
+     * Ledger execution modes.
+     */
+    public enum ExecutionMode {
+        /**
+         * Calling threads apply operations under account locks.
+         */
+        LOCKING,
+        /**
+         * Operations are submitted to a {@link LedgerCommandPipeline} and applied by its single business logic thread
+         * in a total order; the synchronous methods wait for the submitted command.
+         */
+        PIPELINE
+    }
+
+    private static final int DEFAULT_HOT_ACCOUNT_CONTENTION = 128;
+
     private final TransactionHistoryRepository transactionHistoryRepository;
     private final AccountRepository accountRepository;
+    private final LedgerJournal journal;
+    private final LedgerCommandPipeline pipeline;
+    private final LedgerMetrics metrics;
+    private final LedgerEventBus events;
+    private final TransactionClock clock;
+    private final int hotAccountContention;
+    private final int hotAccountStripes;
+    private final VelocityRules velocityRules;
+
+    /**
+     * Creates service in the {@link ExecutionMode#LOCKING} mode without metrics.
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     */
+    public AccountService(AccountRepository accountRepository,
+                          TransactionHistoryRepository transactionHistoryRepository, LedgerJournal journal) {
+        this(accountRepository, transactionHistoryRepository, journal, LedgerMetrics.disabled(),
+                new LedgerEventBus(), ExecutionMode.LOCKING, 0, DEFAULT_HOT_ACCOUNT_CONTENTION, 0);
+    }
+
+    /**
+     * Parametrized constructor.
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param metrics {@link LedgerMetrics} instance
+     * @param events {@link LedgerEventBus} instance
+     * @param executionMode {@link ExecutionMode} of ledger operations
+     * @param ringSize ring buffer size of the command pipeline, a power of two
+     */
+    public AccountService(AccountRepository accountRepository,
+                          TransactionHistoryRepository transactionHistoryRepository, LedgerJournal journal,
+                          LedgerMetrics metrics, LedgerEventBus events, ExecutionMode executionMode, int ringSize) {
+        this(accountRepository, transactionHistoryRepository, journal, metrics, events, executionMode, ringSize,
+                DEFAULT_HOT_ACCOUNT_CONTENTION, 0);
+    }
+
+    /**
+     * Parametrized constructor.
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param metrics {@link LedgerMetrics} instance
+     * @param events {@link LedgerEventBus} instance
+     * @param executionMode {@link ExecutionMode} of ledger operations
+     * @param ringSize ring buffer size of the command pipeline, a power of two
+     * @param hotAccountContention contended acquisitions out of 256 lock acquisitions of a transfer recipient that
+     *                             promote it to a hot account, non-positive value disables hot accounts
+     * @param hotAccountStripes number of credit stripes of a hot account, rounded up to a power of two,
+     *                          non-positive value means twice the number of processors
+     */
+    public AccountService(AccountRepository accountRepository,
+                          TransactionHistoryRepository transactionHistoryRepository, LedgerJournal journal,
+                          LedgerMetrics metrics, LedgerEventBus events, ExecutionMode executionMode, int ringSize,
+                          int hotAccountContention, int hotAccountStripes) {
+        this(accountRepository, transactionHistoryRepository, journal, metrics, events, executionMode, ringSize,
+                hotAccountContention, hotAccountStripes, VelocityRules.disabled());
+    }
 
     /**
      * Parametrized constructor.
+     * @param accountRepository {@link AccountRepository} instance
      * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param metrics {@link LedgerMetrics} instance
+     * @param events {@link LedgerEventBus} instance
+     * @param executionMode {@link ExecutionMode} of ledger operations
+     * @param ringSize ring buffer size of the command pipeline, a power of two
+     * @param hotAccountContention contended acquisitions out of 256 lock acquisitions of a transfer recipient that
+     *                             promote it to a hot account, non-positive value disables hot accounts
+     * @param hotAccountStripes number of credit stripes of a hot account, rounded up to a power of two,
+     *                          non-positive value means twice the number of processors
+     * @param velocityRules {@link VelocityRules} checked before every deposit, withdrawal and transfer
      */
+    @Autowired
     public AccountService(AccountRepository accountRepository,
-                          TransactionHistoryRepository transactionHistoryRepository) {
+                          TransactionHistoryRepository transactionHistoryRepository, LedgerJournal journal,
+                          LedgerMetrics metrics, LedgerEventBus events,
+                          @Value("${tinybank.ledger.execution-mode:LOCKING}") ExecutionMode executionMode,
+                          @Value("${tinybank.ledger.ring-size:65536}") int ringSize,
+                          @Value("${tinybank.ledger.hot-account.contention:128}") int hotAccountContention,
+                          @Value("${tinybank.ledger.hot-account.stripes:0}") int hotAccountStripes,
+                          VelocityRules velocityRules) {
+        this.hotAccountContention = hotAccountContention;
+        int stripes = hotAccountStripes > 0 ? hotAccountStripes : 2 * Runtime.getRuntime().availableProcessors();
+        this.hotAccountStripes = stripes > 1 ? Integer.highestOneBit(stripes - 1) << 1 : 1;
         this.transactionHistoryRepository = transactionHistoryRepository;
         this.accountRepository = accountRepository;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.events = events;
+        this.clock = journal.getClock();
+        this.velocityRules = velocityRules;
+        this.pipeline = executionMode == ExecutionMode.PIPELINE ? new LedgerCommandPipeline(ringSize, this::apply)
+                : null;
+    }
+
+    /**
+     * Stops the command pipeline, if any.
+     */
+    @PreDestroy
+    public void close() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
     }
 
     /**
@@ -34,7 +182,8 @@ public class AccountService {
      * @param username user for whom the account is created
      */
     public void createAccount(String username) {
-        accountRepository.createAccount(username);
+        journal.append(JournalRecordType.CREATE_ACCOUNT, username, null, 0,
+                () -> accountRepository.createAccount(username));
     }
 
     /**
@@ -46,15 +195,62 @@ public class AccountService {
         return accountRepository.getBalance(username);
     }
 
+    /**
+     * Get current balance for user in cents.
+     * @param username user
+     * @return balance for user in cents
+     */
+    public long getBalanceCents(String username) {
+        return accountRepository.find(username).getBalance();
+    }
+
     /**
      * Deposits provided amount to bank account.
      * @param username user to whom the account is deposited
      * @param depositAmount deposit amount
      */
     public void deposit(String username, BigDecimal depositAmount) {
-        Account account = accountRepository.find(username);
-        account.setAmount(account.getAmount().add(depositAmount));
-        transactionHistoryRepository.addTransaction(username, new Transaction(depositAmount, TransactionType.DEPOSIT, null));
+        deposit(username, Money.toCents(depositAmount));
+    }
+
+    /**
+     * Deposits provided amount in cents to bank account.
+     * @param username user to whom the account is deposited
+     * @param depositCents deposit amount in cents
+     * @throws ArithmeticException if the resulting balance overflows
+     * @throws VelocityLimitExceededException if the deposit violates a rejecting velocity rule
+     */
+    public void deposit(String username, long depositCents) {
+        long start = metrics.start();
+        DepositEvent event = new DepositEvent();
+        event.begin();
+        try {
+            if (usePipeline()) {
+                await(submitDeposit(username, depositCents));
+            } else {
+                applyDeposit(username, depositCents);
+            }
+            event.complete(username, depositCents, depositCents);
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.DEPOSIT);
+            if (event.shouldCommit()) {
+                event.fail(username, depositCents, e);
+            }
+            throw e;
+        } finally {
+            metrics.record(Operation.DEPOSIT, start);
+        }
+    }
+
+    /**
+     * Submits a deposit in cents to the command pipeline.
+     * @param username user to whom the account is deposited
+     * @param depositCents deposit amount in cents
+     * @return future completed with the deposited amount in cents
+     * @throws IllegalStateException if the service is not in the {@link ExecutionMode#PIPELINE} mode
+     */
+    public CompletableFuture<Long> submitDeposit(String username, long depositCents) {
+        return requirePipeline().submit(CommandType.DEPOSIT, username, null, depositCents);
     }
 
     /**
@@ -65,7 +261,45 @@ public class AccountService {
      * @return the actual withdrawn amount
      */
     public BigDecimal withdraw(String username, BigDecimal amount) {
-        return withdraw(username, amount, null);
+        return Money.toBigDecimal(withdraw(username, Money.toCents(amount)));
+    }
+
+    /**
+     * Withdraws provided amount in cents from bank account. If the amount exceeds the account balance, only the
+     * account balance is withdrawn.
+     * @param username user whose money is being withdrawn
+     * @param cents amount to withdraw in cents
+     * @return the actual withdrawn amount in cents
+     * @throws VelocityLimitExceededException if the withdrawal violates a rejecting velocity rule
+     */
+    public long withdraw(String username, long cents) {
+        long start = metrics.start();
+        WithdrawEvent event = new WithdrawEvent();
+        event.begin();
+        try {
+            long withdrawn = usePipeline() ? await(submitWithdraw(username, cents)) : applyWithdraw(username, cents);
+            event.complete(username, cents, withdrawn);
+            return withdrawn;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.WITHDRAW);
+            if (event.shouldCommit()) {
+                event.fail(username, cents, e);
+            }
+            throw e;
+        } finally {
+            metrics.record(Operation.WITHDRAW, start);
+        }
+    }
+
+    /**
+     * Submits a withdrawal in cents to the command pipeline.
+     * @param username user whose money is being withdrawn
+     * @param cents amount to withdraw in cents
+     * @return future completed with the actual withdrawn amount in cents
+     * @throws IllegalStateException if the service is not in the {@link ExecutionMode#PIPELINE} mode
+     */
+    public CompletableFuture<Long> submitWithdraw(String username, long cents) {
+        return requirePipeline().submit(CommandType.WITHDRAW, username, null, cents);
     }
 
     /**
@@ -77,9 +311,279 @@ public class AccountService {
      * @return the actual withdrawn/deposited amount
      */
     public BigDecimal transfer(String usernameFrom, String usernameTo, BigDecimal amount) {
-        BigDecimal result = withdraw(usernameFrom, amount, usernameTo);
-        deposit(usernameTo, result, usernameFrom);
-        return result;
+        return Money.toBigDecimal(transfer(usernameFrom, usernameTo, Money.toCents(amount)));
+    }
+
+    /**
+     * Transfers money in cents to another user account. If the amount exceeds the account balance, only the account
+     * balance is transferred.
+     * @param usernameFrom user whose money is being withdrawn
+     * @param usernameTo user to whom the account is deposited
+     * @param cents amount to withdraw/deposit in cents
+     * @return the actual withdrawn/deposited amount in cents
+     * @throws VelocityLimitExceededException if either leg violates a rejecting velocity rule
+     */
+    public long transfer(String usernameFrom, String usernameTo, long cents) {
+        long start = metrics.start();
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        try {
+            long transferred = usePipeline() ? await(submitTransfer(usernameFrom, usernameTo, cents))
+                    : applyTransfer(usernameFrom, usernameTo, cents);
+            event.complete(usernameFrom, usernameTo, cents, transferred);
+            return transferred;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.TRANSFER);
+            if (event.shouldCommit()) {
+                event.fail(usernameFrom, usernameTo, cents, e);
+            }
+            throw e;
+        } finally {
+            metrics.record(Operation.TRANSFER, start);
+        }
+    }
+
+    /**
+     * Submits a transfer in cents to the command pipeline.
+     * @param usernameFrom user whose money is being withdrawn
+     * @param usernameTo user to whom the account is deposited
+     * @param cents amount to withdraw/deposit in cents
+     * @return future completed with the actual transferred amount in cents
+     * @throws IllegalStateException if the service is not in the {@link ExecutionMode#PIPELINE} mode
+     */
+    public CompletableFuture<Long> submitTransfer(String usernameFrom, String usernameTo, long cents) {
+        return requirePipeline().submit(CommandType.TRANSFER, usernameFrom, usernameTo, cents);
+    }
+
+    /**
+     * Executes a batch of transfers. The whole batch is validated first, then every involved account is locked once,
+     * in username order, and all valid transfers are applied in the batch order. Their history entries are collected
+     * and appended per account before the locks are released. Like {@link #transfer}, a transfer
+     * exceeding the balance at its turn only moves the available balance. A transfer of a standing order is journaled
+     * as an execution of the order. A transfer violating a rejecting velocity rule is reported as rejected.
+     * @param instructions transfers to execute
+     * @return results in the order of the instructions
+     */
+    public List<TransferResult> transferBatch(List<TransferInstruction> instructions) {
+        TransferResult[] results = new TransferResult[instructions.size()];
+        Account[] from = new Account[results.length];
+        Account[] to = new Account[results.length];
+        Map<Account, Boolean> involved = new IdentityHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            TransferInstruction instruction = instructions.get(i);
+            from[i] = accountRepository.find(instruction.usernameFrom());
+            to[i] = accountRepository.find(instruction.usernameTo());
+            if (instruction.amount() <= 0) {
+                results[i] = TransferResult.rejected("Amount must be positive");
+            } else if (from[i] == null || !from[i].isActive()) {
+                results[i] = TransferResult.rejected("Source account does not exist or is not active");
+            } else if (to[i] == null || !to[i].isActive()) {
+                results[i] = TransferResult.rejected("Target account does not exist or is not active");
+            } else {
+                involved.put(from[i], Boolean.TRUE);
+                involved.put(to[i], Boolean.TRUE);
+            }
+        }
+        Account[] locked = involved.keySet().toArray(new Account[0]);
+        Arrays.sort(locked, Comparator.comparing(Account::getUsername));
+        HistoryBatch history = new HistoryBatch();
+        int lockedCount = 0;
+        try {
+            for (Account account : locked) {
+                account.lock();
+                lockedCount++;
+            }
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = transferInBatch(from[i], to[i], instructions.get(i), history);
+                }
+            }
+        } finally {
+            // still under the locks, so the histories match the balances once they are released
+            transactionHistoryRepository.addTransactions(history);
+            for (int i = lockedCount - 1; i >= 0; i--) {
+                locked[i].unlock();
+            }
+        }
+        for (Account account : locked) {
+            events.publish(account.getUsername());
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Gets a page of transaction history of the user, newest transactions first.
+     * @param username user
+     * @param offset number of newest transactions to skip
+     * @param limit maximum number of transactions to return
+     * @return copy of the transaction history page
+     */
+    public List<Transaction> getTransactions(String username, int offset, int limit) {
+        long start = metrics.start();
+        HistoryPageEvent event = new HistoryPageEvent();
+        event.begin();
+        try {
+            mergeCredits(username);
+            List<Transaction> page = transactionHistoryRepository.getTransactions(username, offset, limit);
+            event.complete(username, "history", offset, limit, page.size());
+            return page;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.HISTORY_READ);
+            throw e;
+        } finally {
+            metrics.record(Operation.HISTORY_READ, start);
+        }
+    }
+
+    /**
+     * Gets number of transactions in the history of the user.
+     * @param username user
+     * @return number of transactions
+     */
+    public int countTransactions(String username) {
+        mergeCredits(username);
+        return transactionHistoryRepository.countTransactions(username);
+    }
+
+    /**
+     * Gets a page of transactions of the user matching the filter, newest transactions first.
+     * @param username user
+     * @param filter {@link TransactionFilter} instance
+     * @param offset number of newest matching transactions to skip
+     * @param limit maximum number of transactions to return
+     * @return copy of the matching transactions page
+     */
+    public List<Transaction> findTransactions(String username, TransactionFilter filter, int offset, int limit) {
+        long start = metrics.start();
+        HistoryPageEvent event = new HistoryPageEvent();
+        event.begin();
+        try {
+            mergeCredits(username);
+            List<Transaction> page = transactionHistoryRepository.findTransactions(username, filter, offset, limit);
+            event.complete(username, "search", offset, limit, page.size());
+            return page;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.HISTORY_READ);
+            throw e;
+        } finally {
+            metrics.record(Operation.HISTORY_READ, start);
+        }
+    }
+
+    /**
+     * Finds a page of transactions of the user matching the filter, newest transactions first, for callers streaming
+     * the page straight from the {@link TransactionHistory} columns. Pending credits of a hot account are merged
+     * first, so the page includes them.
+     * @param username user
+     * @param filter {@link TransactionFilter} instance
+     * @param cursor append index of the entry preceding the page, {@code null} for the newest page
+     * @param limit maximum number of transactions to return
+     * @return append indices of the matching entries, descending
+     */
+    public int[] findTransactionIndices(String username, TransactionFilter filter, Integer cursor, int limit) {
+        long start = metrics.start();
+        HistoryPageEvent event = new HistoryPageEvent();
+        event.begin();
+        try {
+            mergeCredits(username);
+            TransactionHistory history = transactionHistoryRepository.getHistory(username);
+            int toIndex = cursor == null ? history.size() : Math.min(cursor, history.size());
+            int[] page = history.find(filter, toIndex, 0, limit);
+            event.complete(username, "cursor", toIndex, limit, page.length);
+            return page;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.HISTORY_READ);
+            throw e;
+        } finally {
+            metrics.record(Operation.HISTORY_READ, start);
+        }
+    }
+
+    /**
+     * Gets number of transactions of the user matching the filter.
+     * @param username user
+     * @param filter {@link TransactionFilter} instance
+     * @return number of matching transactions
+     */
+    public int countTransactions(String username, TransactionFilter filter) {
+        mergeCredits(username);
+        return transactionHistoryRepository.countTransactions(username, filter);
+    }
+
+    /**
+     * Gets the statement summary of the user from the aggregates maintained on every ledger operation, without
+     * reading the history. The account lock is held only to copy the totals.
+     * @param username user
+     * @param from first UTC date of the daily totals, inclusive
+     * @param to last UTC date of the daily totals, inclusive
+     * @return {@link AccountStatement} instance
+     */
+    public AccountStatement getStatement(String username, LocalDate from, LocalDate to) {
+        Account account = accountRepository.find(username);
+        StatementAggregates aggregates = transactionHistoryRepository.getHistory(username).getAggregates();
+        account.lock();
+        try {
+            return new AccountStatement(aggregates.totals(), aggregates.days(from, to));
+        } finally {
+            account.unlock();
+        }
+    }
+
+    /**
+     * Gets the statement of the user for a period of UTC dates. Balances and totals are summed from the daily
+     * aggregates and the transactions of the period are located with a binary search over the time-ordered history,
+     * so the cost does not depend on the history size. The account lock is held only to read them consistently.
+     * @param username user
+     * @param from first UTC date of the period, inclusive
+     * @param to end UTC date of the period, exclusive
+     * @return {@link PeriodStatement} instance
+     * @throws IllegalArgumentException if {@code to} is before {@code from}
+     */
+    public PeriodStatement getPeriodStatement(String username, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Statement period must not end before it starts");
+        }
+        Account account = accountRepository.find(username);
+        TransactionHistory history = transactionHistoryRepository.getHistory(username);
+        StatementAggregates aggregates = history.getAggregates();
+        account.lock();
+        try {
+            StatementTotals before = aggregates.totals(LocalDate.MIN, from);
+            StatementTotals totals = aggregates.totals(from, to);
+            long openingBalance = before.deposited() - before.withdrawn();
+            return new PeriodStatement(from, to, openingBalance,
+                    openingBalance + totals.deposited() - totals.withdrawn(), totals,
+                    history.indexAt(startOfDay(from)), history.indexAt(startOfDay(to)));
+        } finally {
+            account.unlock();
+        }
+    }
+
+    /**
+     * Gets a page of the transactions of a period statement, oldest transactions first.
+     * @param username user
+     * @param statement {@link PeriodStatement} of the user
+     * @param offset number of transactions of the period to skip
+     * @param limit maximum number of transactions to return
+     * @return copy of the statement transactions page
+     */
+    public List<Transaction> getStatementTransactions(String username, PeriodStatement statement, int offset,
+                                                      int limit) {
+        long start = metrics.start();
+        HistoryPageEvent event = new HistoryPageEvent();
+        event.begin();
+        try {
+            int fromIndex = (int) Math.min((long) statement.firstIndex() + offset, statement.endIndex());
+            int toIndex = (int) Math.min((long) fromIndex + limit, statement.endIndex());
+            List<Transaction> page = transactionHistoryRepository.getTransactionRange(username, fromIndex, toIndex);
+            event.complete(username, "statement", offset, limit, page.size());
+            return page;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.HISTORY_READ);
+            throw e;
+        } finally {
+            metrics.record(Operation.HISTORY_READ, start);
+        }
     }
 
     /**
@@ -87,28 +591,307 @@ public class AccountService {
      * @param username user
      */
     public void deactivate(String username) {
-        accountRepository.find(username).setActive(false);
+        Account account = accountRepository.find(username);
+        account.lock();
+        try {
+            journal.append(JournalRecordType.DEACTIVATE_ACCOUNT, username, null, 0);
+            account.setActive(false);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    /**
+     * Re-applies a journaled deposit, withdrawal, transfer or standing order execution during recovery. The recorded
+     * amounts are the actually moved ones, so the result is identical to the original operation. Legs already
+     * reflected in an account, i.e. restored from a snapshot taken after the record was written, are skipped.
+     * @param record {@link JournalRecord} instance
+     */
+    public void replay(JournalRecord record) {
+        Account account = accountRepository.find(record.username());
+        String recipient = record.recipient();
+        Account accountTo = recipient != null ? accountRepository.find(recipient) : account;
+        lock(account, accountTo);
+        try {
+            boolean applyFrom = account.getSequence() < record.sequence();
+            boolean applyTo = accountTo.getSequence() < record.sequence();
+            switch (record.type()) {
+                case DEPOSIT -> {
+                    if (applyFrom) {
+                        deposit(account, record.amount(), null, record.sequence(), record.timestamp());
+                    }
+                }
+                case WITHDRAW -> {
+                    if (applyFrom) {
+                        withdraw(account, record.amount(), null, record.sequence(), record.timestamp());
+                    }
+                }
+                case TRANSFER, STANDING_TRANSFER -> {
+                    if (applyFrom) {
+                        withdraw(account, record.amount(), recipient, record.sequence(), record.timestamp());
+                    }
+                    if (applyTo) {
+                        deposit(accountTo, record.amount(), record.username(), record.sequence(), record.timestamp());
+                    }
+                }
+                default -> throw new IllegalArgumentException("Not a ledger record: " + record.type());
+            }
+        } finally {
+            unlock(account, accountTo);
+        }
+    }
+
+    private long apply(CommandType type, String username, String counterparty, long amount) {
+        return switch (type) {
+            case DEPOSIT -> {
+                applyDeposit(username, amount);
+                yield amount;
+            }
+            case WITHDRAW -> applyWithdraw(username, amount);
+            case TRANSFER -> applyTransfer(username, counterparty, amount);
+        };
+    }
+
+    private void applyDeposit(String username, long depositCents) {
+        Account account = accountRepository.find(username);
+        account.lock();
+        try {
+            Money.checkAdd(account.getAmount(), depositCents);
+            long timestamp = clock.currentTimeMillis();
+            velocityRules.check(account, TransactionType.DEPOSIT, depositCents, timestamp);
+            long sequence = journal.append(JournalRecordType.DEPOSIT, username, null, depositCents, timestamp);
+            deposit(account, depositCents, null, sequence, timestamp);
+            velocityRules.record(account, TransactionType.DEPOSIT, depositCents, timestamp);
+        } finally {
+            account.unlock();
+        }
+        events.publish(username);
     }
 
-    private void deposit(String username, BigDecimal depositAmount, String usernameFrom) {
+    private long applyWithdraw(String username, long cents) {
         Account account = accountRepository.find(username);
-        account.setAmount(account.getAmount().add(depositAmount));
-        transactionHistoryRepository.addTransaction(username, new Transaction(depositAmount, TransactionType.DEPOSIT, usernameFrom));
+        long withdrawn;
+        account.lock();
+        try {
+            long withdrawCents = Math.min(account.getAmount(), cents);
+            if (withdrawCents < cents) {
+                metrics.partial(Operation.WITHDRAW);
+            }
+            long timestamp = clock.currentTimeMillis();
+            velocityRules.check(account, TransactionType.WITHDRAW, withdrawCents, timestamp);
+            long sequence = journal.append(JournalRecordType.WITHDRAW, username, null, withdrawCents, timestamp);
+            withdrawn = withdraw(account, withdrawCents, null, sequence, timestamp);
+            velocityRules.record(account, TransactionType.WITHDRAW, withdrawn, timestamp);
+        } finally {
+            account.unlock();
+        }
+        events.publish(username);
+        return withdrawn;
+    }
+
+    private long applyTransfer(String usernameFrom, String usernameTo, long cents) {
+        Account accountFrom = accountRepository.find(usernameFrom);
+        Account accountTo = accountRepository.find(usernameTo);
+        long transferred;
+        if (accountTo.isHot() && accountTo != accountFrom) {
+            transferred = transferToHotAccount(accountFrom, accountTo, cents);
+        } else {
+            lock(accountFrom, accountTo);
+            try {
+                transferred = transfer(accountFrom, accountTo, cents, 0);
+                if (hotAccountContention > 0 && accountTo != accountFrom
+                        && accountTo.getContention() >= hotAccountContention) {
+                    accountTo.promote(hotAccountStripes, this::recordCredit);
+                }
+            } finally {
+                unlock(accountFrom, accountTo);
+            }
+        }
+        events.publish(usernameFrom);
+        if (accountTo != accountFrom) {
+            events.publish(usernameTo);
+        }
+        return transferred;
+    }
+
+    private boolean usePipeline() {
+        return pipeline != null && !pipeline.isBusinessThread();
+    }
+
+    private LedgerCommandPipeline requirePipeline() {
+        if (pipeline == null) {
+            throw new IllegalStateException("Ledger is not in the pipeline execution mode");
+        }
+        return pipeline;
+    }
+
+    private static long await(CompletableFuture<Long> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private TransferResult transferInBatch(Account accountFrom, Account accountTo, TransferInstruction instruction,
+                                           HistoryBatch history) {
+        try {
+            long transferred = transfer(accountFrom, accountTo, instruction.amount(), instruction.standingOrderId(),
+                    history);
+            return new TransferResult(transferred, transferred == instruction.amount() ? TransferStatus.COMPLETED
+                    : TransferStatus.PARTIAL, null);
+        } catch (ArithmeticException e) {
+            return TransferResult.rejected("Target balance overflow");
+        } catch (VelocityLimitExceededException e) {
+            return TransferResult.rejected(e.getMessage());
+        }
+    }
+
+    private long transfer(Account accountFrom, Account accountTo, long cents, long standingOrderId) {
+        return transfer(accountFrom, accountTo, cents, standingOrderId, null);
+    }
+
+    private long transfer(Account accountFrom, Account accountTo, long cents, long standingOrderId,
+                          HistoryBatch history) {
+        long transferCents = Math.min(accountFrom.getAmount(), cents);
+        if (transferCents < cents) {
+            metrics.partial(Operation.TRANSFER);
+        }
+        if (accountFrom != accountTo) {
+            Money.checkAdd(accountTo.getAmount(), transferCents);
+        }
+        long timestamp = clock.currentTimeMillis();
+        velocityRules.check(accountFrom, TransactionType.WITHDRAW, transferCents, timestamp);
+        velocityRules.check(accountTo, TransactionType.DEPOSIT, transferCents, timestamp);
+        long sequence = standingOrderId == 0
+                ? journal.append(JournalRecordType.TRANSFER, accountFrom.getUsername(), accountTo.getUsername(),
+                        transferCents, timestamp)
+                : journal.append(JournalRecordType.STANDING_TRANSFER, accountFrom.getUsername(),
+                        JournalRecord.standingTransferArgument(standingOrderId, accountTo.getUsername()),
+                        transferCents, timestamp);
+        long result = withdraw(accountFrom, transferCents, accountTo.getUsername(), sequence, timestamp, history);
+        deposit(accountTo, result, accountFrom.getUsername(), sequence, timestamp, history);
+        velocityRules.record(accountFrom, TransactionType.WITHDRAW, result, timestamp);
+        velocityRules.record(accountTo, TransactionType.DEPOSIT, result, timestamp);
+        return result;
+    }
+
+    private long transferToHotAccount(Account accountFrom, Account accountTo, long cents) {
+        int stripe;
+        if (accountFrom.getUsername().compareTo(accountTo.getUsername()) < 0) {
+            accountFrom.lock();
+            stripe = accountTo.lockCreditStripe(accountFrom.getUsername().hashCode());
+        } else {
+            stripe = accountTo.lockCreditStripe(accountFrom.getUsername().hashCode());
+            accountFrom.lock();
+        }
+        try {
+            long transferCents = Math.min(accountFrom.getAmount(), cents);
+            if (transferCents < cents) {
+                metrics.partial(Operation.TRANSFER);
+            }
+            Money.checkAdd(Money.add(accountTo.getAmount(), accountTo.getPendingCredits()), transferCents);
+            long timestamp;
+            long sequence;
+            accountTo.getCreditOrder().lock();
+            try {
+                timestamp = clock.currentTimeMillis();
+                velocityRules.check(accountFrom, TransactionType.WITHDRAW, transferCents, timestamp);
+                velocityRules.check(accountTo, TransactionType.DEPOSIT, transferCents, timestamp);
+                sequence = journal.append(JournalRecordType.TRANSFER, accountFrom.getUsername(),
+                        accountTo.getUsername(), transferCents, timestamp);
+                velocityRules.record(accountTo, TransactionType.DEPOSIT, transferCents, timestamp);
+            } finally {
+                accountTo.getCreditOrder().unlock();
+            }
+            long result = withdraw(accountFrom, transferCents, accountTo.getUsername(), sequence, timestamp);
+            velocityRules.record(accountFrom, TransactionType.WITHDRAW, result, timestamp);
+            if (result != 0) {
+                accountTo.credit(stripe, result, accountFrom.getUsername(), sequence, timestamp);
+            }
+            return result;
+        } finally {
+            accountFrom.unlock();
+            accountTo.unlockCreditStripe(stripe);
+        }
+    }
+
+    private void recordCredit(Account account, long cents, String usernameFrom, long sequence, long timestamp) {
+        transactionHistoryRepository.addTransaction(account.getUsername(), cents, TransactionType.DEPOSIT,
+                usernameFrom, sequence, timestamp);
     }
 
-    private BigDecimal withdraw(String username, BigDecimal amount, String usernameTo) {
+    private void mergeCredits(String username) {
         Account account = accountRepository.find(username);
-        BigDecimal currentAmount = account.getAmount();
-        if (BigDecimal.ZERO.equals(currentAmount)) {
-            return BigDecimal.ZERO;
+        if (account != null) {
+            account.mergeCredits();
+        }
+    }
+
+    private void deposit(Account account, long depositCents, String usernameFrom, long sequence, long timestamp) {
+        deposit(account, depositCents, usernameFrom, sequence, timestamp, null);
+    }
+
+    private void deposit(Account account, long depositCents, String usernameFrom, long sequence, long timestamp,
+                         HistoryBatch history) {
+        account.setSequence(sequence);
+        if (depositCents == 0) {
+            return;
+        }
+        account.setAmount(Money.add(account.getAmount(), depositCents));
+        addTransaction(account, depositCents, TransactionType.DEPOSIT, usernameFrom, sequence, timestamp, history);
+    }
+
+    private long withdraw(Account account, long cents, String usernameTo, long sequence, long timestamp) {
+        return withdraw(account, cents, usernameTo, sequence, timestamp, null);
+    }
+
+    private long withdraw(Account account, long cents, String usernameTo, long sequence, long timestamp,
+                          HistoryBatch history) {
+        long currentAmount = account.getAmount();
+        account.setSequence(sequence);
+        if (currentAmount == 0) {
+            return 0;
+        }
+        if (currentAmount <= cents) {
+            account.setAmount(0);
+            cents = currentAmount;
+        } else {
+            account.setAmount(currentAmount - cents);
         }
-        if (currentAmount.compareTo(amount) <= 0) {
-            account.setAmount(BigDecimal.ZERO);
-            amount = currentAmount;
+        addTransaction(account, cents, TransactionType.WITHDRAW, usernameTo, sequence, timestamp, history);
+        return cents;
+    }
+
+    private void addTransaction(Account account, long cents, TransactionType type, String counterparty, long sequence,
+                                long timestamp, HistoryBatch history) {
+        if (history == null) {
+            transactionHistoryRepository.addTransaction(account.getUsername(), cents, type, counterparty, sequence,
+                    timestamp);
         } else {
-            account.setAmount(currentAmount.subtract(amount));
+            history.add(account.getUsername(), cents, type, counterparty, sequence, timestamp);
         }
-        transactionHistoryRepository.addTransaction(username, new Transaction(amount, TransactionType.WITHDRAW, usernameTo));
-        return amount;
+    }
+
+    private static long startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static void lock(Account account, Account otherAccount) {
+        // username order, so two opposite transfers can never deadlock
+        boolean accountFirst = account.getUsername().compareTo(otherAccount.getUsername()) <= 0;
+        (accountFirst ? account : otherAccount).lock();
+        (accountFirst ? otherAccount : account).lock();
+    }
+
+    private static void unlock(Account account, Account otherAccount) {
+        account.unlock();
+        otherAccount.unlock();
     }
 }
@@ -0,0 +1,88 @@
+package com.bank.tiny.service;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Balances of all accounts as of one point in time, taken by {@link BalanceSnapshots}. The image reuses its arrays
+ * for the next snapshot, so it is only valid while it is being read, see {@link BalanceSnapshots#read}.
+ */
+public final class BalanceSnapshot {
+
+    private Instant asOf;
+    private int size;
+    private String[] usernames = new String[0];
+    private long[] balances = new long[0];
+    private long totalCents;
+
+    BalanceSnapshot() {
+    }
+
+    /**
+     * Gets the point in time of the balances.
+     * @return {@link Instant} instance
+     */
+    public Instant asOf() {
+        return asOf;
+    }
+
+    /**
+     * Gets the number of accounts.
+     * @return number of accounts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the owner of an account.
+     * @param index account index
+     * @return username
+     */
+    public String username(int index) {
+        return usernames[index];
+    }
+
+    /**
+     * Gets the balance of an account.
+     * @param index account index
+     * @return balance in cents
+     */
+    public long balance(int index) {
+        return balances[index];
+    }
+
+    /**
+     * Gets the sum of all balances.
+     * @return amount in cents
+     */
+    public long totalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Clears the image for a new snapshot, growing the arrays if needed.
+     */
+    void reset(Instant asOf, int capacity) {
+        if (usernames.length < capacity) {
+            int length = Math.max(capacity, usernames.length + (usernames.length >> 1));
+            usernames = Arrays.copyOf(usernames, length);
+            balances = Arrays.copyOf(balances, length);
+        }
+        Arrays.fill(usernames, capacity, usernames.length, null);
+        this.asOf = asOf;
+        this.size = 0;
+        this.totalCents = 0;
+    }
+
+    void add(String username, long balance) {
+        usernames[size] = username;
+        balances[size++] = balance;
+        totalCents += balance;
+    }
+
+    void setBalance(int index, long balance) {
+        totalCents += balance - balances[index];
+        balances[index] = balance;
+    }
+}
@@ -0,0 +1,226 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.BalanceExport;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.journal.TransactionClock;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Consistent images of all balances as of one point in time, taken while the ledger keeps running.
+ * <p>
+ * The transaction histories are the versions of the balances: every entry carries its transaction id and timestamp,
+ * and both legs of a transfer share them. A snapshot locks every account only to read its balance and history size,
+ * and then rolls the balance back over the entries that are newer than the snapshot, outside of the lock. A snapshot
+ * of the present uses the last handed out transaction id, read before the accounts, as its epoch: a transfer with an
+ * id up to it holds both account locks until both legs are appended, so it is seen in both accounts, and later
+ * transfers are rolled back in both. A snapshot of a past instant uses the timestamps instead, which the ledger clock
+ * hands out under the account locks as well, so money in flight between two legs is never counted twice or lost.
+ * <p>
+ * Snapshots are taken one at a time and reuse one {@link BalanceSnapshot} image, which grows with the number of
+ * accounts but is not reallocated for every snapshot. Exports stream the image line by line through a reused buffer.
+ */
+@Service
+public class BalanceSnapshots {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BalanceSnapshots.class);
+    private static final String HEADER = "username,balance\n";
+    private static final String FILE_PREFIX = "balances-";
+    private static final String FILE_SUFFIX = ".csv";
+
+    private final AccountRepository accountRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final TransactionClock clock;
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final BalanceSnapshot snapshot = new BalanceSnapshot();
+    private final StringBuilder line = new StringBuilder();
+    private Account[] accounts = new Account[0];
+    private TransactionHistory[] histories = new TransactionHistory[0];
+    private int[] sizes = new int[0];
+    private char[] chars = new char[64];
+
+    /**
+     * Parametrized constructor.
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param directory directory of the exported files
+     */
+    public BalanceSnapshots(AccountRepository accountRepository,
+                            TransactionHistoryRepository transactionHistoryRepository, LedgerJournal journal,
+                            @Value("${tinybank.balances.directory:data/balances}") String directory) {
+        this.accountRepository = accountRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.clock = journal.getClock();
+        this.directory = Path.of(directory);
+    }
+
+    /**
+     * Takes a snapshot and passes it to the reader. The snapshot is reused afterwards and must not be kept.
+     * @param asOf point in time of the balances, {@code null} for the present
+     * @param reader reader of the snapshot
+     * @return result of the reader
+     * @param <T> type of the result
+     */
+    public <T> T read(Instant asOf, Function<BalanceSnapshot, T> reader) {
+        lock.lock();
+        try {
+            capture(asOf);
+            return reader.apply(snapshot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot and streams it as CSV with the header {@code username,balance}.
+     * @param asOf point in time of the balances, {@code null} for the present
+     * @param output destination of the CSV lines
+     * @return summary of the export
+     * @throws IOException if writing fails
+     */
+    public BalanceExport export(Instant asOf, Writer output) throws IOException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            capture(asOf);
+            write(output);
+            return new BalanceExport(snapshot.asOf(), snapshot.size(), snapshot.totalCents(),
+                    (System.nanoTime() - start) / 1_000_000, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot and exports it to a new CSV file in the export directory.
+     * @param asOf point in time of the balances, {@code null} for the present
+     * @return summary of the export
+     */
+    public BalanceExport exportToFile(Instant asOf) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            capture(asOf);
+            Path target = directory.resolve(FILE_PREFIX + snapshot.asOf().toEpochMilli() + FILE_SUFFIX);
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(directory);
+                try (Writer output = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    write(output);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to export balances to " + target, e);
+            }
+            BalanceExport export = new BalanceExport(snapshot.asOf(), snapshot.size(), snapshot.totalCents(),
+                    (System.nanoTime() - start) / 1_000_000, target.toString());
+            LOG.info("Balances of {} accounts as of {} exported to {} in {} ms", export.accounts(), export.asOf(),
+                    target, export.durationMillis());
+            return export;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void capture(Instant asOf) {
+        long cutoff = clock.lastSequence();
+        long now = clock.currentTimeMillis();
+        boolean present = asOf == null || asOf.toEpochMilli() >= now;
+        long asOfMillis = present ? now : asOf.toEpochMilli();
+        int count = collectAccounts();
+        snapshot.reset(present ? Instant.ofEpochMilli(now) : asOf, count);
+        for (int i = 0; i < count; i++) {
+            Account account = accounts[i];
+            histories[i] = transactionHistoryRepository.getHistory(account.getUsername());
+            account.lock();
+            try {
+                snapshot.add(account.getUsername(), account.getAmount());
+                sizes[i] = histories[i].size();
+            } finally {
+                account.unlock();
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            TransactionHistory history = histories[i];
+            int size = sizes[i];
+            int end = size;
+            if (present) {
+                while (end > 0 && history.id(end - 1) > cutoff) {
+                    end--;
+                }
+            } else {
+                end = Math.min(history.indexAt(asOfMillis + 1), size);
+            }
+            if (end < size) {
+                snapshot.setBalance(i, end < size - end ? sum(history, 0, end)
+                        : snapshot.balance(i) - sum(history, end, size));
+            }
+            histories[i] = null;
+        }
+        Arrays.fill(accounts, 0, count, null);
+    }
+
+    private int collectAccounts() {
+        int count = 0;
+        for (Account account : accountRepository.findAll()) {
+            if (count == accounts.length) {
+                int length = Math.max(16, count + (count >> 1));
+                accounts = Arrays.copyOf(accounts, length);
+                histories = Arrays.copyOf(histories, length);
+                sizes = Arrays.copyOf(sizes, length);
+            }
+            accounts[count++] = account;
+        }
+        return count;
+    }
+
+    private static long sum(TransactionHistory history, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += history.type(i) == TransactionType.DEPOSIT ? history.amount(i) : -history.amount(i);
+        }
+        return sum;
+    }
+
+    private void write(Writer output) throws IOException {
+        output.write(HEADER);
+        for (int i = 0; i < snapshot.size(); i++) {
+            long balance = snapshot.balance(i);
+            long cents = Math.abs(balance % 100);
+            line.setLength(0);
+            line.append(snapshot.username(i)).append(',');
+            if (balance < 0) {
+                line.append('-');
+            }
+            line.append(Math.abs(balance / 100)).append('.').append((char) ('0' + cents / 10))
+                    .append((char) ('0' + cents % 10)).append('\n');
+            if (chars.length < line.length()) {
+                chars = new char[Math.max(line.length(), 2 * chars.length)];
+            }
+            line.getChars(0, line.length(), chars, 0);
+            output.write(chars, 0, line.length());
+        }
+        output.flush();
+    }
+}
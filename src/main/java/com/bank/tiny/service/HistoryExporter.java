@@ -0,0 +1,344 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.ExportFormat;
+import com.bank.tiny.domain.PeriodStatement;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.metrics.LedgerMetrics.Operation;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UsernameDictionary;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams transaction histories as CSV or JSON, optionally gzip compressed, without materializing them.
+ * <p>
+ * Rows are encoded straight from the history columns into a buffer of {@value #BUFFER_SIZE} bytes, which is written
+ * to the output whenever it fills up. Timestamps are formatted from the epoch milliseconds with the date part reused
+ * while it does not change, which it rarely does in a time-ordered history, and the encoded counterparty names are
+ * kept in a bounded direct-mapped cache, so no objects are created per row and an export uses the same memory
+ * regardless of the history size. Compression uses the fastest deflate level, which still shrinks the repetitive rows
+ * about three times and costs the least processor time per exported row.
+ * <p>
+ * Histories are append-only and read lock-free, so an export covers the transactions present when it starts and
+ * never blocks operations on the account, however long the client takes to read it.
+ */
+@Service
+public class HistoryExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int ROW_RESERVE = 256;
+    private static final int NAME_CACHE_SIZE = 1 << 14;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final byte[] CSV_HEADER = ascii("id,timestamp,type,amount,user,balance\n");
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+
+    private final AccountService accountService;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final LedgerMetrics metrics;
+
+    /**
+     * Parametrized constructor.
+     * @param accountService {@link AccountService} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param metrics {@link LedgerMetrics} instance
+     */
+    public HistoryExporter(AccountService accountService, TransactionHistoryRepository transactionHistoryRepository,
+                           LedgerMetrics metrics) {
+        this.accountService = accountService;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Exports the transactions of the user, oldest first, each with the balance after it. CSV has the header
+     * {@code id,timestamp,type,amount,user,balance}; JSON is an object with the period, the opening and closing
+     * balance and the array of the transactions.
+     * @param username user
+     * @param from first UTC date of the exported period, inclusive, {@code null} together with {@code to} for the
+     *             whole history
+     * @param to end UTC date of the exported period, exclusive
+     * @param format {@link ExportFormat}
+     * @param compressed whether the export is gzip compressed
+     * @param output destination of the export, closed when the export completes
+     * @return number of exported transactions
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if only one of the dates is given or {@code to} is before {@code from}
+     */
+    public int export(String username, LocalDate from, LocalDate to, ExportFormat format, boolean compressed,
+                      OutputStream output) throws IOException {
+        if ((from == null) != (to == null)) {
+            throw new IllegalArgumentException("Both or none of the period dates must be given");
+        }
+        long start = metrics.start();
+        try (OutputStream destination = compressed ? new FastGzipOutputStream(output) : output) {
+            int firstIndex;
+            int endIndex;
+            long openingBalance;
+            if (from == null) {
+                endIndex = accountService.countTransactions(username);
+                firstIndex = 0;
+                openingBalance = 0;
+            } else {
+                PeriodStatement statement = accountService.getPeriodStatement(username, from, to);
+                firstIndex = statement.firstIndex();
+                endIndex = statement.endIndex();
+                openingBalance = statement.openingBalance();
+            }
+            RowWriter writer = new RowWriter(destination, transactionHistoryRepository.getDictionary(),
+                    format == ExportFormat.JSON);
+            TransactionHistory history = transactionHistoryRepository.getHistory(username);
+            if (format == ExportFormat.JSON) {
+                writeJson(writer, username, from, to, history, firstIndex, endIndex, openingBalance);
+            } else {
+                writer.put(CSV_HEADER);
+                writeCsv(writer, history, firstIndex, endIndex, openingBalance);
+            }
+            writer.flush();
+            return endIndex - firstIndex;
+        } catch (IOException | RuntimeException e) {
+            metrics.failed(Operation.HISTORY_EXPORT);
+            throw e;
+        } finally {
+            metrics.record(Operation.HISTORY_EXPORT, start);
+        }
+    }
+
+    private static void writeCsv(RowWriter writer, TransactionHistory history, int firstIndex, int endIndex,
+                                 long balance) throws IOException {
+        for (int i = firstIndex; i < endIndex; i++) {
+            TransactionType type = history.type(i);
+            long amount = history.amount(i);
+            balance += type == TransactionType.DEPOSIT ? amount : -amount;
+            writer.reserve();
+            writer.putLong(history.id(i));
+            writer.put((byte) ',');
+            writer.putTimestamp(history.timestamp(i));
+            writer.put((byte) ',');
+            writer.put(writer.typeNames[type.ordinal()]);
+            writer.put((byte) ',');
+            writer.putCents(amount);
+            writer.put((byte) ',');
+            writer.putName(history.counterpartyId(i));
+            writer.reserve();
+            writer.put((byte) ',');
+            writer.putCents(balance);
+            writer.put((byte) '\n');
+        }
+    }
+
+    private static void writeJson(RowWriter writer, String username, LocalDate from, LocalDate to,
+                                  TransactionHistory history, int firstIndex, int endIndex, long balance)
+            throws IOException {
+        writer.put(ascii("{\"username\":"));
+        writer.put(RowWriter.jsonString(username));
+        writer.reserve();
+        writer.put(ascii(",\"from\":"));
+        writer.put(from == null ? ascii("null") : ascii("\"" + from + "\""));
+        writer.put(ascii(",\"to\":"));
+        writer.put(to == null ? ascii("null") : ascii("\"" + to + "\""));
+        writer.put(ascii(",\"openingBalance\":"));
+        writer.putCents(balance);
+        writer.put(ascii(",\"transactions\":["));
+        for (int i = firstIndex; i < endIndex; i++) {
+            TransactionType type = history.type(i);
+            long amount = history.amount(i);
+            balance += type == TransactionType.DEPOSIT ? amount : -amount;
+            writer.reserve();
+            writer.put(i == firstIndex ? RowWriter.JSON_FIRST_ID : RowWriter.JSON_ID);
+            writer.putLong(history.id(i));
+            writer.put(RowWriter.JSON_TIMESTAMP);
+            writer.putTimestamp(history.timestamp(i));
+            writer.put(RowWriter.JSON_TYPE);
+            writer.put(writer.typeNames[type.ordinal()]);
+            writer.put(RowWriter.JSON_AMOUNT);
+            writer.putCents(amount);
+            writer.put(RowWriter.JSON_USER);
+            writer.putName(history.counterpartyId(i));
+            writer.reserve();
+            writer.put(RowWriter.JSON_BALANCE);
+            writer.putCents(balance);
+            writer.put((byte) '}');
+        }
+        writer.reserve();
+        writer.put(ascii("],\"closingBalance\":"));
+        writer.putCents(balance);
+        writer.put(ascii(",\"count\":"));
+        writer.putLong(endIndex - firstIndex);
+        writer.put(ascii("}\n"));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Encoder of rows into a reused buffer. Every row first reserves {@value #ROW_RESERVE} bytes, enough for all its
+     * fields except the counterparty name, which reserves its own space.
+     */
+    private static final class RowWriter {
+
+        private static final byte[] JSON_FIRST_ID = ascii("\n{\"id\":");
+        private static final byte[] JSON_ID = ascii(",\n{\"id\":");
+        private static final byte[] JSON_TIMESTAMP = ascii(",\"timestamp\":\"");
+        private static final byte[] JSON_TYPE = ascii("\",\"type\":");
+        private static final byte[] JSON_AMOUNT = ascii(",\"amount\":");
+        private static final byte[] JSON_USER = ascii(",\"user\":");
+        private static final byte[] JSON_BALANCE = ascii(",\"balance\":");
+        private static final byte[] JSON_NULL = ascii("null");
+        private static final byte[] CSV_NULL = new byte[0];
+
+        private final OutputStream output;
+        private final UsernameDictionary dictionary;
+        private final boolean json;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[][] typeNames = new byte[TRANSACTION_TYPES.length][];
+        private final int[] cachedIds = new int[NAME_CACHE_SIZE];
+        private final byte[][] cachedNames = new byte[NAME_CACHE_SIZE][];
+        private int position;
+        private long cachedDay = Long.MIN_VALUE;
+        private byte[] cachedDate;
+
+        RowWriter(OutputStream output, UsernameDictionary dictionary, boolean json) {
+            this.output = output;
+            this.dictionary = dictionary;
+            this.json = json;
+            for (TransactionType type : TRANSACTION_TYPES) {
+                typeNames[type.ordinal()] = ascii(json ? "\"" + type.name() + "\"" : type.name());
+            }
+            Arrays.fill(cachedIds, UsernameDictionary.NO_ID);
+        }
+
+        void reserve() throws IOException {
+            if (position > BUFFER_SIZE - ROW_RESERVE) {
+                flush();
+            }
+        }
+
+        void put(byte value) {
+            buffer[position++] = value;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (bytes.length > BUFFER_SIZE - position) {
+                flush();
+                if (bytes.length > BUFFER_SIZE) {
+                    output.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void putLong(long value) {
+            int start = position;
+            do {
+                buffer[position++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = position - 1; i < j; i++, j--) {
+                byte digit = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = digit;
+            }
+        }
+
+        void putCents(long cents) {
+            if (cents < 0) {
+                put((byte) '-');
+                cents = -cents;
+            }
+            putLong(cents / 100);
+            put((byte) '.');
+            putDigits(cents % 100, 2);
+        }
+
+        /**
+         * Writes an ISO-8601 UTC timestamp with milliseconds, e.g. {@code 2024-01-31T12:34:56.789Z}.
+         */
+        void putTimestamp(long timestamp) throws IOException {
+            long day = Math.floorDiv(timestamp, DAY_MILLIS);
+            if (day != cachedDay) {
+                cachedDay = day;
+                cachedDate = ascii(LocalDate.ofEpochDay(day) + "T");
+            }
+            put(cachedDate);
+            long millis = Math.floorMod(timestamp, DAY_MILLIS);
+            putDigits(millis / 3_600_000, 2);
+            put((byte) ':');
+            putDigits(millis / 60_000 % 60, 2);
+            put((byte) ':');
+            putDigits(millis / 1000 % 60, 2);
+            put((byte) '.');
+            putDigits(millis % 1000, 3);
+            put((byte) 'Z');
+        }
+
+        void putName(int id) throws IOException {
+            if (id == UsernameDictionary.NO_ID) {
+                put(json ? JSON_NULL : CSV_NULL);
+                return;
+            }
+            int slot = id & (NAME_CACHE_SIZE - 1);
+            if (cachedIds[slot] != id) {
+                String name = dictionary.name(id);
+                cachedNames[slot] = json ? jsonString(name) : csvField(name);
+                cachedIds[slot] = id;
+            }
+            put(cachedNames[slot]);
+        }
+
+        void flush() throws IOException {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+
+        private void putDigits(long value, int digits) {
+            for (int i = position + digits - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += digits;
+        }
+
+        static byte[] jsonString(String value) {
+            byte[] escaped = JsonStringEncoder.getInstance().quoteAsUTF8(value);
+            byte[] quoted = new byte[escaped.length + 2];
+            quoted[0] = '"';
+            System.arraycopy(escaped, 0, quoted, 1, escaped.length);
+            quoted[quoted.length - 1] = '"';
+            return quoted;
+        }
+
+        private static byte[] csvField(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return ("\"" + value.replace("\"", "\"\"") + "\"").getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Gzip stream at the fastest deflate level.
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+
+        FastGzipOutputStream(OutputStream output) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
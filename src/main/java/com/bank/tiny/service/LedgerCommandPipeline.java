@@ -0,0 +1,238 @@
+package com.bank.tiny.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer command pipeline of the ledger. Submitting threads claim a slot of a pre-allocated ring buffer, fill
+ * it and publish it; one business logic thread applies the commands strictly in sequence order, so the ledger
+ * observes a total order of operations and account locks are never contended between writers.
+ * <p>
+ * The business thread drains every published command in one batch and only then runs the completion stage for the
+ * whole batch: submitters are notified and their slots are released. Batches grow naturally with the load.
+ * <p>
+ * Journaling and history appends stay part of applying a command: the journal must precede the state change, and
+ * histories are read back right after the future completes. Account change notifications are handed to the
+ * dispatcher threads of the {@link LedgerEventBus}, so the business thread never runs listeners.
+ * <p>
+ * Once the business thread ends, be it by {@link #stop()} or by an error, every submitted command that was not
+ * applied fails with an {@link IllegalStateException}, and so do commands submitted afterwards.
+ */
+final class LedgerCommandPipeline {
+
+    /**
+     * Ledger command types.
+     */
+    enum CommandType {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+
+    /**
+     * Applies a command to the ledger.
+     */
+    @FunctionalInterface
+    interface CommandHandler {
+
+        /**
+         * Applies a command.
+         * @param type command type
+         * @param username user the command belongs to
+         * @param counterparty transfer recipient or {@code null}
+         * @param amount amount in cents
+         * @return the actually moved amount in cents
+         */
+        long apply(CommandType type, String username, String counterparty, long amount);
+    }
+
+    private static final int SPINS_BEFORE_PARK = 1000;
+    private static final long PARK_NANOS = 1000;
+
+    private final Slot[] ring;
+    private final int mask;
+    private final CommandHandler handler;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final Thread businessThread;
+    private volatile long consumed = -1;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+    private volatile Throwable stopCause;
+    private volatile boolean terminated;
+
+    /**
+     * Creates the pipeline and starts its business logic thread.
+     * @param ringSize number of slots, must be a power of two
+     * @param handler {@link CommandHandler} applying the commands
+     */
+    LedgerCommandPipeline(int ringSize, CommandHandler handler) {
+        if (Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + ringSize);
+        }
+        this.ring = new Slot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = new Slot();
+        }
+        this.mask = ringSize - 1;
+        this.handler = handler;
+        this.businessThread = new Thread(this::run, "ledger-pipeline");
+        businessThread.setDaemon(true);
+        businessThread.start();
+    }
+
+    /**
+     * Submits a command.
+     * @param type command type
+     * @param username user the command belongs to
+     * @param counterparty transfer recipient or {@code null}
+     * @param amount amount in cents
+     * @return future completed with the actually moved amount in cents
+     */
+    CompletableFuture<Long> submit(CommandType type, String username, String counterparty, long amount) {
+        if (!running) {
+            throw stopped();
+        }
+        long sequence = claimed.incrementAndGet();
+        while (sequence - ring.length >= consumed) {
+            if (terminated) {
+                throw stopped();
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        Slot slot = ring[(int) (sequence & mask)];
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        slot.type = type;
+        slot.username = username;
+        slot.counterparty = counterparty;
+        slot.amount = amount;
+        slot.future = future;
+        slot.published = sequence;
+        if (terminated) {
+            // The business thread may have ended before the slot was published and never see it
+            future.completeExceptionally(stopped());
+        } else if (waiting) {
+            LockSupport.unpark(businessThread);
+        }
+        return future;
+    }
+
+    /**
+     * Checks whether the current thread is the business logic thread.
+     * @return {@code true} if called from the business logic thread
+     */
+    boolean isBusinessThread() {
+        return Thread.currentThread() == businessThread;
+    }
+
+    /**
+     * Stops the business logic thread after the already published commands are applied.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(businessThread);
+    }
+
+    private void run() {
+        try {
+            process();
+        } catch (Throwable e) {
+            stopCause = e;
+            throw e;
+        } finally {
+            running = false;
+            terminated = true;
+            failUnapplied();
+        }
+    }
+
+    private void process() {
+        long next = 0;
+        int idleSpins = 0;
+        while (running || ring[(int) (next & mask)].published == next) {
+            long batchEnd = next;
+            while (ring[(int) (batchEnd & mask)].published == batchEnd && batchEnd - next < ring.length) {
+                apply(ring[(int) (batchEnd & mask)]);
+                batchEnd++;
+            }
+            if (batchEnd == next) {
+                idleSpins = idle(next, idleSpins);
+                continue;
+            }
+            idleSpins = 0;
+            for (long sequence = next; sequence < batchEnd; sequence++) {
+                complete(ring[(int) (sequence & mask)]);
+            }
+            consumed = batchEnd - 1;
+            next = batchEnd;
+        }
+    }
+
+    private void apply(Slot slot) {
+        try {
+            slot.result = handler.apply(slot.type, slot.username, slot.counterparty, slot.amount);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (RuntimeException | Error e) {
+            slot.failure = e;
+        }
+    }
+
+    private void failUnapplied() {
+        IllegalStateException failure = stopped();
+        long last = claimed.get();
+        for (long sequence = consumed + 1; sequence <= last; sequence++) {
+            Slot slot = ring[(int) (sequence & mask)];
+            if (slot.published == sequence && slot.future != null) {
+                slot.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private IllegalStateException stopped() {
+        return new IllegalStateException("Ledger pipeline is stopped", stopCause);
+    }
+
+    private void complete(Slot slot) {
+        CompletableFuture<Long> future = slot.future;
+        Throwable failure = slot.failure;
+        long result = slot.result;
+        slot.username = null;
+        slot.counterparty = null;
+        slot.future = null;
+        slot.failure = null;
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(result);
+        }
+    }
+
+    private int idle(long next, int idleSpins) {
+        if (idleSpins < SPINS_BEFORE_PARK) {
+            Thread.onSpinWait();
+            return idleSpins + 1;
+        }
+        waiting = true;
+        if (ring[(int) (next & mask)].published != next && running) {
+            LockSupport.park(this);
+        }
+        waiting = false;
+        return idleSpins;
+    }
+
+    /**
+     * Pre-allocated ring buffer slot.
+     */
+    private static final class Slot {
+
+        private CommandType type;
+        private String username;
+        private String counterparty;
+        private long amount;
+        private long result;
+        private Throwable failure;
+        private CompletableFuture<Long> future;
+        private volatile long published = -1;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bank.tiny.service;
+
+import com.vaadin.flow.shared.Registration;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-user notifications about account changes. The ledger publishes the username after the balance or the history
+ * of the account changed and the account lock is released; listeners read the new state themselves, so an event
+ * carries no data and any number of events can be merged into one update.
+ * <p>
+ * Listeners are called on the dispatcher threads of the bus, never on the thread that changed the account, so a slow
+ * listener such as a view rendering its update cannot stall the ledger. The listeners of a user are never called
+ * concurrently, and changes published while they run are merged into a single further call.
+ */
+@Component
+public class LedgerEventBus {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerEventBus.class);
+    private static final int DEFAULT_THREADS = 2;
+
+    private final Map<String, Subscribers> subscribers = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor dispatcher;
+
+    /**
+     * Creates a bus with the default number of dispatcher threads.
+     */
+    public LedgerEventBus() {
+        this(DEFAULT_THREADS);
+    }
+
+    /**
+     * Parametrized constructor. Dispatcher threads are only started once events are published to a subscriber.
+     * @param threads number of dispatcher threads
+     */
+    @Autowired
+    public LedgerEventBus(@Value("${tinybank.events.dispatcher-threads:2}") int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatcher = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ledger-events-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Subscribes to changes of the user account.
+     * @param username user
+     * @param listener listener called after each change
+     * @return {@link Registration} removing the listener
+     */
+    public Registration subscribe(String username, Runnable listener) {
+        subscribers.computeIfAbsent(username, k -> new Subscribers()).listeners.add(listener);
+        return () -> subscribers.computeIfPresent(username, (k, userSubscribers) -> {
+            userSubscribers.listeners.remove(listener);
+            return userSubscribers.listeners.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    /**
+     * Notifies listeners of the user account about a change. Returns without waiting for the listeners.
+     * @param username user
+     */
+    public void publish(String username) {
+        Subscribers userSubscribers = subscribers.get(username);
+        if (userSubscribers == null || userSubscribers.changes.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            dispatcher.execute(() -> dispatch(username, userSubscribers));
+        } catch (RejectedExecutionException e) {
+            userSubscribers.changes.set(0);
+            LOG.debug("Account change of {} not dispatched, the bus is stopped", username);
+        }
+    }
+
+    /**
+     * Stops the dispatcher threads.
+     */
+    @PreDestroy
+    public void close() {
+        dispatcher.shutdownNow();
+    }
+
+    private static void dispatch(String username, Subscribers userSubscribers) {
+        int changes = userSubscribers.changes.get();
+        do {
+            for (Runnable listener : userSubscribers.listeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOG.warn("Account change listener of {} failed", username, e);
+                }
+            }
+            changes = userSubscribers.changes.addAndGet(-changes);
+        } while (changes != 0);
+    }
+
+    private static final class Subscribers {
+
+        private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+        /**
+         * Changes not yet covered by a call of the listeners, non-zero while a dispatch is queued or running.
+         */
+        private final AtomicInteger changes = new AtomicInteger();
+    }
+}
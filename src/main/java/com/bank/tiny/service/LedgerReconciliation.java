@@ -0,0 +1,411 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.Discrepancy;
+import com.bank.tiny.domain.DiscrepancyType;
+import com.bank.tiny.domain.ReconciliationReport;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.journal.TransactionClock;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UsernameDictionary;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Online audit of the ledger: checks that every balance equals the sum of its history and that every transfer leg has
+ * a matching leg with the same transaction id and amount on the counterparty.
+ * <p>
+ * The check runs against a consistent view without pausing writers. It first reads the last handed out transaction id
+ * as the cutoff, then locks every account only to read its balance and history size. Both legs of a transfer are
+ * appended under the locks of both accounts, so a transfer with an id up to the cutoff is complete in both captured
+ * history prefixes, while later transfers may be seen half and are not paired. Writers keep appending behind the
+ * captured prefixes, which are immutable.
+ * <p>
+ * The captured histories are laid out as one range of entries and split evenly across a {@link ForkJoinPool}, so an
+ * account with millions of entries is checked in parallel like many small ones. The first pass streams over the
+ * columns and adds a hash of every transfer leg to sums of the payer and the payee, once as seen in the account's own
+ * history and once as expected from the counterparty. The sums are commutative, so the tasks need no coordination, and
+ * an account whose seen and expected sums differ has a leg without a matching one. Only such accounts are checked
+ * leg by leg in a second pass, which finds the matching leg with a binary search in the history of the counterparty,
+ * ordered by id.
+ */
+@Service
+public class LedgerReconciliation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerReconciliation.class);
+    private static final int MAX_REPORTED = 1000;
+    private static final int ENTRIES_PER_TASK = 1 << 16;
+
+    private final AccountRepository accountRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final TransactionClock clock;
+    private final long intervalSeconds;
+    private final ForkJoinPool pool;
+    private final ReentrantLock runLock = new ReentrantLock();
+    private volatile ReconciliationReport lastReport;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Parametrized constructor.
+     * @param accountRepository {@link AccountRepository} instance
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param parallelism number of reconciliation threads, non-positive value means one per processor
+     * @param intervalSeconds interval between reconciliations, non-positive value disables periodic reconciliation
+     */
+    public LedgerReconciliation(AccountRepository accountRepository,
+                                TransactionHistoryRepository transactionHistoryRepository, LedgerJournal journal,
+                                @Value("${tinybank.reconciliation.parallelism:0}") int parallelism,
+                                @Value("${tinybank.reconciliation.interval-seconds:3600}") long intervalSeconds) {
+        this.accountRepository = accountRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.clock = journal.getClock();
+        this.intervalSeconds = intervalSeconds;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                forkJoinPool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                            .newThread(forkJoinPool);
+                    thread.setName("reconciliation-" + thread.getPoolIndex());
+                    return thread;
+                }, null, false);
+    }
+
+    /**
+     * Starts periodic reconciliation in the background.
+     */
+    public void start() {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcileSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops periodic reconciliation and the worker pool.
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Gets the report of the last reconciliation.
+     * @return {@link ReconciliationReport} instance or {@code null} if none has run yet
+     */
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Reconciles the whole ledger. Concurrent calls run one after another.
+     * @return {@link ReconciliationReport} instance
+     */
+    public ReconciliationReport reconcile() {
+        runLock.lock();
+        try {
+            long start = System.nanoTime();
+            LedgerView view = capture();
+            pool.invoke(new CheckEntries(view, 0, view.offsets[view.accounts.length], false));
+            if (view.markSuspects()) {
+                pool.invoke(new CheckEntries(view, 0, view.offsets[view.accounts.length], true));
+            }
+            ReconciliationReport report = view.report((System.nanoTime() - start) / 1_000_000);
+            lastReport = report;
+            if (report.isConsistent()) {
+                LOG.info("Ledger reconciled: {} accounts, {} transactions, {} transfer legs in {} ms",
+                        report.accounts(), report.transactions(), report.transferLegs(), report.durationMillis());
+            } else {
+                LOG.warn("Ledger reconciliation found {} discrepancies in {} accounts, first ones: {}",
+                        report.discrepancyCount(), report.accounts(),
+                        report.discrepancies().subList(0, Math.min(10, report.discrepancies().size())));
+            }
+            return report;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            LOG.error("Ledger reconciliation failed", e);
+        }
+    }
+
+    private LedgerView capture() {
+        long cutoff = clock.lastSequence();
+        Account[] accounts = accountRepository.findAll().toArray(new Account[0]);
+        LedgerView view = new LedgerView(cutoff, accounts, transactionHistoryRepository.getDictionary());
+        for (int i = 0; i < accounts.length; i++) {
+            Account account = accounts[i];
+            view.histories[i] = transactionHistoryRepository.getHistory(account.getUsername());
+            account.lock();
+            try {
+                view.balances[i] = account.getAmount();
+                view.offsets[i + 1] = view.offsets[i] + view.histories[i].size();
+            } finally {
+                account.unlock();
+            }
+        }
+        view.indexAccounts();
+        return view;
+    }
+
+    /**
+     * Captured balances and history prefixes, and the results collected by the tasks.
+     */
+    private static final class LedgerView {
+
+        private final long cutoff;
+        private final Account[] accounts;
+        private final UsernameDictionary dictionary;
+        private final TransactionHistory[] histories;
+        private final long[] balances;
+        private final long[] offsets;
+        private final AtomicLongArray sums;
+        private final AtomicLongArray seenLegs;
+        private final AtomicLongArray expectedLegs;
+        private boolean[] suspects;
+        private final LongAdder transferLegs = new LongAdder();
+        private final AtomicLong discrepancyCount = new AtomicLong();
+        private final Queue<Discrepancy> discrepancies = new ConcurrentLinkedQueue<>();
+        private int[] accountsById = new int[0];
+
+        private LedgerView(long cutoff, Account[] accounts, UsernameDictionary dictionary) {
+            this.cutoff = cutoff;
+            this.accounts = accounts;
+            this.dictionary = dictionary;
+            this.histories = new TransactionHistory[accounts.length];
+            this.balances = new long[accounts.length];
+            this.offsets = new long[accounts.length + 1];
+            this.sums = new AtomicLongArray(accounts.length);
+            this.seenLegs = new AtomicLongArray(accounts.length);
+            this.expectedLegs = new AtomicLongArray(accounts.length);
+        }
+
+        /**
+         * Maps counterparty ids of the history columns to captured accounts.
+         */
+        private void indexAccounts() {
+            int[] ids = new int[accounts.length];
+            int maxId = UsernameDictionary.NO_ID;
+            for (int i = 0; i < accounts.length; i++) {
+                ids[i] = dictionary.find(accounts[i].getUsername());
+                maxId = Math.max(maxId, ids[i]);
+            }
+            accountsById = new int[maxId + 1];
+            Arrays.fill(accountsById, -1);
+            for (int i = 0; i < accounts.length; i++) {
+                if (ids[i] != UsernameDictionary.NO_ID) {
+                    accountsById[ids[i]] = i;
+                }
+            }
+        }
+
+        /**
+         * Marks the accounts whose transfer legs do not add up for the second pass.
+         * @return {@code true} if there is any
+         */
+        private boolean markSuspects() {
+            boolean[] marked = new boolean[accounts.length];
+            boolean any = false;
+            for (int i = 0; i < accounts.length; i++) {
+                marked[i] = seenLegs.get(i) != expectedLegs.get(i);
+                any |= marked[i];
+            }
+            suspects = marked;
+            return any;
+        }
+
+        /**
+         * Checks the entries {@code [from, to)} of the concatenated history prefixes.
+         * @param pairing whether to pair the transfer legs of suspect accounts instead of summing the entries
+         */
+        private void check(long from, long to, boolean pairing) {
+            int account = Arrays.binarySearch(offsets, from);
+            account = account >= 0 ? account : -account - 2;
+            for (; account < accounts.length && offsets[account] < to; account++) {
+                int fromIndex = (int) (Math.max(from, offsets[account]) - offsets[account]);
+                int toIndex = (int) (Math.min(to, offsets[account + 1]) - offsets[account]);
+                if (fromIndex >= toIndex) {
+                    continue;
+                }
+                if (!pairing) {
+                    checkAccount(account, fromIndex, toIndex);
+                } else if (suspects[account]) {
+                    pairLegs(account, fromIndex, toIndex);
+                }
+            }
+        }
+
+        private void checkAccount(int account, int fromIndex, int toIndex) {
+            TransactionHistory history = histories[account];
+            int accountId = dictionary.find(accounts[account].getUsername());
+            long sum = 0;
+            long legs = 0;
+            long seen = 0;
+            for (int i = fromIndex; i < toIndex; i++) {
+                long amount = history.amount(i);
+                TransactionType type = history.type(i);
+                sum += type == TransactionType.DEPOSIT ? amount : -amount;
+                int counterpartyId = history.counterpartyId(i);
+                long id = history.id(i);
+                if (isPaired(counterpartyId, id, amount)) {
+                    legs++;
+                    boolean withdrawal = type == TransactionType.WITHDRAW;
+                    long hash = withdrawal ? hash(id, accountId, counterpartyId, amount)
+                            : hash(id, counterpartyId, accountId, amount);
+                    seen += hash;
+                    int counterparty = counterpartyId < accountsById.length ? accountsById[counterpartyId] : -1;
+                    if (counterparty >= 0) {
+                        expectedLegs.addAndGet(counterparty, hash);
+                    } else {
+                        seen++;
+                    }
+                }
+            }
+            sums.addAndGet(account, sum);
+            seenLegs.addAndGet(account, seen);
+            transferLegs.add(legs);
+        }
+
+        private void pairLegs(int account, int fromIndex, int toIndex) {
+            TransactionHistory history = histories[account];
+            int accountId = dictionary.find(accounts[account].getUsername());
+            for (int i = fromIndex; i < toIndex; i++) {
+                int counterpartyId = history.counterpartyId(i);
+                long id = history.id(i);
+                long amount = history.amount(i);
+                if (isPaired(counterpartyId, id, amount)) {
+                    checkLeg(account, accountId, id, history.type(i), amount, counterpartyId);
+                }
+            }
+        }
+
+        /**
+         * Checks whether an entry is a transfer leg that must have a matching leg. Legacy entries without an id and
+         * transfers after the cutoff cannot be paired, and a zero amount moves no money.
+         */
+        private boolean isPaired(int counterpartyId, long id, long amount) {
+            return counterpartyId != UsernameDictionary.NO_ID && id != 0 && id <= cutoff && amount != 0;
+        }
+
+        private static long hash(long id, int payerId, int payeeId, long amount) {
+            long hash = id * 0x9E3779B97F4A7C15L ^ ((long) payerId << 32 | payeeId) * 0xC2B2AE3D27D4EB4FL
+                    ^ amount * 0x165667B19E3779F9L;
+            hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+            hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            return hash ^ (hash >>> 33);
+        }
+
+        private void checkLeg(int account, int accountId, long id, TransactionType type, long amount,
+                              int counterpartyId) {
+            int counterparty = counterpartyId < accountsById.length ? accountsById[counterpartyId] : -1;
+            boolean withdrawal = type == TransactionType.WITHDRAW;
+            boolean found = false;
+            long matchedAmount = 0;
+            if (counterparty >= 0) {
+                TransactionHistory history = histories[counterparty];
+                int size = (int) (offsets[counterparty + 1] - offsets[counterparty]);
+                for (int i = history.indexOfId(id, size); i < size && history.id(i) == id; i++) {
+                    if (history.type(i) != type && history.counterpartyId(i) == accountId) {
+                        if (history.amount(i) == amount) {
+                            return;
+                        }
+                        found = true;
+                        matchedAmount = history.amount(i);
+                    }
+                }
+            }
+            if (found) {
+                if (withdrawal) {
+                    report(DiscrepancyType.AMOUNT_MISMATCH, account, counterpartyId, id, amount, matchedAmount);
+                }
+            } else {
+                report(withdrawal ? DiscrepancyType.MISSING_DEPOSIT : DiscrepancyType.MISSING_WITHDRAWAL, account,
+                        counterpartyId, id, amount, 0);
+            }
+        }
+
+        private void report(DiscrepancyType type, int account, int counterpartyId, long id, long expected,
+                            long actual) {
+            if (discrepancyCount.incrementAndGet() <= MAX_REPORTED) {
+                discrepancies.add(new Discrepancy(type, accounts[account].getUsername(),
+                        dictionary.name(counterpartyId), id, expected, actual));
+            }
+        }
+
+        private ReconciliationReport report(long durationMillis) {
+            for (int i = 0; i < accounts.length; i++) {
+                if (sums.get(i) != balances[i]) {
+                    report(DiscrepancyType.BALANCE_MISMATCH, i, UsernameDictionary.NO_ID, 0, sums.get(i),
+                            balances[i]);
+                }
+            }
+            List<Discrepancy> found = new ArrayList<>(discrepancies);
+            found.sort(Comparator.comparing(Discrepancy::username).thenComparingLong(Discrepancy::transactionId));
+            return new ReconciliationReport(cutoff, accounts.length, offsets[accounts.length], transferLegs.sum(),
+                    discrepancyCount.get(), found, durationMillis);
+        }
+    }
+
+    /**
+     * Splits a range of the concatenated history prefixes until it is small enough to be checked by one task.
+     */
+    private static final class CheckEntries extends RecursiveAction {
+
+        private final LedgerView view;
+        private final long from;
+        private final long to;
+        private final boolean pairing;
+
+        private CheckEntries(LedgerView view, long from, long to, boolean pairing) {
+            this.view = view;
+            this.from = from;
+            this.to = to;
+            this.pairing = pairing;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ENTRIES_PER_TASK) {
+                view.check(from, to, pairing);
+                return;
+            }
+            long middle = (from + to) >>> 1;
+            invokeAll(new CheckEntries(view, from, middle, pairing), new CheckEntries(view, middle, to, pairing));
+        }
+    }
+}
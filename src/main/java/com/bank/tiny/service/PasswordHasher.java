@@ -0,0 +1,111 @@
+package com.bank.tiny.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and verifies passwords with bcrypt on a dedicated, bounded thread pool, so that a burst of logins or
+ * registrations burns at most {@code tinybank.password.hashing-threads} cores and never the request threads serving
+ * the ledger. Calls wait for the result; when the queue is full or the result does not arrive in time they fail with
+ * {@link RejectedExecutionException} instead of piling up.
+ * <p>
+ * Encoded passwords carry their encoder id, e.g. {@code {bcrypt}...}; any other stored password never matches.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final String BCRYPT = "bcrypt";
+    private static final String BCRYPT_PREFIX = "{" + BCRYPT + "}";
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    /**
+     * Parametrized constructor.
+     * @param strength bcrypt work factor, the log2 of the number of rounds
+     * @param threads number of hashing threads
+     * @param queueCapacity number of hashing requests allowed to wait for a thread
+     * @param timeoutMillis maximum time to wait for a result
+     */
+    public PasswordHasher(@Value("${tinybank.password.bcrypt-strength:10}") int strength,
+                          @Value("${tinybank.password.hashing-threads:2}") int threads,
+                          @Value("${tinybank.password.queue-capacity:256}") int queueCapacity,
+                          @Value("${tinybank.password.timeout-ms:5000}") long timeoutMillis) {
+        this.encoder = new DelegatingPasswordEncoder(BCRYPT, Map.of(BCRYPT, new BCryptPasswordEncoder(strength)));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Encodes a password.
+     * @param rawPassword password to encode
+     * @return encoded password with the encoder id prefix
+     * @throws RejectedExecutionException if the hashing pool is overloaded
+     */
+    public String encode(CharSequence rawPassword) {
+        return call(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Verifies a password.
+     * @param rawPassword password to verify
+     * @param encodedPassword stored encoded password
+     * @return {@code true} if the passwords match
+     * @throws RejectedExecutionException if the hashing pool is overloaded
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (!encodedPassword.startsWith(BCRYPT_PREFIX)) {
+            return false;
+        }
+        return call(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Stops the hashing threads.
+     */
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T call(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password hashing timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
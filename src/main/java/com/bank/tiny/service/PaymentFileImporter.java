@@ -0,0 +1,203 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Money;
+import com.bank.tiny.domain.TransferInstruction;
+import com.bank.tiny.domain.TransferResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming importer of bulk payment files. Every line of the CSV input has the form {@code from,to,amount}, where
+ * the amount is a decimal with at most two fractional digits; an optional header line starting with {@code from} is
+ * skipped. Lines are executed in chunks through {@link AccountService#transferBatch(List)}, so memory use does not
+ * depend on the file size. For every input line a report line {@code line,from,to,amount,transferred,status,reason}
+ * is written. An import on behalf of a payer rejects lines paying from any other account.
+ */
+@Service
+public class PaymentFileImporter {
+
+    private static final String REPORT_HEADER = "line,from,to,amount,transferred,status,reason";
+    private static final String MALFORMED = "Malformed line";
+
+    private final AccountService accountService;
+    private final int batchSize;
+
+    /**
+     * Parametrized constructor.
+     * @param accountService {@link AccountService} instance
+     * @param batchSize number of lines executed as one batch
+     */
+    public PaymentFileImporter(AccountService accountService,
+                               @Value("${tinybank.payments.batch-size:1000}") int batchSize) {
+        this.accountService = accountService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports a payment file.
+     * @param input CSV payment file
+     * @param report destination of the per-line report
+     * @return summary of the import
+     * @throws IOException if reading the input or writing the report fails
+     */
+    public ImportSummary importPayments(Reader input, Writer report) throws IOException {
+        return importPayments(input, report, null);
+    }
+
+    /**
+     * Imports a payment file on behalf of a payer.
+     * @param input CSV payment file
+     * @param report destination of the per-line report
+     * @param payer the only allowed source account, {@code null} allows any
+     * @return summary of the import
+     * @throws IOException if reading the input or writing the report fails
+     */
+    public ImportSummary importPayments(Reader input, Writer report, String payer) throws IOException {
+        BufferedReader reader = input instanceof BufferedReader bufferedReader ? bufferedReader
+                : new BufferedReader(input);
+        report.write(REPORT_HEADER);
+        report.write('\n');
+        ImportSummary summary = new ImportSummary();
+        List<PaymentLine> lines = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || lineNumber == 1 && line.startsWith("from")) {
+                continue;
+            }
+            lines.add(parse(lineNumber, line, payer));
+            if (lines.size() == batchSize) {
+                execute(lines, report, summary);
+            }
+        }
+        execute(lines, report, summary);
+        report.flush();
+        return summary;
+    }
+
+    private void execute(List<PaymentLine> lines, Writer report, ImportSummary summary) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<TransferInstruction> instructions = new ArrayList<>(lines.size());
+        for (PaymentLine line : lines) {
+            if (line.instruction() != null) {
+                instructions.add(line.instruction());
+            }
+        }
+        List<TransferResult> results = accountService.transferBatch(instructions);
+        int resultIndex = 0;
+        for (PaymentLine line : lines) {
+            TransferResult result = line.instruction() == null ? TransferResult.rejected(line.rejection())
+                    : results.get(resultIndex++);
+            writeReportLine(report, line, result);
+            summary.add(result);
+        }
+        lines.clear();
+    }
+
+    private static PaymentLine parse(long lineNumber, String line, String payer) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            return new PaymentLine(lineNumber, "", "", "", null, MALFORMED);
+        }
+        String from = fields[0].trim();
+        String to = fields[1].trim();
+        String amount = fields[2].trim();
+        if (payer != null && !payer.equals(from)) {
+            return new PaymentLine(lineNumber, from, to, amount, null, "Source account is not the payer");
+        }
+        try {
+            return new PaymentLine(lineNumber, from, to, amount,
+                    new TransferInstruction(from, to, Money.toCents(new BigDecimal(amount))), null);
+        } catch (ArithmeticException | NumberFormatException e) {
+            return new PaymentLine(lineNumber, from, to, amount, null, MALFORMED);
+        }
+    }
+
+    private static void writeReportLine(Writer report, PaymentLine line, TransferResult result) throws IOException {
+        report.write(String.valueOf(line.number()));
+        report.write(',');
+        report.write(line.from());
+        report.write(',');
+        report.write(line.to());
+        report.write(',');
+        report.write(line.amount());
+        report.write(',');
+        report.write(Money.toBigDecimal(result.transferred()).toPlainString());
+        report.write(',');
+        report.write(result.status().name());
+        report.write(',');
+        if (result.reason() != null) {
+            report.write(result.reason());
+        }
+        report.write('\n');
+    }
+
+    private record PaymentLine(long number, String from, String to, String amount, TransferInstruction instruction,
+                               String rejection) {
+    }
+
+    /**
+     * Counters of an import.
+     */
+    public static final class ImportSummary {
+
+        private long completed;
+        private long partial;
+        private long rejected;
+        private long transferred;
+
+        private void add(TransferResult result) {
+            switch (result.status()) {
+                case COMPLETED -> completed++;
+                case PARTIAL -> partial++;
+                case REJECTED -> rejected++;
+            }
+            transferred += result.transferred();
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getPartial() {
+            return partial;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Gets total transferred amount.
+         * @return total transferred amount in cents
+         */
+        public long getTransferred() {
+            return transferred;
+        }
+
+        /**
+         * Gets number of processed lines.
+         * @return number of processed lines
+         */
+        public long getLines() {
+            return completed + partial + rejected;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lines: %d completed, %d partial, %d rejected, %s transferred", getLines(),
+                    completed, partial, rejected, Money.toBigDecimal(transferred));
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.StandingOrder;
+import com.bank.tiny.domain.StandingOrderFrequency;
+import com.bank.tiny.domain.TransferInstruction;
+import com.bank.tiny.domain.TransferResult;
+import com.bank.tiny.domain.TransferStatus;
+import com.bank.tiny.journal.JournalCheckpoint;
+import com.bank.tiny.journal.JournalRecord;
+import com.bank.tiny.journal.JournalRecordType;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.journal.TransactionClock;
+import com.bank.tiny.repostiroty.AccountRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Standing orders: transfers scheduled for a point in time and optionally repeated daily, weekly or monthly.
+ * <p>
+ * Orders wait in a {@link TimingWheel} with one second ticks, so scheduling and cancelling cost O(1) regardless of the
+ * number of orders, and a single scheduler thread serves all of them. Every tick the scheduler advances the wheel and
+ * executes the expired orders through {@link AccountService#transferBatch(List)} in batches. A batch locks each of its
+ * accounts once and only for the time of the batch, so a million orders due in the same minute are interleaved with
+ * interactive operations instead of blocking them. Like any transfer, an execution only moves the available balance.
+ * An executed order is rescheduled for its next occurrence. An order whose transfer is rejected because an account
+ * no longer exists or was deactivated is cancelled; any other rejection, e.g. by a velocity rule or a balance
+ * overflow, is temporary, so only that occurrence is skipped and the order is rescheduled for the next one.
+ * <p>
+ * Orders are created, cancelled and executed through the {@link LedgerJournal}. The execution record carries the order
+ * id, so the journal replay advances the order together with the transfer, and snapshots store every order with the
+ * sequence number of its last execution. Executions run under a lock that a snapshot {@link #checkpoint()} waits for,
+ * so an execution journaled before the checkpoint is always reflected in the snapshot. After a restart, occurrences
+ * missed while the application was down are executed one per tick until the orders catch up.
+ */
+@Service
+public class StandingOrders {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StandingOrders.class);
+    private static final long TICK_MILLIS = 1000;
+    private static final long MAX_PAST_MILLIS = 60_000;
+    private static final long MAX_FUTURE_MILLIS = 10 * 366 * 24 * 60 * 60 * 1000L;
+    private static final char SEPARATOR = ':';
+
+    private final AccountService accountService;
+    private final AccountRepository accountRepository;
+    private final LedgerJournal journal;
+    private final TransactionClock clock;
+    private final int batchSize;
+    private final Map<String, Map<Long, ScheduledOrder>> ordersByUser = new ConcurrentHashMap<>();
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final ReentrantLock executionLock = new ReentrantLock();
+    private TimingWheel wheel;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Parametrized constructor.
+     * @param accountService {@link AccountService} instance
+     * @param accountRepository {@link AccountRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param batchSize number of due orders executed as one transfer batch
+     */
+    public StandingOrders(AccountService accountService, AccountRepository accountRepository, LedgerJournal journal,
+                          @Value("${tinybank.standing-orders.batch-size:256}") int batchSize) {
+        this.accountService = accountService;
+        this.accountRepository = accountRepository;
+        this.journal = journal;
+        this.clock = journal.getClock();
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Schedules the restored orders and starts executing due orders in the background. Orders that were due while
+     * the application was down are executed right away.
+     */
+    public void start() {
+        int count = 0;
+        wheelLock.lock();
+        try {
+            wheel = new TimingWheel(Math.floorDiv(clock.currentTimeMillis(), TICK_MILLIS));
+            for (Map<Long, ScheduledOrder> orders : ordersByUser.values()) {
+                for (ScheduledOrder order : orders.values()) {
+                    arm(order);
+                    count++;
+                }
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "standing-orders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::executeDueSafely,
+                TICK_MILLIS - Math.floorMod(clock.currentTimeMillis(), TICK_MILLIS), TICK_MILLIS,
+                TimeUnit.MILLISECONDS);
+        LOG.info("{} standing orders scheduled", count);
+    }
+
+    /**
+     * Stops executing due orders.
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Schedules a standing order.
+     * @param usernameFrom user whose money is being withdrawn
+     * @param usernameTo user to whom the account is deposited
+     * @param cents amount of every transfer in cents
+     * @param frequency repetition frequency
+     * @param firstExecution time of the first execution, at most a minute in the past and within ten years
+     * @return the created {@link StandingOrder}
+     * @throws IllegalArgumentException if the order is not valid
+     */
+    public StandingOrder schedule(String usernameFrom, String usernameTo, long cents,
+                                  StandingOrderFrequency frequency, Instant firstExecution) {
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (frequency == null || firstExecution == null) {
+            throw new IllegalArgumentException("Frequency and first execution are required");
+        }
+        if (!isActive(usernameFrom)) {
+            throw new IllegalArgumentException("Source account does not exist or is not active");
+        }
+        if (!isActive(usernameTo)) {
+            throw new IllegalArgumentException("Target account does not exist or is not active");
+        }
+        if (usernameFrom.equals(usernameTo)) {
+            throw new IllegalArgumentException("Standing order must transfer to another account");
+        }
+        long first = firstExecution.toEpochMilli();
+        long now = clock.currentTimeMillis();
+        if (first < now - MAX_PAST_MILLIS || first > now + MAX_FUTURE_MILLIS) {
+            throw new IllegalArgumentException("First execution must not be in the past or more than ten years ahead");
+        }
+        ScheduledOrder[] created = new ScheduledOrder[1];
+        journal.append(JournalRecordType.SCHEDULE_STANDING_ORDER, usernameFrom,
+                frequency.name() + SEPARATOR + first + SEPARATOR + usernameTo, cents,
+                sequence -> created[0] = register(new StandingOrder(sequence, usernameFrom, usernameTo, cents,
+                        frequency, first, 0, sequence)));
+        ScheduledOrder order = created[0];
+        wheelLock.lock();
+        try {
+            arm(order);
+        } finally {
+            wheelLock.unlock();
+        }
+        return order.state;
+    }
+
+    /**
+     * Cancels a standing order. An execution that already started is completed.
+     * @param username user whose money is being withdrawn by the order
+     * @param id order id
+     * @return {@code true} if the order was found and cancelled
+     */
+    public boolean cancel(String username, long id) {
+        ScheduledOrder order = find(username, id);
+        if (order == null) {
+            return false;
+        }
+        journal.append(JournalRecordType.CANCEL_STANDING_ORDER, username, Long.toString(id), 0,
+                () -> unregister(order));
+        wheelLock.lock();
+        try {
+            if (wheel != null) {
+                wheel.cancel(order);
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Gets the standing orders of the user.
+     * @param username user whose money is being withdrawn by the orders
+     * @return orders in the order of their creation
+     */
+    public List<StandingOrder> getOrders(String username) {
+        Map<Long, ScheduledOrder> orders = ordersByUser.get(username);
+        if (orders == null) {
+            return List.of();
+        }
+        return orders.values().stream()
+                .map(order -> order.state)
+                .sorted(Comparator.comparingLong(StandingOrder::id))
+                .toList();
+    }
+
+    /**
+     * Gets all standing orders, e.g. for a snapshot.
+     * @return copy of the orders in no particular order
+     */
+    public List<StandingOrder> getAllOrders() {
+        List<StandingOrder> result = new ArrayList<>();
+        for (Map<Long, ScheduledOrder> orders : ordersByUser.values()) {
+            for (ScheduledOrder order : orders.values()) {
+                result.add(order.state);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Takes a journal checkpoint between two batches of executions, so every execution journaled before the
+     * checkpoint is reflected in the orders.
+     * @return {@link JournalCheckpoint} instance
+     */
+    public JournalCheckpoint checkpoint() {
+        executionLock.lock();
+        try {
+            return journal.checkpoint();
+        } finally {
+            executionLock.unlock();
+        }
+    }
+
+    /**
+     * Restores an order from a snapshot during recovery.
+     * @param order {@link StandingOrder} instance
+     */
+    public void restore(StandingOrder order) {
+        if (!order.isFinished()) {
+            register(order);
+        }
+    }
+
+    /**
+     * Re-applies a journaled creation, cancellation, execution or skipped occurrence of an order during recovery.
+     * Occurrences already reflected in an order restored from a snapshot are skipped.
+     * @param record {@link JournalRecord} instance
+     */
+    public void replay(JournalRecord record) {
+        switch (record.type()) {
+            case SCHEDULE_STANDING_ORDER -> {
+                String[] parts = record.argument().split(String.valueOf(SEPARATOR), 3);
+                register(new StandingOrder(record.sequence(), record.username(), parts[2], record.amount(),
+                        StandingOrderFrequency.valueOf(parts[0]), Long.parseLong(parts[1]), 0, record.sequence()));
+            }
+            case CANCEL_STANDING_ORDER -> {
+                ScheduledOrder order = find(record.username(), record.standingOrderId());
+                if (order != null) {
+                    unregister(order);
+                }
+            }
+            case STANDING_TRANSFER, SKIP_STANDING_ORDER -> {
+                ScheduledOrder order = find(record.username(), record.standingOrderId());
+                if (order != null && order.state.sequence() < record.sequence()) {
+                    executed(order, record.sequence());
+                }
+            }
+            default -> throw new IllegalArgumentException("Not a standing order record: " + record.type());
+        }
+    }
+
+    /**
+     * Advances the timing wheel to the current time and executes the due orders in batches. Called by the scheduler
+     * every tick.
+     * @return number of executed orders
+     */
+    public int executeDue() {
+        List<ScheduledOrder> due = new ArrayList<>();
+        wheelLock.lock();
+        try {
+            if (wheel == null) {
+                return 0;
+            }
+            wheel.advance(Math.floorDiv(clock.currentTimeMillis(), TICK_MILLIS),
+                    timer -> due.add((ScheduledOrder) timer));
+        } finally {
+            wheelLock.unlock();
+        }
+        int executed = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            executed += execute(due.subList(from, Math.min(due.size(), from + batchSize)));
+        }
+        return executed;
+    }
+
+    private void executeDueSafely() {
+        try {
+            long start = System.nanoTime();
+            int executed = executeDue();
+            if (executed > 0) {
+                LOG.debug("{} standing orders executed in {} ms", executed, (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Standing order execution failed", e);
+        }
+    }
+
+    private int execute(List<ScheduledOrder> batch) {
+        List<ScheduledOrder> orders = new ArrayList<>(batch.size());
+        List<TransferInstruction> instructions = new ArrayList<>(batch.size());
+        for (ScheduledOrder order : batch) {
+            if (!order.cancelled) {
+                StandingOrder state = order.state;
+                orders.add(order);
+                instructions.add(new TransferInstruction(state.usernameFrom(), state.usernameTo(), state.amount(),
+                        state.id()));
+            }
+        }
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        List<TransferResult> results;
+        boolean[] cancelled = new boolean[orders.size()];
+        executionLock.lock();
+        try {
+            results = accountService.transferBatch(instructions);
+            long sequence = clock.lastSequence();
+            for (int i = 0; i < results.size(); i++) {
+                ScheduledOrder order = orders.get(i);
+                if (results.get(i).status() != TransferStatus.REJECTED) {
+                    executed(order, sequence);
+                } else if (isActive(order.state.usernameFrom()) && isActive(order.state.usernameTo())) {
+                    LOG.info("Occurrence of standing order {} of {} skipped: {}", order.state.id(),
+                            order.state.usernameFrom(), results.get(i).reason());
+                    journal.append(JournalRecordType.SKIP_STANDING_ORDER, order.state.usernameFrom(),
+                            Long.toString(order.state.id()), 0, skipSequence -> executed(order, skipSequence));
+                } else {
+                    cancelled[i] = true;
+                }
+            }
+        } finally {
+            executionLock.unlock();
+        }
+        int executed = 0;
+        wheelLock.lock();
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                if (!cancelled[i]) {
+                    arm(orders.get(i));
+                }
+                if (results.get(i).status() != TransferStatus.REJECTED) {
+                    executed++;
+                }
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        for (int i = 0; i < results.size(); i++) {
+            if (cancelled[i]) {
+                StandingOrder state = orders.get(i).state;
+                LOG.info("Standing order {} of {} cancelled: {}", state.id(), state.usernameFrom(),
+                        results.get(i).reason());
+                cancel(state.usernameFrom(), state.id());
+            }
+        }
+        return executed;
+    }
+
+    private boolean isActive(String username) {
+        Account account = username == null ? null : accountRepository.find(username);
+        return account != null && account.isActive();
+    }
+
+    private ScheduledOrder find(String username, long id) {
+        Map<Long, ScheduledOrder> orders = ordersByUser.get(username);
+        return orders == null ? null : orders.get(id);
+    }
+
+    private ScheduledOrder register(StandingOrder state) {
+        return ordersByUser.computeIfAbsent(state.usernameFrom(), username -> new ConcurrentHashMap<>())
+                .computeIfAbsent(state.id(), id -> new ScheduledOrder(state));
+    }
+
+    private void unregister(ScheduledOrder order) {
+        order.cancelled = true;
+        Map<Long, ScheduledOrder> orders = ordersByUser.get(order.state.usernameFrom());
+        if (orders != null) {
+            orders.remove(order.state.id());
+        }
+    }
+
+    private void executed(ScheduledOrder order, long sequence) {
+        order.state = order.state.executed(sequence);
+        if (order.state.isFinished()) {
+            Map<Long, ScheduledOrder> orders = ordersByUser.get(order.state.usernameFrom());
+            if (orders != null) {
+                orders.remove(order.state.id());
+            }
+        }
+    }
+
+    /**
+     * Links an order into the wheel for its next occurrence unless it is already linked, cancelled or finished. Must
+     * be called with the wheel lock held.
+     */
+    private void arm(ScheduledOrder order) {
+        StandingOrder state = order.state;
+        if (wheel != null && !order.cancelled && !order.isScheduled() && !state.isFinished()) {
+            wheel.schedule(order, Math.floorDiv(state.nextExecution() + TICK_MILLIS - 1, TICK_MILLIS));
+        }
+    }
+
+    /**
+     * Order linked into the timing wheel.
+     */
+    private static final class ScheduledOrder extends TimingWheel.Timer {
+
+        private volatile StandingOrder state;
+        private volatile boolean cancelled;
+
+        private ScheduledOrder(StandingOrder state) {
+            this.state = state;
+        }
+    }
+}
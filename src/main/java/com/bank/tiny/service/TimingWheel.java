@@ -0,0 +1,194 @@
+package com.bank.tiny.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of {@value #LEVELS} wheels with {@value #SLOTS} slots each, counting in ticks. A slot of a
+ * wheel spans one revolution of the wheel below it, so the wheels together cover 2^36 ticks.
+ * <p>
+ * A timer is linked into the slot of the highest tick digit in which its deadline differs from the current tick. When
+ * the current tick enters that slot, its timers are moved to a lower wheel, until they reach the lowest wheel and
+ * expire. Scheduling and cancelling are therefore O(1), and advancing costs O(1) per tick plus a move of each timer at
+ * most once per wheel. Timers are intrusive nodes of doubly linked slot lists, so the wheel allocates nothing.
+ * <p>
+ * Timers with a deadline that is not after the current tick are kept in an expired list and handed out by the next
+ * {@link #advance(long, Consumer)}. The wheel is not thread safe.
+ */
+final class TimingWheel {
+
+    static final int LEVELS = 6;
+    static final int SLOTS = 64;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int EXPIRED = LEVELS * SLOTS;
+    private static final int UNSCHEDULED = -1;
+
+    private final Timer[] heads = new Timer[LEVELS * SLOTS + 1];
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates an empty wheel.
+     * @param currentTick current tick
+     */
+    TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+    }
+
+    /**
+     * Gets the current tick.
+     * @return last tick the wheel was advanced to
+     */
+    long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Gets the number of scheduled timers.
+     * @return number of scheduled timers, including the expired ones not handed out yet
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a timer.
+     * @param timer timer that is not scheduled
+     * @param deadline tick at which the timer expires
+     * @throws IllegalStateException if the timer is already scheduled
+     * @throws IllegalArgumentException if the deadline is beyond the range of the wheels
+     */
+    void schedule(Timer timer, long deadline) {
+        if (timer.slot != UNSCHEDULED) {
+            throw new IllegalStateException("Timer is already scheduled");
+        }
+        if (deadline > currentTick && level(deadline) >= LEVELS) {
+            throw new IllegalArgumentException("Deadline is too far in the future");
+        }
+        timer.deadline = deadline;
+        insert(timer);
+        size++;
+    }
+
+    /**
+     * Cancels a timer.
+     * @param timer timer
+     * @return {@code true} if the timer was scheduled
+     */
+    boolean cancel(Timer timer) {
+        if (timer.slot == UNSCHEDULED) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel to a tick and hands out the expired timers, which are no longer scheduled afterwards.
+     * @param tick tick to advance to, ticks before the current one are ignored
+     * @param expired consumer of the expired timers
+     */
+    void advance(long tick, Consumer<Timer> expired) {
+        drain(EXPIRED, expired);
+        if (size == 0) {
+            currentTick = Math.max(currentTick, tick);
+            return;
+        }
+        while (currentTick < tick) {
+            currentTick++;
+            for (int level = 1; level < LEVELS && (currentTick & ((1L << level * SLOT_BITS) - 1)) == 0; level++) {
+                int index = level * SLOTS + ((int) (currentTick >>> level * SLOT_BITS) & SLOT_MASK);
+                Timer timer = heads[index];
+                heads[index] = null;
+                while (timer != null) {
+                    Timer next = timer.next;
+                    insert(timer);
+                    timer = next;
+                }
+            }
+            drain((int) currentTick & SLOT_MASK, expired);
+            drain(EXPIRED, expired);
+            if (size == 0) {
+                currentTick = tick;
+            }
+        }
+    }
+
+    private int level(long deadline) {
+        return (63 - Long.numberOfLeadingZeros(deadline ^ currentTick)) / SLOT_BITS;
+    }
+
+    private void insert(Timer timer) {
+        int index;
+        if (timer.deadline <= currentTick) {
+            index = EXPIRED;
+        } else {
+            int level = level(timer.deadline);
+            index = level * SLOTS + ((int) (timer.deadline >>> level * SLOT_BITS) & SLOT_MASK);
+        }
+        Timer head = heads[index];
+        timer.previous = null;
+        timer.next = head;
+        if (head != null) {
+            head.previous = timer;
+        }
+        heads[index] = timer;
+        timer.slot = index;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.previous == null) {
+            heads[timer.slot] = timer.next;
+        } else {
+            timer.previous.next = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.slot = UNSCHEDULED;
+    }
+
+    private void drain(int index, Consumer<Timer> expired) {
+        Timer timer = heads[index];
+        heads[index] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.previous = null;
+            timer.next = null;
+            timer.slot = UNSCHEDULED;
+            size--;
+            expired.accept(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * Node of a slot list, extended by the scheduled items.
+     */
+    static class Timer {
+
+        private Timer previous;
+        private Timer next;
+        private long deadline;
+        private int slot = UNSCHEDULED;
+
+        /**
+         * Checks whether the timer is scheduled.
+         * @return {@code true} if the timer is linked into the wheel
+         */
+        boolean isScheduled() {
+            return slot != UNSCHEDULED;
+        }
+
+        /**
+         * Gets the deadline of the timer.
+         * @return tick at which the timer expires
+         */
+        long deadline() {
+            return deadline;
+        }
+    }
+}
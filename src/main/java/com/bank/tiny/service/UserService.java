@@ -1,51 +1,101 @@
 package com.bank.tiny.service;
 
+import com.bank.tiny.jfr.AccountDeactivationEvent;
+import com.bank.tiny.jfr.UserRegistrationEvent;
+import com.bank.tiny.journal.JournalRecordType;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.metrics.LedgerMetrics.Operation;
 import com.bank.tiny.repostiroty.UserRepository;
-import com.bank.tiny.view.auth.Role;
 import com.bank.tiny.domain.BankUser;
 import com.vaadin.flow.spring.security.AuthenticationContext;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.stereotype.Service;
 
 @Service
 public class UserService {
 
-    private final UserDetailsManager detailsManager;
     private final AuthenticationContext authContext;
     private final AccountService accountService;
     private final UserRepository userRepository;
+    private final LedgerJournal journal;
+    private final LedgerMetrics metrics;
+    private final PasswordHasher passwordHasher;
 
     /**
      * Parametrized constructor.
-     * @param detailsManager {@link UserDetailsManager} instance
      * @param authContext {@link AuthenticationContext} instance
      * @param accountService {@link AccountService} instance
      * @param userRepository {@link UserRepository} instance
+     * @param journal {@link LedgerJournal} instance
+     * @param metrics {@link LedgerMetrics} instance
+     * @param passwordHasher {@link PasswordHasher} instance
      */
-    public UserService(UserDetailsManager detailsManager, AuthenticationContext authContext,
-                       AccountService accountService, UserRepository userRepository) {
-        this.detailsManager = detailsManager;
+    public UserService(AuthenticationContext authContext, AccountService accountService,
+                       UserRepository userRepository, LedgerJournal journal, LedgerMetrics metrics,
+                       PasswordHasher passwordHasher) {
         this.authContext = authContext;
         this.accountService = accountService;
         this.userRepository = userRepository;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.passwordHasher = passwordHasher;
     }
 
+    /**
+     * Registers a user and creates its account. The password is hashed on the {@link PasswordHasher} pool.
+     * @param bankUser user to register, with the raw password
+     * @return registered user with the encoded password or {@code null} if the username is taken
+     * @throws java.util.concurrent.RejectedExecutionException if the password hashing pool is overloaded
+     */
     public BankUser createUser(BankUser bankUser) {
-        if (userRepository.find(bankUser.getUsername()) != null) {
+        long start = metrics.start();
+        UserRegistrationEvent event = new UserRegistrationEvent();
+        event.begin();
+        try {
+            BankUser registered = register(bankUser);
+            event.complete(bankUser.getUsername(), registered != null);
+            return registered;
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.CREATE_USER);
+            if (event.shouldCommit()) {
+                event.complete(bankUser.getUsername(), false);
+            }
+            throw e;
+        } finally {
+            metrics.record(Operation.CREATE_USER, start);
+        }
+    }
+
+    private BankUser register(BankUser registration) {
+        if (userRepository.find(registration.getUsername()) != null) {
             return null;
         }
-        UserDetails user = User.withUsername(bankUser.getUsername())
-                .password("{noop}" + bankUser.getPassword())
-                .roles(Role.USER.name())
-                .build();
-        userRepository.createUser(bankUser);
-        detailsManager.createUser(user);
+        BankUser bankUser = new BankUser();
+        bankUser.setUsername(registration.getUsername());
+        bankUser.setPassword(passwordHasher.encode(registration.getPassword()));
+        if (!userRepository.createUser(bankUser)) {
+            return null;
+        }
+        try {
+            journal.append(JournalRecordType.CREATE_USER, bankUser.getUsername(), bankUser.getPassword(), 0);
+        } catch (RuntimeException e) {
+            userRepository.deleteUser(bankUser);
+            throw e;
+        }
         accountService.createAccount(bankUser.getUsername());
         return bankUser;
     }
 
+    /**
+     * Registers a user restored from a snapshot or the journal, whose password is already encoded. Neither
+     * journals the user nor creates an account.
+     * @param bankUser restored user
+     */
+    public void restoreUser(BankUser bankUser) {
+        userRepository.createUser(bankUser);
+    }
+
     public BankUser getCurrentUser() {
         return authContext.getAuthenticatedUser(UserDetails.class)
                 .map(user -> getUser(user.getUsername()))
@@ -62,19 +112,19 @@ public class UserService {
     }
 
     public void deactivateUser(String username) {
-        BankUser bankUser = userRepository.find(username);
-        bankUser.setActive(false);
-        accountService.deactivate(username);
-        deactivateAuthentication(username, bankUser);
-    }
-
-    private void deactivateAuthentication(String username, BankUser bankUser) {
-        detailsManager.deleteUser(username);
-        UserDetails user = User.withUsername(bankUser.getUsername())
-                .password("{noop}" + bankUser.getPassword())
-                .roles(Role.USER.name())
-                .disabled(true)
-                .build();
-        detailsManager.createUser(user);
+        long start = metrics.start();
+        AccountDeactivationEvent event = new AccountDeactivationEvent();
+        event.begin();
+        try {
+            BankUser bankUser = userRepository.find(username);
+            journal.append(JournalRecordType.DEACTIVATE_USER, username, null, 0, () -> bankUser.setActive(false));
+            accountService.deactivate(username);
+            event.complete(username);
+        } catch (RuntimeException e) {
+            metrics.failed(Operation.DEACTIVATE);
+            throw e;
+        } finally {
+            metrics.record(Operation.DEACTIVATE, start);
+        }
     }
 }
@@ -0,0 +1,29 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.VelocityAlert;
+
+/**
+ * Thrown when an operation is rejected by a velocity rule, see {@link VelocityRules}. No balance was changed.
+ */
+public class VelocityLimitExceededException extends IllegalStateException {
+
+    private final transient VelocityAlert alert;
+
+    /**
+     * Parametrized constructor.
+     * @param message message for the user
+     * @param alert {@link VelocityAlert} of the rejected operation
+     */
+    public VelocityLimitExceededException(String message, VelocityAlert alert) {
+        super(message);
+        this.alert = alert;
+    }
+
+    /**
+     * Gets the alert of the rejected operation.
+     * @return {@link VelocityAlert} instance
+     */
+    public VelocityAlert getAlert() {
+        return alert;
+    }
+}
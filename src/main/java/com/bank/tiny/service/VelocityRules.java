@@ -0,0 +1,231 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.Money;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.domain.VelocityAction;
+import com.bank.tiny.domain.VelocityAlert;
+import com.bank.tiny.domain.VelocityRule;
+import com.bank.tiny.domain.VelocityWindow;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Velocity rules of the ledger: limits of the number and the sum of the movements of one {@link TransactionType} on an
+ * account within a sliding time window, such as at most 20 withdrawals or 5000.00 out of an account in 10 minutes.
+ * <p>
+ * Every account keeps a {@link VelocityWindow} per limited type, so checking a movement costs O(1) and a few hundred
+ * bytes per account instead of a scan of the history. The ledger checks every movement under the lock of its account
+ * after the amount was clamped to the balance and before anything is journaled, and records it once it was applied.
+ * A violating operation is either rejected with a {@link VelocityLimitExceededException} or executed and flagged.
+ * Every violation is counted by the metrics, rejections and the first flagged movement per window of an account are
+ * logged and kept among the last {@value #MAX_ALERTS} {@link VelocityAlert}s for review.
+ * <p>
+ * Windows are not journaled. A window is created on the first movement of its type after a restart and filled from
+ * the tail of the time-ordered history, which holds the movements of the last window once the journal is replayed.
+ * Replayed operations are not checked, they were accepted when they were executed.
+ */
+@Service
+public class VelocityRules {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VelocityRules.class);
+    private static final int MAX_ALERTS = 1000;
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+    private static final VelocityRules DISABLED = new VelocityRules(null, LedgerMetrics.disabled());
+
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final LedgerMetrics metrics;
+    private final VelocityRule[] rules = new VelocityRule[TRANSACTION_TYPES.length];
+    private final ReentrantLock alertsLock = new ReentrantLock();
+    private final ArrayDeque<VelocityAlert> alerts = new ArrayDeque<>();
+
+    /**
+     * Creates rules from the configuration. A rule without a count and an amount limit is disabled.
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param metrics {@link LedgerMetrics} instance
+     * @param withdrawWindowSeconds window of the withdrawal rule in seconds
+     * @param withdrawMaxCount maximum number of withdrawals and outgoing transfers in the window, {@code 0} for none
+     * @param withdrawMaxAmount maximum sum of withdrawals and outgoing transfers in the window, {@code 0} for none
+     * @param withdrawAction {@link VelocityAction} of a violating withdrawal or transfer
+     * @param depositWindowSeconds window of the deposit rule in seconds
+     * @param depositMaxCount maximum number of deposits and incoming transfers in the window, {@code 0} for none
+     * @param depositMaxAmount maximum sum of deposits and incoming transfers in the window, {@code 0} for none
+     * @param depositAction {@link VelocityAction} of a violating deposit or transfer
+     */
+    @Autowired
+    public VelocityRules(TransactionHistoryRepository transactionHistoryRepository, LedgerMetrics metrics,
+                         @Value("${tinybank.velocity.withdraw.window-seconds:600}") long withdrawWindowSeconds,
+                         @Value("${tinybank.velocity.withdraw.max-count:0}") int withdrawMaxCount,
+                         @Value("${tinybank.velocity.withdraw.max-amount:0}") BigDecimal withdrawMaxAmount,
+                         @Value("${tinybank.velocity.withdraw.action:REJECT}") VelocityAction withdrawAction,
+                         @Value("${tinybank.velocity.deposit.window-seconds:600}") long depositWindowSeconds,
+                         @Value("${tinybank.velocity.deposit.max-count:0}") int depositMaxCount,
+                         @Value("${tinybank.velocity.deposit.max-amount:0}") BigDecimal depositMaxAmount,
+                         @Value("${tinybank.velocity.deposit.action:FLAG}") VelocityAction depositAction) {
+        this(transactionHistoryRepository, metrics,
+                new VelocityRule(TransactionType.WITHDRAW, withdrawWindowSeconds * 1000, withdrawMaxCount,
+                        Money.toCents(withdrawMaxAmount), withdrawAction),
+                new VelocityRule(TransactionType.DEPOSIT, depositWindowSeconds * 1000, depositMaxCount,
+                        Money.toCents(depositMaxAmount), depositAction));
+    }
+
+    /**
+     * Parametrized constructor.
+     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param metrics {@link LedgerMetrics} instance
+     * @param rules {@link VelocityRule}s, at most one per transaction type, disabled ones are ignored
+     * @throws IllegalArgumentException if an enabled rule has no positive window or a type has several rules
+     */
+    public VelocityRules(TransactionHistoryRepository transactionHistoryRepository, LedgerMetrics metrics,
+                         VelocityRule... rules) {
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.metrics = metrics;
+        for (VelocityRule rule : rules) {
+            if (!rule.isEnabled()) {
+                continue;
+            }
+            if (rule.windowMillis() <= 0) {
+                throw new IllegalArgumentException("Window of a velocity rule must be positive");
+            }
+            if (this.rules[rule.type().ordinal()] != null) {
+                throw new IllegalArgumentException("Duplicate velocity rule of " + rule.type());
+            }
+            this.rules[rule.type().ordinal()] = rule;
+            LOG.info("Velocity rule of {}: at most {} movements and {} in {} ms, otherwise {}", rule.type(),
+                    rule.maxCount() > 0 ? rule.maxCount() : "any", rule.maxAmount() > 0
+                            ? Money.toBigDecimal(rule.maxAmount()) : "any amount", rule.windowMillis(), rule.action());
+        }
+    }
+
+    /**
+     * Gets rules that limit nothing.
+     * @return disabled {@link VelocityRules} instance
+     */
+    public static VelocityRules disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Checks a movement against the rule of its type. Must be called while holding the lock that serializes the
+     * movements of the account, before the operation changes any balance; a flagged movement is executed.
+     * @param account account
+     * @param type type of the movement on the account
+     * @param cents amount in cents, nothing is checked for {@code 0}
+     * @param timestamp time of the operation in epoch milliseconds
+     * @throws VelocityLimitExceededException if the movement violates a rule with {@link VelocityAction#REJECT}
+     */
+    public void check(Account account, TransactionType type, long cents, long timestamp) {
+        VelocityRule rule = rules[type.ordinal()];
+        if (rule == null || cents <= 0) {
+            return;
+        }
+        VelocityWindow window = window(account, rule, timestamp);
+        window.advance(timestamp);
+        if (rule.maxCount() > 0 && window.count() >= rule.maxCount()
+                || rule.maxAmount() > 0 && window.amount() > rule.maxAmount() - cents) {
+            violated(account, rule, window, cents, timestamp);
+        }
+    }
+
+    /**
+     * Records an applied movement in the window of its type. Must be called under the same lock as
+     * {@link #check}.
+     * @param account account
+     * @param type type of the movement on the account
+     * @param cents amount in cents, nothing is recorded for {@code 0}
+     * @param timestamp time of the operation in epoch milliseconds
+     */
+    public void record(Account account, TransactionType type, long cents, long timestamp) {
+        VelocityRule rule = rules[type.ordinal()];
+        if (rule == null || cents <= 0) {
+            return;
+        }
+        window(account, rule, timestamp).add(timestamp, cents);
+    }
+
+    /**
+     * Gets the latest alerts.
+     * @return up to {@value #MAX_ALERTS} {@link VelocityAlert}s, newest first
+     */
+    public List<VelocityAlert> getAlerts() {
+        alertsLock.lock();
+        try {
+            List<VelocityAlert> latest = new ArrayList<>(alerts.size());
+            for (Iterator<VelocityAlert> iterator = alerts.descendingIterator(); iterator.hasNext(); ) {
+                latest.add(iterator.next());
+            }
+            return latest;
+        } finally {
+            alertsLock.unlock();
+        }
+    }
+
+    private VelocityWindow window(Account account, VelocityRule rule, long timestamp) {
+        VelocityWindow window = account.getVelocityWindow(rule.type());
+        if (window == null) {
+            window = new VelocityWindow(rule.windowMillis());
+            TransactionHistory history = transactionHistoryRepository.getHistory(account.getUsername());
+            for (int i = history.size() - 1; i >= 0 && history.timestamp(i) > timestamp - rule.windowMillis(); i--) {
+                if (history.type(i) == rule.type()) {
+                    window.add(history.timestamp(i), history.amount(i));
+                }
+            }
+            account.setVelocityWindow(rule.type(), window);
+        }
+        return window;
+    }
+
+    private void violated(Account account, VelocityRule rule, VelocityWindow window, long cents, long timestamp) {
+        metrics.velocityViolation(rule.action());
+        if (rule.action() == VelocityAction.FLAG) {
+            // the movements after a violation usually violate the rule too, e.g. the rows of a payment file
+            if (window.flag(timestamp)) {
+                LOG.warn("Flagged {} of {} on account [{}], further violations within the window are not reported. {}",
+                        rule.type(), Money.toBigDecimal(cents), account.getUsername(), message(rule, window));
+                alert(account, rule, window, cents, timestamp);
+            }
+            return;
+        }
+        String message = message(rule, window);
+        LOG.info("Rejected {} of {} on account [{}]. {}", rule.type(), Money.toBigDecimal(cents), account.getUsername(),
+                message);
+        throw new VelocityLimitExceededException(message, alert(account, rule, window, cents, timestamp));
+    }
+
+    private VelocityAlert alert(Account account, VelocityRule rule, VelocityWindow window, long cents,
+                                long timestamp) {
+        VelocityAlert alert = new VelocityAlert(Instant.ofEpochMilli(timestamp), account.getUsername(), rule.type(),
+                cents, window.count(), window.amount(), rule.action());
+        alertsLock.lock();
+        try {
+            if (alerts.size() == MAX_ALERTS) {
+                alerts.removeFirst();
+            }
+            alerts.addLast(alert);
+        } finally {
+            alertsLock.unlock();
+        }
+        return alert;
+    }
+
+    private static String message(VelocityRule rule, VelocityWindow window) {
+        return String.format("Limit of %s operations exceeded: %d totalling %s in the last %d seconds",
+                rule.type().name().toLowerCase(Locale.ROOT), window.count(), Money.toBigDecimal(window.amount()),
+                rule.windowMillis() / 1000);
+    }
+}
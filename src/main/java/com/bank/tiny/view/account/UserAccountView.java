@@ -1,15 +1,36 @@
 package com.bank.tiny.view.account;
 
 import com.bank.tiny.MainView;
+import com.bank.tiny.domain.AccountStatement;
+import com.bank.tiny.domain.DailyStatement;
+import com.bank.tiny.domain.ExportFormat;
+import com.bank.tiny.domain.Money;
+import com.bank.tiny.domain.PeriodStatement;
+import com.bank.tiny.domain.StandingOrder;
+import com.bank.tiny.domain.StandingOrderFrequency;
+import com.bank.tiny.domain.StatementTotals;
 import com.bank.tiny.domain.Transaction;
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
 import com.bank.tiny.service.AccountService;
-import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.service.HistoryExporter;
+import com.bank.tiny.service.LedgerEventBus;
+import com.bank.tiny.service.StandingOrders;
 import com.bank.tiny.service.UserService;
+import com.bank.tiny.service.VelocityLimitExceededException;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
+import com.vaadin.flow.component.datepicker.DatePicker;
+import com.vaadin.flow.component.datetimepicker.DateTimePicker;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.H4;
 import com.vaadin.flow.component.html.NativeLabel;
 import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.VaadinIcon;
@@ -20,10 +41,20 @@ import com.vaadin.flow.component.textfield.BigDecimalField;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.spring.security.AuthenticationContext;
+import com.vaadin.flow.shared.Registration;
 import jakarta.annotation.security.PermitAll;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @PermitAll
 @Route(value = "account", layout = MainView.class)
@@ -31,40 +62,82 @@ import java.math.BigDecimal;
 public class UserAccountView extends VerticalLayout {
 
     private static final String FIELD_WIDTH = "150px";
+    private static final int SUMMARY_DAYS = 7;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneOffset.UTC);
     private final H2 balance;
     private final UserService userService;
     private final AccountService accountService;
-    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final LedgerEventBus ledgerEvents;
+    private final StandingOrders standingOrders;
+    private final HistoryExporter historyExporter;
     private final AuthenticationContext authContext;
     private final String username;
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    private final Span cashSummary = new Span();
+    private final Span transfersSummary = new Span();
+    private final Grid<DailyStatement> dailyGrid = new Grid<>(DailyStatement.class, false);
+    private final Span statementBalances = new Span();
+    private final Span statementTotals = new Span();
+    private final Grid<Transaction> statementGrid = new Grid<>(Transaction.class, false);
+    private final Grid<StandingOrder> standingOrdersGrid = new Grid<>(StandingOrder.class, false);
     private Grid<Transaction> transactionsGrid;
+    private PeriodStatement periodStatement;
+    private TransactionFilter filter = TransactionFilter.ALL;
+    private Registration accountChanges;
+    private long shownBalance;
+    private int shownCount;
 
     /**
      * Creates user account view.
      * @param userService {@link UserService} instance
      * @param accountService {@link AccountService} instance
-     * @param transactionHistoryRepository {@link TransactionHistoryRepository} instance
+     * @param ledgerEvents {@link LedgerEventBus} instance
+     * @param standingOrders {@link StandingOrders} instance
+     * @param historyExporter {@link HistoryExporter} instance
      * @param authContext {@link AuthenticationContext} instance
      */
-    public UserAccountView(UserService userService, AccountService accountService,
-                           TransactionHistoryRepository transactionHistoryRepository, AuthenticationContext authContext) {
+    public UserAccountView(UserService userService, AccountService accountService, LedgerEventBus ledgerEvents,
+                           StandingOrders standingOrders, HistoryExporter historyExporter,
+                           AuthenticationContext authContext) {
         this.accountService = accountService;
+        this.ledgerEvents = ledgerEvents;
+        this.standingOrders = standingOrders;
+        this.historyExporter = historyExporter;
         this.userService = userService;
-        this.transactionHistoryRepository = transactionHistoryRepository;
         this.authContext = authContext;
         setHeightFull();
         setAlignItems(Alignment.CENTER);
 
         username = userService.getCurrentUser().getUsername();
         H2 balanceMessage = new H2("Your current balance:");
-        balance = new H2(String.valueOf(accountService.getBalance(username)));
+        shownBalance = accountService.getBalanceCents(username);
+        shownCount = accountService.countTransactions(username);
+        balance = new H2(String.valueOf(Money.toBigDecimal(shownBalance)));
         Span operationsMsg = new Span("You can deposit, withdraw or transfer money to another user");
 
         initGrid();
 
         add(new HorizontalLayout(balanceMessage, balance), operationsMsg, createDepositLayout(), createWithdrawLayout(),
-                createTransferLayout(), createDeactivateButton(), createGridControlLayout(), transactionsGrid);
+                createTransferLayout(), createStandingOrderLayout(), createDeactivateButton(), createSummaryLayout(),
+                createStatementLayout(),
+                createGridControlLayout(), createFilterLayout(), transactionsGrid);
+        refreshSummary();
     }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        accountChanges = ledgerEvents.subscribe(username, () -> scheduleUpdate(ui));
+        updateAccount();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        accountChanges.remove();
+        accountChanges = null;
+    }
+
     private HorizontalLayout createDepositLayout() {
         BigDecimalField depositField = new BigDecimalField("Amount to deposit:");
         depositField.setWidth(FIELD_WIDTH);
@@ -79,11 +152,15 @@ public class UserAccountView extends VerticalLayout {
         if (checkAmountValue(amount)) {
             return;
         }
-        accountService.deposit(username, amount);
-        balance.setText(String.valueOf(accountService.getBalance(username)));
+        try {
+            accountService.deposit(username, amount);
+        } catch (VelocityLimitExceededException e) {
+            Notification.show(e.getMessage()).setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        updateAccount();
         Notification.show(String.format("[%s] was deposited into the account", amount))
                 .setPosition(Notification.Position.MIDDLE);
-        transactionsGrid.getDataProvider().refreshAll();
     }
 
     private HorizontalLayout createWithdrawLayout() {
@@ -100,11 +177,16 @@ public class UserAccountView extends VerticalLayout {
         if (checkAmountValue(amount)) {
             return;
         }
-        BigDecimal withdrawValue = accountService.withdraw(username, amount);
-        balance.setText(String.valueOf(accountService.getBalance(username)));
+        BigDecimal withdrawValue;
+        try {
+            withdrawValue = accountService.withdraw(username, amount);
+        } catch (VelocityLimitExceededException e) {
+            Notification.show(e.getMessage()).setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        updateAccount();
         Notification.show(String.format("[%s] was withdrawn from the account", withdrawValue))
                 .setPosition(Notification.Position.MIDDLE);
-        transactionsGrid.getDataProvider().refreshAll();
     }
 
     private HorizontalLayout createTransferLayout() {
@@ -129,23 +211,280 @@ public class UserAccountView extends VerticalLayout {
         if (checkAmountValue(amount)) {
             return;
         }
-        BigDecimal result = accountService.transfer(username, userToTransfer, amount);
-        balance.setText(String.valueOf(accountService.getBalance(username)));
+        BigDecimal result;
+        try {
+            result = accountService.transfer(username, userToTransfer, amount);
+        } catch (VelocityLimitExceededException e) {
+            Notification.show(e.getMessage()).setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        updateAccount();
         Notification.show(String.format("[%s] was transferred to the [%s] user", result, userToTransfer))
                 .setPosition(Notification.Position.MIDDLE);
-        transactionsGrid.getDataProvider().refreshAll();
+    }
+
+    /**
+     * Creates the standing order controls. Orders are executed by the scheduler, the grid is refreshed together with
+     * the account.
+     */
+    private VerticalLayout createStandingOrderLayout() {
+        BigDecimalField amountField = new BigDecimalField("Amount to transfer:");
+        amountField.setWidth(FIELD_WIDTH);
+        TextField recipientField = new TextField("Username to transfer:");
+        recipientField.setWidth(FIELD_WIDTH);
+        DateTimePicker firstExecutionField = new DateTimePicker("First execution (UTC):",
+                LocalDateTime.now(ZoneOffset.UTC).plusHours(1).truncatedTo(ChronoUnit.HOURS));
+        ComboBox<StandingOrderFrequency> frequencyField = new ComboBox<>("Frequency:",
+                StandingOrderFrequency.values());
+        frequencyField.setValue(StandingOrderFrequency.MONTHLY);
+        frequencyField.setWidth(FIELD_WIDTH);
+        Button scheduleButton = new Button("Schedule", click -> scheduleOrder(amountField.getValue(),
+                recipientField.getValue(), firstExecutionField.getValue(), frequencyField.getValue()));
+        scheduleButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        HorizontalLayout controls = new HorizontalLayout(amountField, recipientField, firstExecutionField,
+                frequencyField, scheduleButton);
+        controls.setAlignItems(Alignment.END);
+        standingOrdersGrid.addColumn(StandingOrder::usernameTo).setHeader("User");
+        standingOrdersGrid.addColumn(order -> Money.toBigDecimal(order.amount())).setHeader("Amount");
+        standingOrdersGrid.addColumn(StandingOrder::frequency).setHeader("Frequency");
+        standingOrdersGrid.addColumn(order -> formatTime(order.nextExecution())).setHeader("Next execution (UTC)");
+        standingOrdersGrid.addColumn(StandingOrder::executions).setHeader("Executions");
+        standingOrdersGrid.addComponentColumn(order -> {
+            Button cancelButton = new Button("Cancel", click -> cancelOrder(order));
+            cancelButton.addThemeVariants(ButtonVariant.LUMO_ERROR, ButtonVariant.LUMO_TERTIARY);
+            return cancelButton;
+        });
+        standingOrdersGrid.setAllRowsVisible(true);
+        refreshStandingOrders();
+        VerticalLayout layout = new VerticalLayout(new H4("Standing orders"), controls, standingOrdersGrid);
+        layout.setPadding(false);
+        layout.setSpacing(false);
+        return layout;
+    }
+
+    private void scheduleOrder(BigDecimal amount, String userToTransfer, LocalDateTime firstExecution,
+                               StandingOrderFrequency frequency) {
+        if (!userService.userExists(userToTransfer)) {
+            Notification.show(String.format("User [%s] does not exists or active", userToTransfer))
+                    .setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        if (checkAmountValue(amount)) {
+            return;
+        }
+        if (firstExecution == null || frequency == null) {
+            Notification.show("Choose the first execution and the frequency of the order.")
+                    .setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        try {
+            standingOrders.schedule(username, userToTransfer, Money.toCents(amount), frequency,
+                    firstExecution.toInstant(ZoneOffset.UTC));
+        } catch (IllegalArgumentException e) {
+            Notification.show(e.getMessage()).setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        refreshStandingOrders();
+        Notification.show(String.format("Transfer of [%s] to the [%s] user was scheduled", amount, userToTransfer))
+                .setPosition(Notification.Position.MIDDLE);
+    }
+
+    private void cancelOrder(StandingOrder order) {
+        standingOrders.cancel(username, order.id());
+        refreshStandingOrders();
+        Notification.show(String.format("Transfer to the [%s] user was cancelled", order.usernameTo()))
+                .setPosition(Notification.Position.MIDDLE);
+    }
+
+    private void refreshStandingOrders() {
+        standingOrdersGrid.setItems(standingOrders.getOrders(username));
     }
 
     private void initGrid() {
         transactionsGrid = new Grid<>(Transaction.class, false);
         transactionsGrid.setId("transactionsGrid");
-        transactionsGrid.addColumn(Transaction::amount).setHeader("Amount");
+        transactionsGrid.addColumn(transaction -> formatTime(transaction.timestamp())).setHeader("Time (UTC)");
+        transactionsGrid.addColumn(transaction -> Money.toBigDecimal(transaction.amount())).setHeader("Amount");
         transactionsGrid.addColumn(Transaction::transactionType).setHeader("Transaction type");
         transactionsGrid.addColumn(Transaction::user).setHeader("User");
-        transactionsGrid.setItems(transactionHistoryRepository.getTransactions(username));
+        transactionsGrid.setItems(
+                query -> accountService.findTransactions(username, filter, query.getOffset(), query.getLimit())
+                        .stream(),
+                query -> accountService.countTransactions(username, filter));
         transactionsGrid.setSizeFull();
     }
 
+    private void refreshGrid() {
+        transactionsGrid.getDataProvider().refreshAll();
+    }
+
+    /**
+     * Creates the history filter controls. Filters are answered by the secondary indexes of the history, so they stay
+     * fast on large histories.
+     */
+    private HorizontalLayout createFilterLayout() {
+        TextField counterpartyField = new TextField("Counterparty:");
+        counterpartyField.setWidth(FIELD_WIDTH);
+        counterpartyField.setClearButtonVisible(true);
+        ComboBox<TransactionType> typeField = new ComboBox<>("Transaction type:", TransactionType.values());
+        typeField.setWidth(FIELD_WIDTH);
+        typeField.setClearButtonVisible(true);
+        BigDecimalField minAmountField = new BigDecimalField("Min amount:");
+        minAmountField.setWidth(FIELD_WIDTH);
+        minAmountField.setClearButtonVisible(true);
+        BigDecimalField maxAmountField = new BigDecimalField("Max amount:");
+        maxAmountField.setWidth(FIELD_WIDTH);
+        maxAmountField.setClearButtonVisible(true);
+        Runnable applyFilter = () -> applyFilter(counterpartyField.getValue(), typeField.getValue(),
+                minAmountField.getValue(), maxAmountField.getValue());
+        counterpartyField.addValueChangeListener(event -> applyFilter.run());
+        typeField.addValueChangeListener(event -> applyFilter.run());
+        minAmountField.addValueChangeListener(event -> applyFilter.run());
+        maxAmountField.addValueChangeListener(event -> applyFilter.run());
+        HorizontalLayout layout = new HorizontalLayout(counterpartyField, typeField, minAmountField, maxAmountField);
+        setAlignSelf(Alignment.START, layout);
+        return layout;
+    }
+
+    private void applyFilter(String counterparty, TransactionType type, BigDecimal minAmount, BigDecimal maxAmount) {
+        if (minAmount != null && minAmount.scale() > Money.SCALE
+                || maxAmount != null && maxAmount.scale() > Money.SCALE) {
+            Notification.show("Wrong amount value! It must have a maximum value of 2 digits after the comma.")
+                    .setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        filter = new TransactionFilter(counterparty == null || counterparty.isBlank() ? null : counterparty.trim(),
+                type, minAmount == null ? null : Money.toCents(minAmount),
+                maxAmount == null ? null : Money.toCents(maxAmount));
+        refreshGrid();
+    }
+
+    private VerticalLayout createSummaryLayout() {
+        dailyGrid.addColumn(DailyStatement::date).setHeader("Date (UTC)");
+        dailyGrid.addColumn(day -> Money.toBigDecimal(day.totals().cashDeposited())).setHeader("Deposited");
+        dailyGrid.addColumn(day -> Money.toBigDecimal(day.totals().cashWithdrawn())).setHeader("Withdrawn");
+        dailyGrid.addColumn(day -> Money.toBigDecimal(day.totals().transferredIn())).setHeader("Received");
+        dailyGrid.addColumn(day -> Money.toBigDecimal(day.totals().transferredOut())).setHeader("Sent");
+        dailyGrid.setAllRowsVisible(true);
+        VerticalLayout layout = new VerticalLayout(new H4("Summary"), cashSummary, transfersSummary,
+                new NativeLabel("Last " + SUMMARY_DAYS + " days"), dailyGrid);
+        layout.setPadding(false);
+        layout.setSpacing(false);
+        return layout;
+    }
+
+    /**
+     * Reads the statement summary from the ledger aggregates, so it costs the same regardless of the history size.
+     */
+    private void refreshSummary() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        AccountStatement statement = accountService.getStatement(username, today.minusDays(SUMMARY_DAYS - 1), today);
+        StatementTotals totals = statement.totals();
+        cashSummary.setText(String.format("Cash: %s deposited in %d deposits, %s withdrawn in %d withdrawals",
+                Money.toBigDecimal(totals.cashDeposited()), totals.cashDeposits(),
+                Money.toBigDecimal(totals.cashWithdrawn()), totals.cashWithdrawals()));
+        transfersSummary.setText(String.format("Transfers: %s received in %d transfers, %s sent in %d transfers",
+                Money.toBigDecimal(totals.transferredIn()), totals.transfersIn(),
+                Money.toBigDecimal(totals.transferredOut()), totals.transfersOut()));
+        dailyGrid.setItems(statement.days());
+    }
+
+    /**
+     * Creates the period statement controls. The period is {@code [from, to)}, by default the current month.
+     */
+    private VerticalLayout createStatementLayout() {
+        LocalDate firstOfMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        DatePicker fromField = new DatePicker("From (UTC):", firstOfMonth);
+        fromField.setWidth(FIELD_WIDTH);
+        DatePicker toField = new DatePicker("To, exclusive:", firstOfMonth.plusMonths(1));
+        toField.setWidth(FIELD_WIDTH);
+        Button statementButton = new Button("Show statement",
+                click -> showStatement(fromField.getValue(), toField.getValue()));
+        HorizontalLayout controls = new HorizontalLayout(fromField, toField, statementButton);
+        controls.setAlignItems(Alignment.END);
+        statementGrid.addColumn(transaction -> formatTime(transaction.timestamp())).setHeader("Time (UTC)");
+        statementGrid.addColumn(Transaction::id).setHeader("Id");
+        statementGrid.addColumn(transaction -> Money.toBigDecimal(transaction.amount())).setHeader("Amount");
+        statementGrid.addColumn(Transaction::transactionType).setHeader("Transaction type");
+        statementGrid.addColumn(Transaction::user).setHeader("User");
+        statementGrid.setItems(
+                query -> periodStatement == null ? Stream.empty() : accountService.getStatementTransactions(
+                        username, periodStatement, query.getOffset(), query.getLimit()).stream(),
+                query -> periodStatement == null ? 0 : periodStatement.transactionCount());
+        statementGrid.setHeight("250px");
+        statementGrid.setVisible(false);
+        VerticalLayout layout = new VerticalLayout(new H4("Statement"), controls, statementBalances, statementTotals,
+                statementGrid);
+        layout.setPadding(false);
+        layout.setSpacing(false);
+        return layout;
+    }
+
+    private void showStatement(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            Notification.show("Wrong statement period! It must end on or after the day it starts.")
+                    .setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        loadStatement(from, to);
+    }
+
+    /**
+     * Reads the statement of a period. Totals come from the ledger aggregates and the transactions are located with a
+     * binary search, so it costs the same regardless of the history size.
+     */
+    private void loadStatement(LocalDate from, LocalDate to) {
+        periodStatement = accountService.getPeriodStatement(username, from, to);
+        StatementTotals totals = periodStatement.totals();
+        statementBalances.setText(String.format("Opening balance %s, closing balance %s",
+                Money.toBigDecimal(periodStatement.openingBalance()),
+                Money.toBigDecimal(periodStatement.closingBalance())));
+        statementTotals.setText(String.format("%s deposited and received, %s withdrawn and sent in %d transactions",
+                Money.toBigDecimal(totals.deposited()), Money.toBigDecimal(totals.withdrawn()),
+                periodStatement.transactionCount()));
+        statementGrid.setVisible(true);
+        statementGrid.getDataProvider().refreshAll();
+    }
+
+    private static String formatTime(long timestamp) {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(timestamp));
+    }
+
+    /**
+     * Schedules an update of the view from a dispatcher thread of the {@link LedgerEventBus}. Events arriving before
+     * the scheduled update runs are merged into it, so a burst of changes costs a single UI access and push.
+     */
+    private void scheduleUpdate(UI ui) {
+        if (updatePending.compareAndSet(false, true)) {
+            ui.access(() -> {
+                updatePending.set(false);
+                updateAccount();
+            });
+        }
+    }
+
+    /**
+     * Sends the balance only if it changed and refreshes the summary and the grid only if new transactions were added;
+     * the lazy data provider then re-fetches just the visible window.
+     */
+    private void updateAccount() {
+        long balanceCents = accountService.getBalanceCents(username);
+        if (balanceCents != shownBalance) {
+            shownBalance = balanceCents;
+            balance.setText(String.valueOf(Money.toBigDecimal(balanceCents)));
+        }
+        int count = accountService.countTransactions(username);
+        if (count != shownCount) {
+            shownCount = count;
+            refreshSummary();
+            refreshStandingOrders();
+            if (periodStatement != null) {
+                loadStatement(periodStatement.from(), periodStatement.to());
+            }
+            refreshGrid();
+        }
+    }
+
     private Button createDeactivateButton() {
         ConfirmDialog confirmDialog = new ConfirmDialog("Are you sure?",
                 "You are about to deactivate your account. Continue?", "Confirm", confirm -> deactivateUser());
@@ -176,13 +515,27 @@ public class UserAccountView extends VerticalLayout {
     private HorizontalLayout createGridControlLayout() {
         NativeLabel gridLabel = new NativeLabel("Transactions");
         gridLabel.setFor(transactionsGrid);
-        Button refreshButton = new Button(VaadinIcon.REFRESH.create(),
-                click -> transactionsGrid.getDataProvider().refreshAll());
+        Button refreshButton = new Button(VaadinIcon.REFRESH.create(), click -> refreshGrid());
         refreshButton.setHeight("25px");
         refreshButton.setWidth("25px");
-        HorizontalLayout horizontalLayout = new HorizontalLayout(refreshButton, gridLabel);
+        HorizontalLayout horizontalLayout = new HorizontalLayout(refreshButton, gridLabel,
+                createExportLink(ExportFormat.CSV), createExportLink(ExportFormat.JSON));
         horizontalLayout.setAlignItems(Alignment.END);
         setAlignSelf(Alignment.START, horizontalLayout);
         return horizontalLayout;
     }
+
+    /**
+     * Creates a download link of the whole history. The export is streamed from the history while it is downloaded
+     * and sent gzip encoded, which browsers decode transparently.
+     */
+    private Anchor createExportLink(ExportFormat format) {
+        StreamResource resource = new StreamResource("transactions." + format.extension(),
+                (output, session) -> historyExporter.export(username, null, null, format, true, output));
+        resource.setContentType(format.contentType());
+        resource.setHeader("Content-Encoding", "gzip");
+        Anchor anchor = new Anchor(resource, "Download " + format.name());
+        anchor.getElement().setAttribute("download", true);
+        return anchor;
+    }
 }
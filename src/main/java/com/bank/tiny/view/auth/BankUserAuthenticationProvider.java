@@ -0,0 +1,143 @@
+package com.bank.tiny.view.auth;
+
+import com.bank.tiny.repostiroty.UserRepository;
+import com.bank.tiny.service.PasswordHasher;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.AbstractUserDetailsAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Authenticates bank users, verifying passwords on the {@link PasswordHasher} pool. Verified credentials are not
+ * cached: a Vaadin session stays authenticated after its login, and every stateless API request is checked anew.
+ * <p>
+ * Concurrent verifications of the same credentials, e.g. a burst of basic authenticated API requests, share a single
+ * bcrypt check; they are matched by a salted SHA-256 digest of the password, never by the password itself. A login
+ * of an unknown user still runs a bcrypt check against a dummy hash, so its timing does not reveal that the user does
+ * not exist.
+ */
+@Component
+public class BankUserAuthenticationProvider extends AbstractUserDetailsAuthenticationProvider {
+
+    private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
+    private final byte[] salt = new byte[16];
+    private final Map<PendingCheck, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+    private volatile String unknownUserPassword;
+
+    /**
+     * Parametrized constructor.
+     * @param userRepository {@link UserRepository} instance
+     * @param passwordHasher {@link PasswordHasher} instance
+     */
+    public BankUserAuthenticationProvider(UserRepository userRepository, PasswordHasher passwordHasher) {
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Override
+    protected UserDetails retrieveUser(String username, UsernamePasswordAuthenticationToken authentication) {
+        try {
+            return userRepository.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            if (authentication.getCredentials() != null) {
+                verifyUnknownUser(authentication.getCredentials().toString());
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication) {
+        if (authentication.getCredentials() == null) {
+            throw badCredentials();
+        }
+        String rawPassword = authentication.getCredentials().toString();
+        boolean matches;
+        try {
+            matches = verify(userDetails.getUsername(), rawPassword, userDetails.getPassword(), digest(rawPassword));
+        } catch (RejectedExecutionException e) {
+            throw overloaded(e);
+        }
+        if (!matches) {
+            throw badCredentials();
+        }
+    }
+
+    private void verifyUnknownUser(String rawPassword) {
+        try {
+            String encodedPassword = unknownUserPassword;
+            if (encodedPassword == null) {
+                encodedPassword = passwordHasher.encode("unknown user password");
+                unknownUserPassword = encodedPassword;
+            }
+            passwordHasher.matches(rawPassword, encodedPassword);
+        } catch (RejectedExecutionException e) {
+            throw overloaded(e);
+        }
+    }
+
+    private boolean verify(String username, String rawPassword, String encodedPassword, byte[] digest) {
+        PendingCheck check = new PendingCheck(username, encodedPassword, Base64.getEncoder().encodeToString(digest));
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        CompletableFuture<Boolean> inFlight = pending.putIfAbsent(check, result);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            boolean matches = passwordHasher.matches(rawPassword, encodedPassword);
+            result.complete(matches);
+            return matches;
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(check, result);
+        }
+    }
+
+    private static AuthenticationServiceException overloaded(RejectedExecutionException e) {
+        return new AuthenticationServiceException("Too many login attempts, please try again later", e);
+    }
+
+    private BadCredentialsException badCredentials() {
+        return new BadCredentialsException(messages.getMessage(
+                "AbstractUserDetailsAuthenticationProvider.badCredentials", "Bad credentials"));
+    }
+
+    private byte[] digest(String rawPassword) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(salt);
+            return messageDigest.digest(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record PendingCheck(String username, String encodedPassword, String digest) {
+    }
+}
@@ -20,6 +20,8 @@ import com.vaadin.flow.router.Route;
 import com.vaadin.flow.server.auth.AnonymousAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Register view. Allows the user to create an account.
  */
@@ -80,7 +82,15 @@ public class RegisterView extends VerticalLayout {
         if (bankUserBinder.validate().hasErrors()) {
             return;
         }
-        if (userService.createUser(bankUserBinder.getBean()) == null) {
+        BankUser bankUser;
+        try {
+            bankUser = userService.createUser(bankUserBinder.getBean());
+        } catch (RejectedExecutionException e) {
+            Notification.show("Too many registrations at the moment, please try again later")
+                    .setPosition(Notification.Position.MIDDLE);
+            return;
+        }
+        if (bankUser == null) {
             Notification.show("User with this username already exists").setPosition(Notification.Position.MIDDLE);
             return;
         }
@@ -1,5 +1,6 @@
 package com.bank.tiny.view.auth;
 
 public enum Role {
-    USER
+    USER,
+    ADMIN
 }
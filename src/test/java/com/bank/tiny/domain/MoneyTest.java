@@ -0,0 +1,30 @@
+package com.bank.tiny.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the cent conversions and the overflow checks of {@link Money}.
+ */
+class MoneyTest {
+
+    @Test
+    void convertsCents() {
+        assertEquals(12_345L, Money.toCents(new BigDecimal("123.45")));
+        assertEquals(new BigDecimal("123.45"), Money.toBigDecimal(12_345L));
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("0.001")));
+    }
+
+    @Test
+    void rejectsOverflowingBalances() {
+        assertEquals(Long.MAX_VALUE, Money.add(Long.MAX_VALUE - 1, 1));
+        assertDoesNotThrow(() -> Money.checkAdd(Long.MAX_VALUE - 1, 1));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.checkAdd(Long.MAX_VALUE, 1));
+    }
+}
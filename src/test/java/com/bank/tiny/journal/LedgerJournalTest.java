@@ -0,0 +1,98 @@
+package com.bank.tiny.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that recovery drops a torn or corrupted record at the tail of the journal, replays the records before it and
+ * appends over it.
+ */
+class LedgerJournalTest {
+
+    // header, sequence, timestamp, type, amount, "alice" and a null argument
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 1 + 8 + 2 + 5 + 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsATornTailRecord() throws IOException {
+        writeRecords(3);
+        // the crash left the second half of the last record unwritten
+        overwrite(2 * RECORD_SIZE + RECORD_SIZE / 2, new byte[RECORD_SIZE - RECORD_SIZE / 2]);
+
+        checkRecoveredOverTheTail();
+    }
+
+    @Test
+    void dropsATailRecordWithABadChecksum() throws IOException {
+        writeRecords(3);
+        // amount of the last record
+        overwrite(2 * RECORD_SIZE + 8 + 8 + 8 + 1, ByteBuffer.allocate(8).putLong(999).array());
+
+        checkRecoveredOverTheTail();
+    }
+
+    @Test
+    void dropsATailRecordLongerThanTheSegment() throws IOException {
+        writeRecords(3);
+        overwrite(2 * RECORD_SIZE, ByteBuffer.allocate(4).putInt(1 << 20).array());
+
+        checkRecoveredOverTheTail();
+    }
+
+    private void checkRecoveredOverTheTail() {
+        LedgerJournal journal = journal();
+        List<JournalRecord> records = recover(journal);
+        assertEquals(List.of(1L, 2L), records.stream().map(JournalRecord::sequence).toList());
+        assertEquals(List.of(100L, 101L), records.stream().map(JournalRecord::amount).toList());
+        assertEquals(3, journal.append(JournalRecordType.WITHDRAW, "alice", null, 50));
+        journal.close();
+
+        records = recover(journal());
+        assertEquals(List.of(1L, 2L, 3L), records.stream().map(JournalRecord::sequence).toList());
+        assertEquals(JournalRecordType.WITHDRAW, records.get(2).type());
+        assertEquals(50, records.get(2).amount());
+    }
+
+    private void writeRecords(int count) {
+        LedgerJournal journal = journal();
+        recover(journal);
+        for (int i = 0; i < count; i++) {
+            journal.append(JournalRecordType.DEPOSIT, "alice", null, 100 + i);
+        }
+        journal.close();
+    }
+
+    private void overwrite(int position, byte[] bytes) throws IOException {
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    private LedgerJournal journal() {
+        return new LedgerJournal(true, directory.toString(), FsyncPolicy.PER_OPERATION, 10, 1 << 12);
+    }
+
+    private static List<JournalRecord> recover(LedgerJournal journal) {
+        List<JournalRecord> records = new ArrayList<>();
+        journal.recover(null, records::add);
+        return records;
+    }
+}
@@ -0,0 +1,233 @@
+package com.bank.tiny.journal;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.domain.StandingOrder;
+import com.bank.tiny.domain.StandingOrderFrequency;
+import com.bank.tiny.domain.Transaction;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistory;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import com.bank.tiny.repostiroty.UserRepository;
+import com.bank.tiny.service.AccountService;
+import com.bank.tiny.service.LedgerEventBus;
+import com.bank.tiny.service.LedgerReconciliation;
+import com.bank.tiny.service.PasswordHasher;
+import com.bank.tiny.service.StandingOrders;
+import com.bank.tiny.service.UserService;
+import com.bank.tiny.service.VelocityRules;
+import com.vaadin.flow.spring.security.AuthenticationContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a ledger restored from a snapshot taken while transfers, credits of a hot account and standing orders
+ * kept running, followed by the journal tail, matches the original ledger.
+ */
+class LedgerSnapshotsTest {
+
+    private static final int PAYERS = 6;
+    private static final int OPERATIONS = 3_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresALedgerSnapshottedUnderLoad() throws Exception {
+        Ledger original = new Ledger(directory);
+        original.recovery.recover();
+        for (int i = 0; i < PAYERS; i++) {
+            original.register("payer" + i);
+            original.accountService.deposit("payer" + i, 10_000_000L);
+        }
+        original.register("merchant");
+        original.register("leaver");
+        original.promote("merchant");
+
+        ExecutorService workers = Executors.newFixedThreadPool(PAYERS + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger progress = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < PAYERS; i++) {
+            String payer = "payer" + i;
+            SplittableRandom random = new SplittableRandom(i);
+            futures.add(workers.submit(() -> {
+                for (int n = 0; n < OPERATIONS; n++) {
+                    switch (random.nextInt(5)) {
+                        case 0, 1 -> original.accountService.transfer(payer, "merchant", random.nextLong(1, 500));
+                        case 2 -> original.accountService.transfer(payer, "payer" + random.nextInt(PAYERS),
+                                random.nextLong(1, 500));
+                        case 3 -> original.accountService.withdraw(payer, random.nextLong(1, 100));
+                        default -> original.accountService.transfer("merchant", payer, random.nextLong(1, 200));
+                    }
+                    progress.incrementAndGet();
+                }
+            }));
+        }
+        futures.add(workers.submit(() -> {
+            SplittableRandom random = new SplittableRandom(PAYERS);
+            for (int n = 0; running.get(); n++) {
+                String payer = "payer" + random.nextInt(PAYERS);
+                Instant due = Instant.ofEpochMilli(original.journal.getClock().currentTimeMillis() - 1000);
+                if (n < 200) {
+                    StandingOrder order = original.standingOrders.schedule(payer, n % 3 == 0 ? "leaver" : "merchant",
+                            random.nextLong(1, 1_000), n % 2 == 0 ? StandingOrderFrequency.DAILY
+                                    : StandingOrderFrequency.ONCE, due);
+                    if (n % 7 == 0) {
+                        original.standingOrders.cancel(payer, order.id());
+                    }
+                } else if (n == 200) {
+                    // cancels the orders to the leaver on their next execution
+                    original.userService.deactivateUser("leaver");
+                }
+                original.standingOrders.executeDue();
+                Thread.yield();
+            }
+            original.standingOrders.executeDue();
+        }));
+        // the second half of the operations is only in the journal tail
+        int snapshots = 0;
+        while (progress.get() < PAYERS * OPERATIONS / 2) {
+            if (progress.get() > 0) {
+                original.snapshots.takeSnapshot();
+                snapshots++;
+            }
+            Thread.yield();
+        }
+        assertTrue(snapshots > 0);
+        for (int i = 0; i < PAYERS; i++) {
+            futures.get(i).get();
+        }
+        running.set(false);
+        futures.get(PAYERS).get();
+        workers.shutdown();
+        original.close();
+
+        Ledger restored = new Ledger(directory);
+        restored.recovery.recover();
+        try {
+            assertEquals(original.users(), restored.users());
+            assertEquals(original.accounts(), restored.accounts());
+            assertEquals(original.orders(), restored.orders());
+            assertTrue(restored.reconciliation.reconcile().isConsistent());
+        } finally {
+            restored.close();
+        }
+    }
+
+    /**
+     * Ledger wired the way the application wires it, with a journal and snapshots in a directory.
+     */
+    private static final class Ledger {
+
+        private final UserRepository userRepository = new UserRepository();
+        private final AccountRepository accountRepository = new AccountRepository();
+        private final TransactionHistoryRepository histories = new TransactionHistoryRepository();
+        private final PasswordHasher passwordHasher = new PasswordHasher(4, 1, 16, 5000);
+        private final LedgerJournal journal;
+        private final AccountService accountService;
+        private final UserService userService;
+        private final StandingOrders standingOrders;
+        private final LedgerSnapshots snapshots;
+        private final LedgerReconciliation reconciliation;
+        private final JournalRecovery recovery;
+
+        private Ledger(Path directory) {
+            journal = new LedgerJournal(true, directory.resolve("journal").toString(), FsyncPolicy.OS, 10, 1 << 16);
+            accountService = new AccountService(accountRepository, histories, journal, LedgerMetrics.disabled(),
+                    new LedgerEventBus(), AccountService.ExecutionMode.LOCKING, 0, 0, 4, VelocityRules.disabled());
+            userService = new UserService(new AuthenticationContext(), accountService, userRepository, journal,
+                    LedgerMetrics.disabled(), passwordHasher);
+            standingOrders = new StandingOrders(accountService, accountRepository, journal, 16);
+            snapshots = new LedgerSnapshots(journal, userRepository, accountRepository, histories, userService,
+                    standingOrders, directory.resolve("snapshots").toString(), 0);
+            reconciliation = new LedgerReconciliation(accountRepository, histories, journal, 1, 0);
+            recovery = new JournalRecovery(journal, snapshots, userService, accountService, reconciliation,
+                    standingOrders);
+        }
+
+        private void register(String username) {
+            BankUser bankUser = new BankUser();
+            bankUser.setUsername(username);
+            bankUser.setPassword("secret");
+            userService.createUser(bankUser);
+        }
+
+        private void promote(String username) {
+            Account account = accountRepository.find(username);
+            account.lock();
+            try {
+                account.promote(4, (hot, cents, counterparty, sequence, timestamp) ->
+                        histories.addTransaction(hot.getUsername(), cents, TransactionType.DEPOSIT, counterparty,
+                                sequence, timestamp));
+            } finally {
+                account.unlock();
+            }
+        }
+
+        private Map<String, String> users() {
+            Map<String, String> users = new TreeMap<>();
+            for (BankUser bankUser : userRepository.findAll()) {
+                users.put(bankUser.getUsername(), bankUser.getPassword() + (bankUser.isActive() ? "" : " inactive"));
+            }
+            return users;
+        }
+
+        private Map<String, List<Object>> accounts() {
+            Map<String, List<Object>> accounts = new TreeMap<>();
+            for (Account account : accountRepository.findAll()) {
+                List<Object> state = new ArrayList<>();
+                // merges the pending credits of a hot account
+                account.lock();
+                try {
+                    state.add(account.getAmount());
+                    state.add(account.isActive());
+                    state.add(account.getSequence());
+                } finally {
+                    account.unlock();
+                }
+                TransactionHistory history = histories.getHistory(account.getUsername());
+                for (int i = 0; i < history.size(); i++) {
+                    Transaction transaction = history.get(i);
+                    state.add(transaction);
+                }
+                accounts.put(account.getUsername(), state);
+            }
+            return accounts;
+        }
+
+        private List<StandingOrder> orders() {
+            return standingOrders.getAllOrders().stream()
+                    .sorted(Comparator.comparingLong(StandingOrder::id))
+                    .toList();
+        }
+
+        private void close() {
+            standingOrders.stop();
+            snapshots.stop();
+            reconciliation.stop();
+            accountService.close();
+            journal.close();
+            passwordHasher.close();
+        }
+    }
+}
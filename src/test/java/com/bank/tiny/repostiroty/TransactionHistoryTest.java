@@ -0,0 +1,80 @@
+package com.bank.tiny.repostiroty;
+
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the unfiltered queries of a {@link TransactionHistory} read a window of entries and agree with the
+ * scanning queries of an equivalent filter, and that amount queries are exact while the amount index is built.
+ */
+class TransactionHistoryTest {
+
+    private static final int SIZE = 10_000;
+    // matches every entry without being empty, so it is answered by a scan
+    private static final TransactionFilter SCANNED = new TransactionFilter(null, null, Long.MIN_VALUE, null);
+
+    private TransactionHistory history;
+
+    @BeforeEach
+    void setUp() {
+        TransactionHistoryRepository repository = new TransactionHistoryRepository();
+        for (int i = 0; i < SIZE; i++) {
+            repository.addTransaction("user", 1 + i % 100, i % 2 == 0 ? TransactionType.DEPOSIT
+                    : TransactionType.WITHDRAW, null);
+        }
+        history = repository.getHistory("user");
+    }
+
+    @Test
+    void countsEveryEntryWithoutAFilter() {
+        assertEquals(SIZE, history.count(TransactionFilter.ALL));
+        assertEquals(history.count(SCANNED), history.count(TransactionFilter.ALL));
+    }
+
+    @Test
+    void readsTheWindowOfAnUnfilteredPage() {
+        assertArrayEquals(new int[] {SIZE - 1, SIZE - 2, SIZE - 3}, history.find(TransactionFilter.ALL, SIZE, 0, 3));
+        assertArrayEquals(new int[] {99, 98}, history.find(TransactionFilter.ALL, 100, 0, 2));
+        assertArrayEquals(new int[] {1, 0}, history.find(TransactionFilter.ALL, SIZE, SIZE - 2, 10));
+        assertArrayEquals(new int[0], history.find(TransactionFilter.ALL, SIZE, SIZE, 10));
+        assertArrayEquals(new int[0], history.find(TransactionFilter.ALL, SIZE, SIZE + 5, 10));
+        for (int offset : new int[] {0, 1, 4095, 5000, SIZE - 7}) {
+            assertArrayEquals(history.find(SCANNED, SIZE, offset, 50),
+                    history.find(TransactionFilter.ALL, SIZE, offset, 50));
+        }
+    }
+
+    @Test
+    void findsAmountRangesWhileTheIndexIsBuilt() {
+        TransactionHistoryRepository repository = new TransactionHistoryRepository();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 1; i <= 200_000; i++) {
+            repository.addTransaction("amounts", random.nextLong(1, 10_000), TransactionType.DEPOSIT, null);
+            if (i % 25_000 == 0) {
+                checkAmountRange(repository.getHistory("amounts"), 100L, 1_000L);
+                checkAmountRange(repository.getHistory("amounts"), 5_000L, null);
+            }
+        }
+    }
+
+    private static void checkAmountRange(TransactionHistory history, Long minAmount, Long maxAmount) {
+        TransactionFilter filter = new TransactionFilter(null, null, minAmount, maxAmount);
+        int size = history.size();
+        int[] expected = IntStream.iterate(size - 1, index -> index >= 0, index -> index - 1)
+                .filter(index -> history.amount(index) >= minAmount
+                        && (maxAmount == null || history.amount(index) <= maxAmount))
+                .toArray();
+        assertEquals(expected.length, history.count(filter));
+        assertArrayEquals(Arrays.copyOfRange(expected, 0, 20), history.find(filter, size, 0, 20));
+        assertArrayEquals(Arrays.copyOfRange(expected, 100, 120), history.find(filter, size, 100, 20));
+    }
+}
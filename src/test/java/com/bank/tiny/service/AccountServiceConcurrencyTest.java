@@ -0,0 +1,100 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that concurrent deposits, withdrawals and transfers over a few accounts neither create nor lose money.
+ */
+class AccountServiceConcurrencyTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+    private static final long INITIAL_BALANCE = 1_000_00L;
+
+    private AccountService accountService;
+
+    @AfterEach
+    void tearDown() {
+        accountService.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AccountService.ExecutionMode.class)
+    void conservesMoney(AccountService.ExecutionMode executionMode) throws Exception {
+        LedgerJournal journal = new LedgerJournal(false, "build/test-journal", FsyncPolicy.OS, 10, 1 << 20);
+        // promote contended recipients right away, so that striped credits of hot accounts are exercised too
+        accountService = new AccountService(new AccountRepository(), new TransactionHistoryRepository(), journal,
+                LedgerMetrics.disabled(), new LedgerEventBus(), executionMode, 1024, 1, 4);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountService.createAccount(username(i));
+            accountService.deposit(username(i), INITIAL_BALANCE);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long deposited = 0;
+                long withdrawn = 0;
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String username = username(random.nextInt(ACCOUNTS));
+                    long cents = 1 + random.nextInt(10_000);
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            accountService.deposit(username, cents);
+                            deposited += cents;
+                        }
+                        case 1 -> withdrawn += accountService.withdraw(username, cents);
+                        default -> accountService.transfer(username, username(random.nextInt(ACCOUNTS)), cents);
+                    }
+                }
+                return new long[] {deposited, withdrawn};
+            }));
+        }
+        start.countDown();
+        long deposited = 0;
+        long withdrawn = 0;
+        for (Future<long[]> result : results) {
+            long[] totals = result.get(1, TimeUnit.MINUTES);
+            deposited += totals[0];
+            withdrawn += totals[1];
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            long balance = accountService.getBalanceCents(username(i));
+            assertTrue(balance >= 0, "negative balance of " + username(i));
+            total += balance;
+        }
+        assertEquals(ACCOUNTS * INITIAL_BALANCE + deposited - withdrawn, total);
+    }
+
+    private static String username(int index) {
+        return "user" + index;
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.TransactionFilter;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that history reads of a hot account include the credits still pending in its stripes.
+ */
+class AccountServiceHotAccountTest {
+
+    private static final TransactionFilter ALL = new TransactionFilter(null, null, null, null);
+
+    private final AccountRepository accountRepository = new AccountRepository();
+    private final TransactionHistoryRepository transactionHistoryRepository = new TransactionHistoryRepository();
+    private AccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        LedgerJournal journal = new LedgerJournal(false, "build/test-journal", FsyncPolicy.OS, 10, 1 << 20);
+        // automatic promotion is off, the recipient is promoted explicitly
+        accountService = new AccountService(accountRepository, transactionHistoryRepository, journal,
+                LedgerMetrics.disabled(), new LedgerEventBus(), AccountService.ExecutionMode.LOCKING, 1024, 0, 4);
+        accountService.createAccount("payer");
+        accountService.createAccount("merchant");
+        accountService.deposit("payer", 1_000L);
+        Account merchant = accountRepository.find("merchant");
+        merchant.lock();
+        try {
+            merchant.promote(4, (account, cents, counterparty, sequence, timestamp) ->
+                    transactionHistoryRepository.addTransaction(account.getUsername(), cents,
+                            TransactionType.DEPOSIT, counterparty, sequence, timestamp));
+        } finally {
+            merchant.unlock();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.close();
+    }
+
+    @Test
+    void cursorPageIncludesPendingCredits() {
+        accountService.transfer("payer", "merchant", 100L);
+        accountService.transfer("payer", "merchant", 200L);
+        assertEquals(0, transactionHistoryRepository.getHistory("merchant").size());
+
+        assertArrayEquals(new int[] {1, 0}, accountService.findTransactionIndices("merchant", ALL, null, 10));
+        assertArrayEquals(new int[] {0}, accountService.findTransactionIndices("merchant", ALL, 1, 10));
+        assertEquals(200L, transactionHistoryRepository.getHistory("merchant").amount(1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.service.LedgerCommandPipeline.CommandType;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that no submitter of the {@link LedgerCommandPipeline} waits forever, whatever happens to its thread.
+ */
+class LedgerCommandPipelineTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    void failsOnlyTheCommandThrowingAnError() throws Exception {
+        LedgerCommandPipeline pipeline = new LedgerCommandPipeline(8, (type, username, counterparty, amount) -> {
+            if (amount < 0) {
+                throw new AssertionError("negative amount");
+            }
+            return amount;
+        });
+        try {
+            CompletableFuture<Long> failed = pipeline.submit(CommandType.DEPOSIT, "user", null, -1);
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> failed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, e.getCause());
+            assertEquals(5L, pipeline.submit(CommandType.DEPOSIT, "user", null, 5)
+                    .get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void failsPendingCommandsWhenTheBusinessThreadDies() throws Exception {
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        LedgerCommandPipeline pipeline = new LedgerCommandPipeline(8, (type, username, counterparty, amount) -> {
+            release.join();
+            throw new OutOfMemoryError("simulated");
+        });
+        CompletableFuture<Long> first = pipeline.submit(CommandType.DEPOSIT, "user", null, 1);
+        CompletableFuture<Long> second = pipeline.submit(CommandType.DEPOSIT, "user", null, 2);
+        release.complete(null);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertInstanceOf(OutOfMemoryError.class, e.getCause().getCause());
+        assertThrows(ExecutionException.class, () -> first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(CommandType.DEPOSIT, "user", null, 3));
+    }
+
+    @Test
+    void rejectsCommandsAfterStop() throws Exception {
+        LedgerCommandPipeline pipeline = new LedgerCommandPipeline(8, (type, username, counterparty, amount) -> amount);
+        assertEquals(1L, pipeline.submit(CommandType.DEPOSIT, "user", null, 1).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        pipeline.stop();
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(CommandType.DEPOSIT, "user", null, 2));
+    }
+}
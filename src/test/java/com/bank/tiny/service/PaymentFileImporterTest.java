@@ -0,0 +1,91 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the per-line report of a payment file import, whose lines are executed in chunks of two.
+ */
+class PaymentFileImporterTest {
+
+    private final AccountRepository accountRepository = new AccountRepository();
+    private final TransactionHistoryRepository transactionHistoryRepository = new TransactionHistoryRepository();
+    private AccountService accountService;
+    private PaymentFileImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        LedgerJournal journal = new LedgerJournal(false, "build/test-journal", FsyncPolicy.OS, 10, 1 << 20);
+        accountService = new AccountService(accountRepository, transactionHistoryRepository, journal);
+        for (String username : new String[] {"payer", "alice", "bob"}) {
+            accountService.createAccount(username);
+        }
+        accountService.deposit("payer", 10_000L);
+        importer = new PaymentFileImporter(accountService, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountService.close();
+    }
+
+    @Test
+    void reportsEveryLine() throws Exception {
+        String file = """
+                from,to,amount
+                payer,alice,10.50
+                payer,bob,abc
+                payer,carol,1
+
+                payer,bob,20
+                bob,alice
+                payer,alice,0.001
+                payer,alice,100
+                """;
+        StringWriter report = new StringWriter();
+        PaymentFileImporter.ImportSummary summary = importer.importPayments(new StringReader(file), report);
+
+        assertEquals("""
+                line,from,to,amount,transferred,status,reason
+                2,payer,alice,10.50,10.50,COMPLETED,
+                3,payer,bob,abc,0.00,REJECTED,Malformed line
+                4,payer,carol,1,0.00,REJECTED,Target account does not exist or is not active
+                6,payer,bob,20,20.00,COMPLETED,
+                7,,,,0.00,REJECTED,Malformed line
+                8,payer,alice,0.001,0.00,REJECTED,Malformed line
+                9,payer,alice,100,69.50,PARTIAL,
+                """, report.toString());
+        assertEquals(7, summary.getLines());
+        assertEquals(2, summary.getCompleted());
+        assertEquals(1, summary.getPartial());
+        assertEquals(4, summary.getRejected());
+        assertEquals(10_000L, summary.getTransferred());
+        assertEquals(0L, accountRepository.find("payer").getAmount());
+        assertEquals(8_000L, accountRepository.find("alice").getAmount());
+        assertEquals(4, transactionHistoryRepository.countTransactions("payer"));
+        assertEquals(2, transactionHistoryRepository.countTransactions("alice"));
+    }
+
+    @Test
+    void rejectsLinesOfOtherPayers() throws Exception {
+        StringWriter report = new StringWriter();
+        importer.importPayments(new StringReader("alice,bob,1\npayer,bob,1\n"), report, "payer");
+
+        assertEquals("""
+                line,from,to,amount,transferred,status,reason
+                1,alice,bob,1,0.00,REJECTED,Source account is not the payer
+                2,payer,bob,1,1.00,COMPLETED,
+                """, report.toString());
+        assertEquals(100L, accountRepository.find("bob").getAmount());
+    }
+}
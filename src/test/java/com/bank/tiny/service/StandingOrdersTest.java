@@ -0,0 +1,101 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.StandingOrder;
+import com.bank.tiny.domain.StandingOrderFrequency;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.domain.VelocityAction;
+import com.bank.tiny.domain.VelocityRule;
+import com.bank.tiny.journal.FsyncPolicy;
+import com.bank.tiny.journal.JournalRecord;
+import com.bank.tiny.journal.JournalRecordType;
+import com.bank.tiny.journal.LedgerJournal;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.AccountRepository;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a temporarily rejected standing order only skips its occurrence, while an order of a deactivated
+ * account is cancelled.
+ */
+class StandingOrdersTest {
+
+    private final AccountRepository accountRepository = new AccountRepository();
+    private final LedgerJournal journal = new LedgerJournal(false, "build/test-journal", FsyncPolicy.OS, 10, 1 << 20);
+    private AccountService accountService;
+    private StandingOrders standingOrders;
+
+    @BeforeEach
+    void setUp() {
+        TransactionHistoryRepository histories = new TransactionHistoryRepository();
+        // one outgoing movement per ten minutes
+        VelocityRules velocityRules = new VelocityRules(histories, LedgerMetrics.disabled(),
+                new VelocityRule(TransactionType.WITHDRAW, 600_000, 1, 0, VelocityAction.REJECT));
+        accountService = new AccountService(accountRepository, histories, journal, LedgerMetrics.disabled(),
+                new LedgerEventBus(), AccountService.ExecutionMode.LOCKING, 0, 0, 0, velocityRules);
+        for (String username : new String[] {"tenant", "landlord", "payer", "closed"}) {
+            accountService.createAccount(username);
+            accountService.deposit(username, 100_000L);
+        }
+        standingOrders = new StandingOrders(accountService, accountRepository, journal, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        standingOrders.stop();
+        accountService.close();
+    }
+
+    @Test
+    void skipsAnOccurrenceRejectedByAVelocityRule() {
+        accountService.withdraw("tenant", 100L);
+        StandingOrder rent = standingOrders.schedule("tenant", "landlord", 50_000L, StandingOrderFrequency.MONTHLY,
+                Instant.ofEpochMilli(journal.getClock().currentTimeMillis() - 1000));
+        startWheel();
+
+        assertEquals(0, standingOrders.executeDue());
+
+        List<StandingOrder> orders = standingOrders.getOrders("tenant");
+        assertEquals(1, orders.size());
+        assertEquals(rent.id(), orders.get(0).id());
+        assertEquals(1, orders.get(0).executions());
+        assertEquals(100_000L, accountRepository.find("landlord").getAmount());
+    }
+
+    @Test
+    void cancelsAnOrderOfADeactivatedAccount() {
+        standingOrders.schedule("payer", "closed", 1_000L, StandingOrderFrequency.DAILY,
+                Instant.ofEpochMilli(journal.getClock().currentTimeMillis() - 1000));
+        accountService.deactivate("closed");
+        startWheel();
+
+        assertEquals(0, standingOrders.executeDue());
+
+        assertEquals(List.of(), standingOrders.getOrders("payer"));
+    }
+
+    @Test
+    void replaysASkippedOccurrence() {
+        StandingOrders restored = new StandingOrders(accountService, accountRepository, journal, 16);
+        restored.replay(new JournalRecord(7, 0, JournalRecordType.SCHEDULE_STANDING_ORDER, "tenant",
+                "MONTHLY:0:landlord", 50_000L));
+        restored.replay(new JournalRecord(9, 0, JournalRecordType.SKIP_STANDING_ORDER, "tenant", "7", 0));
+
+        StandingOrder order = restored.getOrders("tenant").get(0);
+        assertEquals(1, order.executions());
+        assertEquals(9, order.sequence());
+    }
+
+    private void startWheel() {
+        // executed by the test instead of the scheduler thread
+        standingOrders.start();
+        standingOrders.stop();
+    }
+}
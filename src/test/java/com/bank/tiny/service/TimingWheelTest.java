@@ -0,0 +1,88 @@
+package com.bank.tiny.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that timers of the {@link TimingWheel} expire exactly at their deadline, whichever wheel they start in.
+ */
+class TimingWheelTest {
+
+    @Test
+    void cascadesTimersDownToTheirDeadline() {
+        long start = 1_000;
+        TimingWheel wheel = new TimingWheel(start);
+        long[] deadlines = {start + 1, start + 63, start + 64, start + 65, start + 4_095, start + 4_096,
+                start + 4_097, start + 262_143, start + 262_145, start + 300_000};
+        Map<TimingWheel.Timer, Long> timers = new HashMap<>();
+        for (long deadline : deadlines) {
+            TimingWheel.Timer timer = new TimingWheel.Timer();
+            wheel.schedule(timer, deadline);
+            timers.put(timer, deadline);
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        Map<TimingWheel.Timer, Long> expiredAt = new HashMap<>();
+        for (long tick = start + 1; tick <= start + 300_000; tick++) {
+            long current = tick;
+            wheel.advance(tick, timer -> expiredAt.put(timer, current));
+        }
+        assertEquals(timers, expiredAt);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void handsOutOverdueTimersOnTheNextAdvance() {
+        TimingWheel wheel = new TimingWheel(100);
+        TimingWheel.Timer past = new TimingWheel.Timer();
+        TimingWheel.Timer now = new TimingWheel.Timer();
+        TimingWheel.Timer future = new TimingWheel.Timer();
+        wheel.schedule(past, 50);
+        wheel.schedule(now, 100);
+        wheel.schedule(future, 5_000);
+
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(100, expired::add);
+        assertEquals(List.of(now, past), expired);
+
+        // a jump, e.g. after the application was down, expires everything due in between
+        expired.clear();
+        wheel.advance(10_000, expired::add);
+        assertEquals(List.of(future), expired);
+        assertEquals(10_000, wheel.currentTick());
+        wheel.advance(9_000, expired::add);
+        assertEquals(10_000, wheel.currentTick());
+    }
+
+    @Test
+    void cancelledTimersNeverExpire() {
+        TimingWheel wheel = new TimingWheel(0);
+        TimingWheel.Timer cancelled = new TimingWheel.Timer();
+        TimingWheel.Timer kept = new TimingWheel.Timer();
+        wheel.schedule(cancelled, 70);
+        wheel.schedule(kept, 70);
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        assertFalse(cancelled.isScheduled());
+        assertEquals(1, wheel.size());
+
+        List<TimingWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(100, expired::add);
+        assertEquals(List.of(kept), expired);
+        assertFalse(kept.isScheduled());
+
+        wheel.schedule(cancelled, 150);
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(cancelled, 200));
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule(new TimingWheel.Timer(), 1L << 40));
+    }
+}
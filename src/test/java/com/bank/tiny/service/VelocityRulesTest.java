@@ -0,0 +1,66 @@
+package com.bank.tiny.service;
+
+import com.bank.tiny.domain.Account;
+import com.bank.tiny.domain.TransactionType;
+import com.bank.tiny.domain.VelocityAction;
+import com.bank.tiny.domain.VelocityAlert;
+import com.bank.tiny.domain.VelocityRule;
+import com.bank.tiny.metrics.LedgerMetrics;
+import com.bank.tiny.repostiroty.TransactionHistoryRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that a run of flagged movements is reported once per window of an account, while every rejection is.
+ */
+class VelocityRulesTest {
+
+    private static final long WINDOW = 60_000;
+
+    @Test
+    void reportsFlaggedMovementsOncePerWindow() {
+        VelocityRules rules = rules(VelocityAction.FLAG);
+        Account payer = new Account("payer");
+        Account other = new Account("other");
+        long timestamp = 1_000_000;
+        for (int i = 0; i < 10; i++) {
+            move(rules, payer, timestamp + i);
+            move(rules, other, timestamp + i);
+        }
+        // both accounts violated the rule eight times, each is reported once
+        assertEquals(List.of("other", "payer"), rules.getAlerts().stream().map(VelocityAlert::username).toList());
+
+        // the next run of violations after the window is reported again
+        for (int i = 0; i < 3; i++) {
+            move(rules, payer, timestamp + 2 * WINDOW + i);
+        }
+        assertEquals(3, rules.getAlerts().size());
+    }
+
+    @Test
+    void reportsEveryRejection() {
+        VelocityRules rules = rules(VelocityAction.REJECT);
+        Account payer = new Account("payer");
+        move(rules, payer, 1_000);
+        move(rules, payer, 1_001);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(VelocityLimitExceededException.class,
+                    () -> rules.check(payer, TransactionType.WITHDRAW, 100, 1_002));
+        }
+        assertEquals(3, rules.getAlerts().size());
+    }
+
+    private static VelocityRules rules(VelocityAction action) {
+        return new VelocityRules(new TransactionHistoryRepository(), LedgerMetrics.disabled(),
+                new VelocityRule(TransactionType.WITHDRAW, WINDOW, 2, 0, action));
+    }
+
+    private static void move(VelocityRules rules, Account account, long timestamp) {
+        rules.check(account, TransactionType.WITHDRAW, 100, timestamp);
+        rules.record(account, TransactionType.WITHDRAW, 100, timestamp);
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.tiny.view.auth;
+
+import com.bank.tiny.domain.BankUser;
+import com.bank.tiny.repostiroty.UserRepository;
+import com.bank.tiny.service.PasswordHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every login costs one bcrypt check, whether the user exists or not and however often it logs in.
+ */
+class BankUserAuthenticationProviderTest {
+
+    private final AtomicInteger checks = new AtomicInteger();
+    private PasswordHasher passwordHasher;
+    private BankUserAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        passwordHasher = new PasswordHasher(4, 1, 16, 5000) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                checks.incrementAndGet();
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        UserRepository userRepository = new UserRepository();
+        BankUser bankUser = new BankUser();
+        bankUser.setUsername("alice");
+        bankUser.setPassword(passwordHasher.encode("secret"));
+        userRepository.createUser(bankUser);
+        provider = new BankUserAuthenticationProvider(userRepository, passwordHasher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.close();
+    }
+
+    @Test
+    void verifiesEveryLogin() {
+        assertTrue(provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret")).isAuthenticated());
+        assertTrue(provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret")).isAuthenticated());
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "wrong")));
+        assertEquals(3, checks.get());
+    }
+
+    @Test
+    void checksADummyHashForUnknownUsers() {
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("mallory", "secret")));
+        assertEquals(1, checks.get());
+    }
+}